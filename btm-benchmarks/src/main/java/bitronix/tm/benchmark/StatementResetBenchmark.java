@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.benchmark;
+
+import bitronix.tm.TransactionManagerServices;
+import bitronix.tm.mock.resource.MockXAResource;
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.xa.XAResource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Compares the <code>ALWAYS</code> and <code>TRACKED</code> statement reset policies by preparing, using and closing
+ * a cached statement, executed or not.
+ * <p>The driver is made of {@link Proxy} instances doing nothing but counting the calls they receive, so that the
+ * score is the cost of the pool alone. The amount of statement uses and of calls received by the statements are
+ * reported as the <code>statementUses</code>, <code>statementCalls</code> and <code>statementResets</code> secondary
+ * results, the latter counting the <code>clearParameters()</code>, <code>clearWarnings()</code> and
+ * <code>clearBatch()</code> calls only:</p>
+ * <pre>
+ * mvn -Pbenchmarks package -DskipTests
+ * java -jar btm-benchmarks/target/benchmarks.jar StatementResetBenchmark -prof gc
+ * </pre>
+ * <p>A real driver usually costs much more per call than these proxies, the difference of calls per use is what
+ * <code>TRACKED</code> saves on each of them.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatementResetBenchmark {
+
+    private static final String SQL = "SELECT a FROM b WHERE c = ?";
+
+    @Param({"ALWAYS", "TRACKED"})
+    private String statementResetPolicy;
+
+    private CountingXADataSource xaDataSource;
+    private PoolingDataSource poolingDataSource;
+    private Connection connection;
+
+    /**
+     * The calls received by the driver during the current iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DriverCalls {
+        public long statementUses;
+        public long statementCalls;
+        public long statementResets;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statementUses = 0;
+            statementCalls = 0;
+            statementResets = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        TransactionManagerServices.getConfiguration()
+                .setServerId("btm-benchmarks")
+                .setJournal("null")
+                .setDisableJmx(true);
+
+        poolingDataSource = new PoolingDataSource();
+        poolingDataSource.setUniqueName("statement-reset-" + statementResetPolicy);
+        xaDataSource = new CountingXADataSource();
+        poolingDataSource.setXaDataSource(xaDataSource);
+        poolingDataSource.setMinPoolSize(1);
+        poolingDataSource.setMaxPoolSize(1);
+        poolingDataSource.setAllowLocalTransactions(true);
+        poolingDataSource.setPreparedStatementCacheSize(10);
+        poolingDataSource.setStatementResetPolicy(statementResetPolicy);
+        poolingDataSource.init();
+
+        connection = poolingDataSource.getConnection();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+        poolingDataSource.close();
+        TransactionManagerServices.getTransactionManager().shutdown();
+    }
+
+    @Benchmark
+    public void executeQuery(DriverCalls driverCalls) throws Exception {
+        long statementCalls = xaDataSource.statementCalls;
+        long statementResets = xaDataSource.statementResets;
+        PreparedStatement statement = connection.prepareStatement(SQL);
+        statement.setInt(1, 1);
+        statement.executeQuery().close();
+        statement.close();
+        count(driverCalls, statementCalls, statementResets);
+    }
+
+    @Benchmark
+    public void prepareOnly(DriverCalls driverCalls) throws Exception {
+        long statementCalls = xaDataSource.statementCalls;
+        long statementResets = xaDataSource.statementResets;
+        PreparedStatement statement = connection.prepareStatement(SQL);
+        statement.setInt(1, 1);
+        statement.close();
+        count(driverCalls, statementCalls, statementResets);
+    }
+
+    private void count(DriverCalls driverCalls, long statementCallsBefore, long statementResetsBefore) {
+        driverCalls.statementUses++;
+        driverCalls.statementCalls += xaDataSource.statementCalls - statementCallsBefore;
+        driverCalls.statementResets += xaDataSource.statementResets - statementResetsBefore;
+    }
+
+    /**
+     * An {@link XADataSource} whose connections, statements and result sets count the calls they receive and
+     * return default values.
+     */
+    private static final class CountingXADataSource implements XADataSource {
+
+        private static final Map<Class<?>, Object> DEFAULT_VALUES = new HashMap<>();
+
+        static {
+            DEFAULT_VALUES.put(boolean.class, false);
+            DEFAULT_VALUES.put(byte.class, (byte) 0);
+            DEFAULT_VALUES.put(short.class, (short) 0);
+            DEFAULT_VALUES.put(char.class, (char) 0);
+            DEFAULT_VALUES.put(int.class, 0);
+            DEFAULT_VALUES.put(long.class, 0L);
+            DEFAULT_VALUES.put(float.class, 0F);
+            DEFAULT_VALUES.put(double.class, 0D);
+        }
+
+        private long statementCalls;
+        private long statementResets;
+
+        @Override
+        public XAConnection getXAConnection() {
+            XAResource xaResource = new MockXAResource(null);
+            Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+                if (method.getName().startsWith("prepareStatement")) {
+                    return preparedStatement();
+                }
+                return defaultValue(proxy, method, args);
+            });
+            return proxy(XAConnection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getXAResource":
+                        return xaResource;
+                    case "getConnection":
+                        return connection;
+                    default:
+                        return defaultValue(proxy, method, args);
+                }
+            });
+        }
+
+        @Override
+        public XAConnection getXAConnection(String user, String password) {
+            return getXAConnection();
+        }
+
+        private PreparedStatement preparedStatement() {
+            ResultSet resultSet = proxy(ResultSet.class, CountingXADataSource::defaultValue);
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+                if (method.getDeclaringClass() == Object.class) {
+                    return defaultValue(proxy, method, args);
+                }
+                statementCalls++;
+                switch (method.getName()) {
+                    case "clearParameters":
+                    case "clearWarnings":
+                    case "clearBatch":
+                        statementResets++;
+                        return null;
+                    case "executeQuery":
+                        return resultSet;
+                    default:
+                        return defaultValue(proxy, method, args);
+                }
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(StatementResetBenchmark.class.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+
+        private static Object defaultValue(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "counting " + proxy.getClass().getInterfaces()[0].getSimpleName();
+                default:
+                    return DEFAULT_VALUES.get(method.getReturnType());
+            }
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+}
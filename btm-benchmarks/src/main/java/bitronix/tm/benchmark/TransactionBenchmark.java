@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.benchmark;
+
+import bitronix.tm.BitronixTransactionManager;
+import bitronix.tm.TransactionManagerServices;
+import bitronix.tm.mock.events.EventRecorder;
+import bitronix.tm.mock.resource.MockXAResource;
+import bitronix.tm.mock.resource.MockXid;
+import bitronix.tm.resource.ehcache.EhCacheXAResourceProducer;
+import jakarta.transaction.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a complete {@code begin()} &rarr; {@code commit()} cycle with 0, 1 (1PC) and 2 (2PC) enlisted
+ * {@link MockXAResource}s, journaling disabled.
+ * <p>Run it with the GC profiler to get the allocated bytes per transaction ({@code gc.alloc.rate.norm}):</p>
+ * <pre>
+ * mvn -Pbenchmarks package -DskipTests
+ * java -jar btm-benchmarks/target/benchmarks.jar TransactionBenchmark -prof gc
+ * </pre>
+ * <p>The mock resources record an event for each XA call they receive which costs far more than the transaction
+ * manager itself. {@link #xaResourcesOnly()} sends the very same XA calls straight to the resources so that its
+ * score can be subtracted from the {@link #beginCommit()} one to get the cost of the transaction manager alone.</p>
+ * <p>The transaction manager must stay within an allocation budget of 2.5 KB per transaction without resource, 6 KB
+ * with 1 and 8 KB with 2. This is enforced by {@code TransactionAllocationTest} of the btm module, which measures the
+ * allocated bytes with resources doing nothing on every build.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionBenchmark {
+
+    private static final int RECORDED_EVENTS_CLEAR_INTERVAL = 1024;
+
+    @Param({"0", "1", "2"})
+    private int resourceCount;
+
+    private BitronixTransactionManager transactionManager;
+    private MockXAResource[] xaResources;
+    private MockXid xid;
+    private int invocationCount;
+
+    @Setup
+    public void setUp() {
+        TransactionManagerServices.getConfiguration()
+                .setServerId("btm-benchmarks")
+                .setJournal("null")
+                .setDisableJmx(true)
+                .setWarnAboutZeroResourceTransaction(false);
+
+        xaResources = new MockXAResource[resourceCount];
+        for (int i = 0; i < resourceCount; i++) {
+            xaResources[i] = new MockXAResource(null);
+            EhCacheXAResourceProducer.registerXAResource("mock-" + i, xaResources[i]);
+        }
+        xid = new MockXid(1L, 1L);
+
+        transactionManager = TransactionManagerServices.getTransactionManager();
+    }
+
+    @TearDown
+    public void tearDown() {
+        transactionManager.shutdown();
+        for (int i = 0; i < resourceCount; i++) {
+            EhCacheXAResourceProducer.unregisterXAResource("mock-" + i, xaResources[i]);
+        }
+        EventRecorder.clear();
+    }
+
+    @Benchmark
+    public void beginCommit() throws Exception {
+        transactionManager.begin();
+        Transaction transaction = transactionManager.getTransaction();
+        for (MockXAResource xaResource : xaResources) {
+            transaction.enlistResource(xaResource);
+        }
+        transactionManager.commit();
+        clearRecordedEvents();
+    }
+
+    @Benchmark
+    public void xaResourcesOnly() throws XAException {
+        boolean onePhase = xaResources.length == 1;
+        for (MockXAResource xaResource : xaResources) {
+            xaResource.start(xid, XAResource.TMNOFLAGS);
+        }
+        for (MockXAResource xaResource : xaResources) {
+            xaResource.end(xid, XAResource.TMSUCCESS);
+        }
+        if (!onePhase) {
+            for (MockXAResource xaResource : xaResources) {
+                xaResource.prepare(xid);
+            }
+        }
+        for (MockXAResource xaResource : xaResources) {
+            xaResource.commit(xid, onePhase);
+        }
+        clearRecordedEvents();
+    }
+
+    private void clearRecordedEvents() {
+        if (++invocationCount % RECORDED_EVENTS_CLEAR_INTERVAL == 0) {
+            EventRecorder.clear();
+        }
+    }
+
+}
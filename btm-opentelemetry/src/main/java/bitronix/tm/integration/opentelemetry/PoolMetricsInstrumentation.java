@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.integration.opentelemetry;
+
+import bitronix.tm.resource.ResourceRegistrar;
+import bitronix.tm.resource.common.PoolMetrics;
+import bitronix.tm.resource.common.XAResourceProducer;
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+import bitronix.tm.resource.jms.PoolingConnectionFactory;
+import bitronix.tm.utils.Histogram;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableDoubleMeasurement;
+import io.opentelemetry.api.metrics.ObservableLongMeasurement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Publishes the {@link PoolMetrics} of every JDBC and JMS pool registered in the {@link ResourceRegistrar} as
+ * OpenTelemetry asynchronous instruments. The pools are looked up each time the metrics are collected so pools
+ * created after this instrumentation has been registered are reported as well.
+ * <p>Every measurement carries a {@code pool.name} attribute holding the unique name of the pool. Durations are
+ * published in microseconds; percentiles of the duration histograms are published as gauges with a
+ * {@code quantile} attribute.</p>
+ * <pre>
+ * PoolMetricsInstrumentation instrumentation = PoolMetricsInstrumentation.register(openTelemetry);
+ * ...
+ * instrumentation.close();
+ * </pre>
+ */
+public class PoolMetricsInstrumentation implements AutoCloseable {
+
+    public static final String INSTRUMENTATION_SCOPE = "bitronix.tm";
+
+    static final AttributeKey<String> POOL_NAME = AttributeKey.stringKey("pool.name");
+    static final AttributeKey<String> STATE = AttributeKey.stringKey("state");
+    static final AttributeKey<String> QUANTILE = AttributeKey.stringKey("quantile");
+
+    private static final double[] QUANTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private final List<AutoCloseable> instruments = new ArrayList<>();
+
+    private PoolMetricsInstrumentation(Meter meter) {
+        instruments.add(meter.upDownCounterBuilder("bitronix.pool.connection.count")
+                .setDescription("The amount of connections in the pool, by state.")
+                .setUnit("{connection}")
+                .buildWithCallback(this::observeConnectionCount));
+        instruments.add(meter.upDownCounterBuilder("bitronix.pool.connection.max")
+                .setDescription("The maximum amount of connections the pool may hold.")
+                .setUnit("{connection}")
+                .buildWithCallback(this::observeMaxConnections));
+        instruments.add(meter.counterBuilder("bitronix.pool.connection.timeouts")
+                .setDescription("The amount of requests for a connection which timed out.")
+                .setUnit("{timeout}")
+                .buildWithCallback(measurement -> observeCounter(measurement, PoolMetrics::getTimeoutCount)));
+        instruments.add(meter.counterBuilder("bitronix.pool.connection.validations")
+                .setDescription("The amount of idle connections tested in the background.")
+                .setUnit("{validation}")
+                .buildWithCallback(measurement -> observeCounter(measurement, PoolMetrics::getValidationCount)));
+        instruments.add(meter.counterBuilder("bitronix.pool.connection.evictions")
+                .setDescription("The amount of connections closed by the pool because they were idle, expired or broken.")
+                .setUnit("{connection}")
+                .buildWithCallback(measurement -> observeCounter(measurement, PoolMetrics::getEvictionCount)));
+        instruments.add(meter.counterBuilder("bitronix.pool.connection.acquisitions")
+                .setDescription("The amount of connections handed out by the pool.")
+                .setUnit("{acquisition}")
+                .buildWithCallback(measurement -> observeCounter(measurement, metrics -> metrics.getAcquisitionWaitTime().getCount())));
+        addDurationGauge(meter, "bitronix.pool.connection.wait_time",
+                "The time spent waiting for a connection from the pool.", PoolMetrics::getAcquisitionWaitTime);
+        addDurationGauge(meter, "bitronix.pool.connection.use_time",
+                "The time connections stay out of the pool.", PoolMetrics::getLeaseTime);
+        addDurationGauge(meter, "bitronix.pool.connection.create_time",
+                "The time needed to create a physical connection.", PoolMetrics::getCreationTime);
+    }
+
+    /**
+     * Register the pool instruments with the meter provider of the given {@link OpenTelemetry} instance.
+     * @param openTelemetry the OpenTelemetry instance to publish the metrics to.
+     * @return the registered instrumentation, to be closed to stop publishing the metrics.
+     */
+    public static PoolMetricsInstrumentation register(OpenTelemetry openTelemetry) {
+        return new PoolMetricsInstrumentation(openTelemetry.getMeter(INSTRUMENTATION_SCOPE));
+    }
+
+    /**
+     * Unregister all the instruments.
+     */
+    @Override
+    public void close() {
+        for (AutoCloseable instrument : instruments) {
+            try {
+                instrument.close();
+            } catch (Exception ex) {
+                // observable instruments do not throw on close
+            }
+        }
+        instruments.clear();
+    }
+
+    private void addDurationGauge(Meter meter, String name, String description, Function<PoolMetrics, Histogram> histogram) {
+        instruments.add(meter.gaugeBuilder(name)
+                .setDescription(description)
+                .setUnit("us")
+                .buildWithCallback(measurement -> observeDuration(measurement, histogram)));
+    }
+
+    private void observeConnectionCount(ObservableLongMeasurement measurement) {
+        for (XAResourceProducer<?, ?> producer : producers()) {
+            long inPool;
+            long total;
+            if (producer instanceof PoolingDataSource dataSource) {
+                if (dataSource.getPoolMetrics() == null) {
+                    continue;
+                }
+                inPool = dataSource.getInPoolSize();
+                total = dataSource.getTotalPoolSize();
+            } else if (producer instanceof PoolingConnectionFactory connectionFactory) {
+                if (connectionFactory.getPoolMetrics() == null) {
+                    continue;
+                }
+                inPool = connectionFactory.getInPoolSize();
+                total = connectionFactory.getTotalPoolSize();
+            } else {
+                continue;
+            }
+            Attributes attributes = Attributes.of(POOL_NAME, producer.getUniqueName());
+            measurement.record(inPool, attributes.toBuilder().put(STATE, "idle").build());
+            measurement.record(total - inPool, attributes.toBuilder().put(STATE, "used").build());
+        }
+    }
+
+    private void observeMaxConnections(ObservableLongMeasurement measurement) {
+        for (XAResourceProducer<?, ?> producer : producers()) {
+            if (producer instanceof PoolingDataSource dataSource && dataSource.getPoolMetrics() != null) {
+                measurement.record(dataSource.getMaxPoolSize(), Attributes.of(POOL_NAME, producer.getUniqueName()));
+            } else if (producer instanceof PoolingConnectionFactory connectionFactory && connectionFactory.getPoolMetrics() != null) {
+                measurement.record(connectionFactory.getMaxPoolSize(), Attributes.of(POOL_NAME, producer.getUniqueName()));
+            }
+        }
+    }
+
+    private void observeCounter(ObservableLongMeasurement measurement, Function<PoolMetrics, Long> counter) {
+        for (XAResourceProducer<?, ?> producer : producers()) {
+            PoolMetrics metrics = poolMetrics(producer);
+            if (metrics != null) {
+                measurement.record(counter.apply(metrics), Attributes.of(POOL_NAME, producer.getUniqueName()));
+            }
+        }
+    }
+
+    private void observeDuration(ObservableDoubleMeasurement measurement, Function<PoolMetrics, Histogram> histogram) {
+        for (XAResourceProducer<?, ?> producer : producers()) {
+            PoolMetrics metrics = poolMetrics(producer);
+            if (metrics == null) {
+                continue;
+            }
+            Histogram values = histogram.apply(metrics);
+            if (values.getCount() == 0) {
+                continue;
+            }
+            for (double quantile : QUANTILES) {
+                measurement.record(values.getValueAtPercentile(quantile),
+                        Attributes.of(POOL_NAME, producer.getUniqueName(), QUANTILE, Double.toString(quantile / 100.0)));
+            }
+            measurement.record(values.getMax(), Attributes.of(POOL_NAME, producer.getUniqueName(), QUANTILE, "1.0"));
+        }
+    }
+
+    private static PoolMetrics poolMetrics(XAResourceProducer<?, ?> producer) {
+        if (producer instanceof PoolingDataSource dataSource) {
+            return dataSource.getPoolMetrics();
+        }
+        if (producer instanceof PoolingConnectionFactory connectionFactory) {
+            return connectionFactory.getPoolMetrics();
+        }
+        return null;
+    }
+
+    private static List<XAResourceProducer<?, ?>> producers() {
+        List<XAResourceProducer<?, ?>> producers = new ArrayList<>();
+        for (String uniqueName : ResourceRegistrar.getResourcesUniqueNames()) {
+            XAResourceProducer<?, ?> producer = ResourceRegistrar.get(uniqueName);
+            if (producer != null) {
+                producers.add(producer);
+            }
+        }
+        return producers;
+    }
+
+}
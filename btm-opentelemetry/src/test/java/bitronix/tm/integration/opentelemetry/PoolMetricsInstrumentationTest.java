@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.integration.opentelemetry;
+
+import bitronix.tm.mock.resource.jdbc.MockitoXADataSource;
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.testing.exporter.InMemoryMetricReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoolMetricsInstrumentationTest {
+
+    private InMemoryMetricReader reader;
+    private OpenTelemetrySdk openTelemetry;
+    private PoolingDataSource pds;
+
+    @BeforeEach
+    protected void setUp() throws Exception {
+        reader = InMemoryMetricReader.create();
+        openTelemetry = OpenTelemetrySdk.builder()
+                .setMeterProvider(SdkMeterProvider.builder().registerMetricReader(reader).build())
+                .build();
+
+        pds = new PoolingDataSource();
+        pds.setUniqueName("otel-pds");
+        pds.setXaDataSource(new MockitoXADataSource());
+        pds.setMinPoolSize(1);
+        pds.setMaxPoolSize(3);
+        pds.setAllowLocalTransactions(true);
+        pds.init();
+    }
+
+    @AfterEach
+    protected void tearDown() throws Exception {
+        pds.close();
+        openTelemetry.close();
+    }
+
+    @Test
+    public void testPoolMetricsArePublished() throws Exception {
+        try (PoolMetricsInstrumentation ignored = PoolMetricsInstrumentation.register(openTelemetry)) {
+            Connection connection = pds.getConnection();
+
+            Collection<MetricData> metrics = reader.collectAllMetrics();
+            assertEquals(1L, longValue(metrics, "bitronix.pool.connection.count", "used"));
+            assertEquals(0L, longValue(metrics, "bitronix.pool.connection.count", "idle"));
+            assertEquals(3L, longValue(metrics, "bitronix.pool.connection.max", null));
+            assertEquals(1L, longValue(metrics, "bitronix.pool.connection.acquisitions", null));
+            assertEquals(0L, longValue(metrics, "bitronix.pool.connection.timeouts", null));
+            assertTrue(metrics.stream().anyMatch(metric -> metric.getName().equals("bitronix.pool.connection.wait_time")));
+
+            connection.close();
+
+            metrics = reader.collectAllMetrics();
+            assertEquals(0L, longValue(metrics, "bitronix.pool.connection.count", "used"));
+            assertEquals(1L, longValue(metrics, "bitronix.pool.connection.count", "idle"));
+            assertTrue(metrics.stream().anyMatch(metric -> metric.getName().equals("bitronix.pool.connection.use_time")));
+        }
+
+        assertTrue(reader.collectAllMetrics().isEmpty());
+    }
+
+    private static long longValue(Collection<MetricData> metrics, String name, String state) {
+        for (MetricData metric : metrics) {
+            if (!metric.getName().equals(name)) {
+                continue;
+            }
+            for (LongPointData point : metric.getLongSumData().getPoints()) {
+                if (!"otel-pds".equals(point.getAttributes().get(PoolMetricsInstrumentation.POOL_NAME))) {
+                    continue;
+                }
+                if (state == null || state.equals(point.getAttributes().get(PoolMetricsInstrumentation.STATE))) {
+                    return point.getValue();
+                }
+            }
+        }
+        fail("no " + name + " measurement found for state " + state);
+        return -1;
+    }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc.proxy;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the Java sources of the JDBC proxy classes and of the {@code JdbcGeneratedProxyFactory} instantiating them.
+ * Each generated proxy class extends one of the JavaProxy classes and implements the remaining methods of the JDBC
+ * interface with a direct call to the delegate, so no proxy class is generated at runtime and no method is dispatched
+ * through reflection.
+ * <p>
+ * The build runs {@link #main(String[])} once the JavaProxy classes are compiled, then compiles the generated sources.
+ * This class is compiled apart from the runtime classes and is not part of the jar.
+ * The factory only exists when they have been compiled, which is what {@link JdbcProxyFactory} auto-detection checks.
+ */
+public final class JdbcProxySourceGenerator {
+
+    private static final String PROXY_SUFFIX = "GeneratedProxy";
+    private static final String FACTORY_CLASS_NAME = "JdbcGeneratedProxyFactory";
+
+    private JdbcProxySourceGenerator() {
+    }
+
+    /**
+     * Write the sources of the proxy classes and of the factory.
+     *
+     * @param args the generated sources directory.
+     * @throws IOException if the sources cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("usage: JdbcProxySourceGenerator <generated sources directory>");
+        }
+        Path packageDirectory = Paths.get(args[0], JdbcProxySourceGenerator.class.getPackage().getName().replace('.', '/'));
+        Files.createDirectories(packageDirectory);
+
+        Map<Class<?>, Class<?>> proxiedInterfaces = new LinkedHashMap<>();
+        proxiedInterfaces.put(Connection.class, ConnectionJavaProxy.class);
+        proxiedInterfaces.put(Statement.class, StatementJavaProxy.class);
+        proxiedInterfaces.put(CallableStatement.class, CallableStatementJavaProxy.class);
+        proxiedInterfaces.put(PreparedStatement.class, PreparedStatementJavaProxy.class);
+        proxiedInterfaces.put(ResultSet.class, ResultSetJavaProxy.class);
+
+        for (Map.Entry<Class<?>, Class<?>> entry : proxiedInterfaces.entrySet()) {
+            Class<?> superClass = entry.getValue();
+            writeSource(packageDirectory, proxyClassName(superClass), makeProxySource(proxyClassName(superClass), entry.getKey(), superClass));
+        }
+        writeSource(packageDirectory, FACTORY_CLASS_NAME, makeFactorySource(proxiedInterfaces));
+    }
+
+    private static void writeSource(Path packageDirectory, String className, String source) throws IOException {
+        Files.write(packageDirectory.resolve(className + ".java"), source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String proxyClassName(Class<?> superClass) {
+        return superClass.getSimpleName().replace("JavaProxy", PROXY_SUFFIX);
+    }
+
+    /**
+     * Make the source of the factory: each {@link JdbcProxyFactory} method returning one of the proxied interfaces and
+     * taking the arguments of a constructor of its JavaProxy class calls the constructor of the generated proxy
+     * class, the LRC proxies are created by a {@link JdbcJavaProxyFactory}.
+     *
+     * @param proxiedInterfaces the JavaProxy class of each proxied JDBC interface.
+     * @return the source of the factory class.
+     */
+    static String makeFactorySource(Map<Class<?>, Class<?>> proxiedInterfaces) {
+        StringBuilder source = new StringBuilder();
+        appendHeader(source);
+        source.append("/**\n")
+                .append(" * This class creates JDBC proxies from classes generated at build time by {@link ")
+                .append(JdbcProxySourceGenerator.class.getSimpleName()).append("}.\n")
+                .append(" * <p>\n")
+                .append(" * The generated classes extend the JavaProxy classes and call the delegate directly for every method they do not\n")
+                .append(" * intercept, so Javassist is not needed at runtime.\n")
+                .append(" */\n");
+        source.append("public class ").append(FACTORY_CLASS_NAME).append(" implements ").append(JdbcProxyFactory.class.getSimpleName()).append(" {\n\n");
+        source.append("    /**\n")
+                .append("     * For LRC we just use the standard Java Proxies\n")
+                .append("     */\n")
+                .append("    private final ").append(JdbcJavaProxyFactory.class.getSimpleName()).append(" lrcProxyFactory = new ")
+                .append(JdbcJavaProxyFactory.class.getSimpleName()).append("();\n\n");
+        source.append("    ").append(FACTORY_CLASS_NAME).append("() {\n")
+                .append("    }\n");
+
+        Method[] factoryMethods = JdbcProxyFactory.class.getMethods();
+        Arrays.sort(factoryMethods, Comparator.comparing(JdbcProxySourceGenerator::signature));
+        for (Method method : factoryMethods) {
+            if (Modifier.isStatic(method.getModifiers()) || method.isDefault()) {
+                continue;
+            }
+            Class<?> superClass = proxiedInterfaces.get(method.getReturnType());
+            boolean generated = superClass != null && hasConstructor(superClass, method.getParameterTypes());
+            source.append("\n    @Override\n")
+                    .append("    public ").append(typeName(method.getGenericReturnType())).append(' ').append(method.getName())
+                    .append('(').append(parameters(method)).append(')').append(throwsClause(method)).append(" {\n");
+            if (generated) {
+                source.append("        return new ").append(proxyClassName(superClass)).append('(').append(arguments(method)).append(");\n");
+            } else {
+                source.append("        return lrcProxyFactory.").append(method.getName()).append('(').append(arguments(method)).append(");\n");
+            }
+            source.append("    }\n");
+        }
+
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static boolean hasConstructor(Class<?> superClass, Class<?>[] parameterTypes) {
+        try {
+            superClass.getConstructor(parameterTypes);
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    private static void appendHeader(StringBuilder source) {
+        source.append("// generated by ").append(JdbcProxySourceGenerator.class.getSimpleName()).append(", do not edit\n");
+        source.append("package ").append(JdbcProxySourceGenerator.class.getPackage().getName()).append(";\n\n");
+    }
+
+    /**
+     * Make the source of a proxy class: class XxxGeneratedProxy extends XxxJavaProxy implements java.sql.Xxx
+     *
+     * @param className the simple name of the proxy class.
+     * @param primaryInterface the JDBC interface implemented by the proxy.
+     * @param superClass the JavaProxy class containing the intercepted methods.
+     * @return the source of the proxy class.
+     */
+    static String makeProxySource(String className, Class<?> primaryInterface, Class<?> superClass) {
+        StringBuilder source = new StringBuilder();
+        appendHeader(source);
+        source.append("@SuppressWarnings(\"deprecation\")\n");
+        source.append("public class ").append(className)
+                .append(" extends ").append(superClass.getSimpleName())
+                .append(" implements ").append(typeName(primaryInterface)).append(" {\n");
+
+        // constructors that simply call super(..)
+        for (Constructor<?> constructor : superClass.getDeclaredConstructors()) {
+            if (Modifier.isPrivate(constructor.getModifiers())) {
+                continue;
+            }
+            source.append("\n    public ").append(className).append('(').append(parameters(constructor)).append(')')
+                    .append(throwsClause(constructor)).append(" {\n")
+                    .append("        super(").append(arguments(constructor)).append(");\n")
+                    .append("    }\n");
+        }
+
+        // delegates for the interface methods the JavaProxy class does not implement
+        Set<String> superSignatures = new HashSet<>();
+        for (Class<?> c = superClass; c != null; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (!Modifier.isPrivate(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())) {
+                    superSignatures.add(signature(method));
+                }
+            }
+        }
+        for (Method method : interfaceMethods(primaryInterface)) {
+            if (superSignatures.contains(signature(method))) {
+                continue;
+            }
+            boolean returnsValue = method.getReturnType() != void.class;
+            source.append("\n    @Override\n")
+                    .append("    public ").append(typeParameters(method)).append(typeName(method.getGenericReturnType()))
+                    .append(' ').append(method.getName()).append('(').append(parameters(method)).append(')')
+                    .append(throwsClause(method)).append(" {\n")
+                    .append("        ").append(returnsValue ? "return " : "")
+                    .append("((").append(typeName(primaryInterface)).append(") delegate).")
+                    .append(method.getName()).append('(').append(arguments(method)).append(");\n")
+                    .append("    }\n");
+        }
+
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * @return the instance methods of the interface and of its super interfaces, the most specific declaration of
+     * each signature only, in a stable order.
+     */
+    private static Iterable<Method> interfaceMethods(Class<?> primaryInterface) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        Method[] candidates = primaryInterface.getMethods();
+        Arrays.sort(candidates, Comparator.comparing(JdbcProxySourceGenerator::signature));
+        for (Method method : candidates) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            methods.merge(signature(method), method, (current, other) ->
+                    current.getDeclaringClass().isAssignableFrom(other.getDeclaringClass()) ? other : current);
+        }
+        return methods.values();
+    }
+
+    private static String signature(Method method) {
+        return method.getName() + Arrays.toString(method.getParameterTypes());
+    }
+
+    private static String typeParameters(Method method) {
+        TypeVariable<Method>[] typeParameters = method.getTypeParameters();
+        if (typeParameters.length == 0) {
+            return "";
+        }
+        return Arrays.stream(typeParameters)
+                .map(typeParameter -> {
+                    Type[] bounds = typeParameter.getBounds();
+                    if (bounds.length == 1 && bounds[0] == Object.class) {
+                        return typeParameter.getName();
+                    }
+                    return typeParameter.getName() + " extends " + Arrays.stream(bounds)
+                            .map(JdbcProxySourceGenerator::typeName)
+                            .collect(Collectors.joining(" & "));
+                })
+                .collect(Collectors.joining(", ", "<", "> "));
+    }
+
+    private static String parameters(Executable executable) {
+        Type[] parameterTypes = executable.getGenericParameterTypes();
+        StringBuilder parameters = new StringBuilder();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                parameters.append(", ");
+            }
+            parameters.append(typeName(parameterTypes[i])).append(" arg").append(i);
+        }
+        return parameters.toString();
+    }
+
+    private static String arguments(Executable executable) {
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < executable.getParameterCount(); i++) {
+            if (i > 0) {
+                arguments.append(", ");
+            }
+            arguments.append("arg").append(i);
+        }
+        return arguments.toString();
+    }
+
+    private static String throwsClause(Executable executable) {
+        Class<?>[] exceptionTypes = executable.getExceptionTypes();
+        if (exceptionTypes.length == 0) {
+            return "";
+        }
+        return Arrays.stream(exceptionTypes)
+                .map(JdbcProxySourceGenerator::typeName)
+                .collect(Collectors.joining(", ", " throws ", ""));
+    }
+
+    private static String typeName(Type type) {
+        // nested classes are referred to with a dot in sources
+        return type.getTypeName().replace('$', '.');
+    }
+}
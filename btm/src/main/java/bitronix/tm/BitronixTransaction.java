@@ -21,9 +21,8 @@ import bitronix.tm.resource.ResourceRegistrar;
 import bitronix.tm.resource.common.XAResourceHolder;
 import bitronix.tm.resource.common.XAResourceHolderStateVisitor;
 import bitronix.tm.timer.TaskScheduler;
-import bitronix.tm.twopc.Committer;
+import bitronix.tm.twopc.PhaseEngines;
 import bitronix.tm.twopc.PhaseException;
-import bitronix.tm.twopc.Preparer;
 import bitronix.tm.twopc.Rollbacker;
 import bitronix.tm.twopc.executor.Executor;
 import bitronix.tm.utils.*;
@@ -49,7 +48,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
     private static final Logger log = LoggerFactory.getLogger(BitronixTransaction.class);
 
     private final XAResourceManager resourceManager;
-    private final Scheduler<Synchronization> synchronizationScheduler = new Scheduler<>();
+    private final Scheduler<Synchronization> synchronizationScheduler = new CompactScheduler<>();
     private final List<TransactionStatusChangeListener> transactionStatusListeners = new ArrayList<>();
 
     private volatile int status = Status.STATUS_NO_TRANSACTION;
@@ -59,11 +58,8 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
     private final Executor executor = TransactionManagerServices.getExecutor();
     private final TaskScheduler taskScheduler = TransactionManagerServices.getTaskScheduler();
 
-    private final Preparer preparer = new Preparer(executor);
-    private final Committer committer = new Committer(executor);
-    private final Rollbacker rollbacker = new Rollbacker(executor);
-
     /* management */
+    private volatile String jmxName;
     private volatile String threadName;
     private volatile LocalDateTime startDate;
     private volatile StackTrace activationStackTrace;
@@ -276,6 +272,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
             throw new BitronixRollbackException("transaction was marked as rollback only and has been rolled back");
         }
 
+        PhaseEngines phaseEngines = PhaseEngines.acquire(executor);
         try {
             List<XAResourceHolderState> interestedResources;
 
@@ -285,7 +282,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
                     log.debug("committing, {} enlisted resource(s)", resourceManager.size());
                 }
 
-                interestedResources = preparer.prepare(this);
+                interestedResources = phaseEngines.getPreparer().prepare(this);
             } catch (RollbackException ex) {
                 if (log.isDebugEnabled()) {
                     log.debug("caught rollback exception during prepare, trying to rollback");
@@ -293,7 +290,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
 
                 // rollbackPrepareFailure might throw a SystemException that will 'swallow' the RollbackException which is
                 // what we want in that case as the transaction has not been rolled back and some resources are now left in-doubt.
-                rollbackPrepareFailure(ex);
+                rollbackPrepareFailure(ex, phaseEngines.getRollbacker());
                 throw new BitronixRollbackException("transaction failed to prepare: " + this, ex);
             }
 
@@ -302,7 +299,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
                 log.debug("{} interested resource(s)", interestedResources.size());
             }
 
-            committer.commit(this, interestedResources);
+            phaseEngines.getCommitter().commit(this, interestedResources);
 
             if (resourceManager.size() == 0 && TransactionManagerServices.getConfiguration().isDebugZeroResourceTransaction()) {
                 log.warn(buildZeroTransactionDebugMessage(activationStackTrace, new StackTrace()));
@@ -312,6 +309,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
                 log.debug("successfully committed {}", this);
             }
         } finally {
+            phaseEngines.release();
             fireAfterCompletionEvent();
         }
     }
@@ -335,6 +333,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
             }
         }
 
+        PhaseEngines phaseEngines = PhaseEngines.acquire(executor);
         try {
             try {
                 if (log.isDebugEnabled()) {
@@ -349,7 +348,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
                     }
                 }
 
-                rollbacker.rollback(this, resourcesToRollback);
+                phaseEngines.getRollbacker().rollback(this, resourcesToRollback);
 
                 if (log.isDebugEnabled()) {
                     log.debug("successfully rolled back {}", this);
@@ -360,6 +359,7 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
                 throw new BitronixSystemException("transaction committed instead of rolled back. Resources are now inconsistent !", ex);
             }
         } finally {
+            phaseEngines.release();
             fireAfterCompletionEvent();
         }
     }
@@ -426,8 +426,9 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
                 journal.force();
             }
 
-            if (status == Status.STATUS_ACTIVE) {
-                ManagementRegistrar.register("bitronix.tm:type=Transaction,Gtrid=" + resourceManager.getGtrid(), this);
+            if (status == Status.STATUS_ACTIVE && isTransactionMBeanEnabled()) {
+                jmxName = "bitronix.tm:type=Transaction,Gtrid=" + resourceManager.getGtrid();
+                ManagementRegistrar.register(jmxName, this);
             }
 
             fireTransactionStatusChangedEvent(oldStatus, status);
@@ -541,10 +542,11 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
      * Rollback resources after a phase 1 prepare failure. All resources must be rolled back as prepared ones
      * are in-doubt and non-prepared ones have started/ended work done that must also be cleaned.
      *
-     * @param rbEx the thrown rollback exception.
+     * @param rbEx       the thrown rollback exception.
+     * @param rollbacker the {@link Rollbacker} to use.
      * @throws BitronixSystemException when a resource could not rollback prepapared state.
      */
-    private void rollbackPrepareFailure(RollbackException rbEx) throws BitronixSystemException {
+    private void rollbackPrepareFailure(RollbackException rbEx, Rollbacker rollbacker) throws BitronixSystemException {
         List<XAResourceHolderState> interestedResources = resourceManager.getAllResources();
         try {
             rollbacker.rollback(this, interestedResources);
@@ -615,7 +617,9 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
             }
         }
 
-        ManagementRegistrar.unregister("bitronix.tm:type=Transaction,Gtrid=" + resourceManager.getGtrid());
+        if (jmxName != null) {
+            ManagementRegistrar.unregister(jmxName);
+        }
     }
 
     static String buildZeroTransactionDebugMessage(StackTrace activationStackTrace, StackTrace commitStackTrace) {
@@ -629,6 +633,16 @@ public class BitronixTransaction implements Transaction, BitronixTransactionMBea
         return sb.toString();
     }
 
+    /**
+     * In aggregate JMX mode, in-flight transactions are already exposed by the transaction manager's MXBean so a
+     * per-transaction MBean is only worth its registration cost when debugging.
+     *
+     * @return true if this transaction should be registered as its own MBean.
+     */
+    private static boolean isTransactionMBeanEnabled() {
+        return !TransactionManagerServices.getConfiguration().isAggregateTransactionJmx() || log.isDebugEnabled();
+    }
+
     private boolean isDone() {
         return switch (status) {
             case Status.STATUS_PREPARING,
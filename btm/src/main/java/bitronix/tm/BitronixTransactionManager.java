@@ -15,6 +15,7 @@
  */
 package bitronix.tm;
 
+import bitronix.tm.internal.BitronixRuntimeException;
 import bitronix.tm.internal.BitronixSystemException;
 import bitronix.tm.internal.ThreadContext;
 import bitronix.tm.internal.XAResourceManager;
@@ -24,18 +25,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+import javax.management.openmbean.*;
 import javax.naming.NamingException;
 import javax.naming.Reference;
 import javax.naming.Referenceable;
 import javax.naming.StringRefAddr;
 import javax.transaction.xa.XAException;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -43,12 +45,14 @@ import java.util.concurrent.atomic.AtomicReference;
  *
  * @author Ludovic Orban
  */
-public class BitronixTransactionManager implements TransactionManager, UserTransaction, Referenceable, Service {
+public class BitronixTransactionManager implements TransactionManager, UserTransaction, Referenceable, Service, BitronixTransactionManagerMXBean {
 
     private static final Logger log = LoggerFactory.getLogger(BitronixTransactionManager.class);
     private static final String MDC_GTRID_KEY = "btm-gtrid";
+    private static final String JMX_NAME = "bitronix.tm:type=TransactionManager";
+    private static final String[] IN_FLIGHT_TRANSACTION_ITEMS = {"gtrid", "status", "threadName", "startDate", "enlistedResources"};
 
-    private final SortedMap<BitronixTransaction, ClearContextSynchronization> inFlightTransactions;
+    private final Map<BitronixTransaction, ClearContextSynchronization> inFlightTransactions = new ConcurrentHashMap<>();
 
     private volatile boolean shuttingDown;
 
@@ -75,14 +79,14 @@ public class BitronixTransactionManager implements TransactionManager, UserTrans
                 throw new InitializationException("invalid configuration value for backgroundRecoveryInterval, found '" + backgroundRecoveryInterval + "' but it must be greater than 0");
             }
 
-            inFlightTransactions = createInFlightTransactionsMap();
-
             if (log.isDebugEnabled()) {
                 log.debug("recovery will run in the background every {} second(s)", backgroundRecoveryInterval);
             }
             LocalDateTime nextExecutionDate = Instant.ofEpochMilli(MonotonicClock.currentTimeMillis()).plus(backgroundRecoveryInterval)
                     .atZone(ZoneId.systemDefault()).toLocalDateTime();
             TransactionManagerServices.getTaskScheduler().scheduleRecovery(TransactionManagerServices.getRecoverer(), nextExecutionDate);
+
+            ManagementRegistrar.register(JMX_NAME, this);
         } catch (IOException ex) {
             throw new InitializationException("cannot open disk journal", ex);
         } catch (Exception ex) {
@@ -92,43 +96,6 @@ public class BitronixTransactionManager implements TransactionManager, UserTrans
         }
     }
 
-    private SortedMap<BitronixTransaction, ClearContextSynchronization> createInFlightTransactionsMap()
-            throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-        final boolean debug = log.isDebugEnabled();
-        if (debug) {
-            log.debug("Creating sorted memory storage for inflight transactions.");
-        }
-
-        final Comparator<BitronixTransaction> timestampSortComparator = (t1, t2) -> {
-            Long timestamp1 = t1.getResourceManager().getGtrid().extractTimestamp();
-            Long timestamp2 = t2.getResourceManager().getGtrid().extractTimestamp();
-
-            int compareTo = timestamp1.compareTo(timestamp2);
-            if (compareTo == 0 && !t1.getResourceManager().getGtrid().equals(t2.getResourceManager().getGtrid())) {
-                // if timestamps are equal, use the Uid as the tie-breaker.  the !equals() check above avoids an expensive string compare() here.
-                return t1.getGtrid().compareTo(t2.getGtrid());
-            }
-            return compareTo;
-        };
-
-        if (debug) {
-            log.debug("Attempting to use a concurrent sorted map of type 'ConcurrentSkipListMap' (from jre6 or custom supplied backport)");
-        }
-        try {
-            @SuppressWarnings("unchecked")
-            SortedMap<BitronixTransaction, ClearContextSynchronization> mapInstance = (SortedMap<BitronixTransaction, ClearContextSynchronization>)
-                    ClassLoaderUtils.loadClass("java.util.concurrent.ConcurrentSkipListMap").
-                            getConstructor(Comparator.class).newInstance(timestampSortComparator);
-            return mapInstance;
-        } catch (ClassNotFoundException e) {
-            if (debug) {
-                log.debug("Concurrent sorted map 'ConcurrentSkipListMap' is not available. Falling back to a synchronized TreeMap.");
-            }
-            return Collections.synchronizedSortedMap(
-                    new TreeMap<BitronixTransaction, ClearContextSynchronization>(timestampSortComparator));
-        }
-    }
-
     /**
      * Start a new transaction and bind the context to the calling thread.
      *
@@ -309,30 +276,79 @@ public class BitronixTransactionManager implements TransactionManager, UserTrans
      *
      * @return a count of in-flight transactions
      */
+    @Override
     public int getInFlightTransactionCount() {
         return inFlightTransactions.size();
     }
 
+    @Override
+    public long getJmxCoalescedCommandCount() {
+        return ManagementRegistrar.getCoalescedCommandCount();
+    }
+
+    @Override
+    public long getJmxDroppedCommandCount() {
+        return ManagementRegistrar.getDroppedCommandCount();
+    }
+
     /**
      * Return the timestamp of the oldest in-flight transaction.
      *
      * @return the timestamp or Long.MIN_VALUE if there is no in-flight transaction.
      */
+    @Override
     public long getOldestInFlightTransactionTimestamp() {
-        try {
-            // The inFlightTransactions map is sorted by timestamp, so the first transaction is always the oldest
-            BitronixTransaction oldestTransaction = inFlightTransactions.firstKey();
-            long oldestTimestamp = oldestTransaction.getResourceManager().getGtrid().extractTimestamp();
-            if (log.isDebugEnabled()) {
-                log.debug("oldest in-flight transaction's timestamp: {}", oldestTimestamp);
+        // Only the recoverer needs this value, so rather than keeping the in-flight transactions sorted on every
+        // begin and completion, the timestamp cached by each ClearContextSynchronization is scanned on demand.
+        long oldestTimestamp = Long.MAX_VALUE;
+        boolean found = false;
+        for (ClearContextSynchronization clearContextSynchronization : inFlightTransactions.values()) {
+            long timestamp = clearContextSynchronization.getTimestamp();
+            if (timestamp < oldestTimestamp) {
+                oldestTimestamp = timestamp;
             }
-            return oldestTimestamp;
+            found = true;
+        }
 
-        } catch (NoSuchElementException e) {
-            if (log.isDebugEnabled()) {
-                log.debug("oldest in-flight transaction's timestamp: " + Long.MIN_VALUE);
+        if (!found) {
+            oldestTimestamp = Long.MIN_VALUE;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("oldest in-flight transaction's timestamp: {}", oldestTimestamp);
+        }
+        return oldestTimestamp;
+    }
+
+    /**
+     * Build a table of the in-flight transactions. This is only done when the aggregate MXBean is queried so that
+     * beginning and completing transactions does not cost any JMX work.
+     *
+     * @return a table of the in-flight transactions indexed by GTRID.
+     * @see Configuration#isAggregateTransactionJmx()
+     */
+    @Override
+    public TabularData getInFlightTransactions() {
+        try {
+            CompositeType rowType = new CompositeType("BitronixTransaction", "an in-flight transaction",
+                    IN_FLIGHT_TRANSACTION_ITEMS, IN_FLIGHT_TRANSACTION_ITEMS,
+                    new OpenType<?>[]{SimpleType.STRING, SimpleType.STRING, SimpleType.STRING, SimpleType.STRING, ArrayType.getArrayType(SimpleType.STRING)});
+            TabularType tableType = new TabularType("InFlightTransactions", "the in-flight transactions", rowType, new String[]{"gtrid"});
+
+            TabularDataSupport table = new TabularDataSupport(tableType);
+            for (BitronixTransaction tx : inFlightTransactions.keySet()) {
+                LocalDateTime startDate = tx.getStartDate();
+                Object[] values = {
+                        tx.getGtrid(),
+                        tx.getStatusDescription(),
+                        tx.getThreadName(),
+                        startDate == null ? null : startDate.toString(),
+                        tx.getEnlistedResourcesUniqueNames().toArray(new String[0])
+                };
+                table.put(new CompositeDataSupport(rowType, IN_FLIGHT_TRANSACTION_ITEMS, values));
             }
-            return Long.MIN_VALUE;
+            return table;
+        } catch (OpenDataException ex) {
+            throw new BitronixRuntimeException("cannot build in-flight transactions table", ex);
         }
     }
 
@@ -362,12 +378,10 @@ public class BitronixTransactionManager implements TransactionManager, UserTrans
             return;
         }
 
-        // We're using an iterator, so we must synchronize on the collection
-        synchronized (inFlightTransactions) {
-            log.debug("dumping {} transaction context(s)", inFlightTransactions.size());
-            for (BitronixTransaction tx : inFlightTransactions.keySet()) {
-                log.debug(tx.toString());
-            }
+        // the iterator is weakly consistent, transactions begun or completed while dumping may or may not show up
+        log.debug("dumping {} transaction context(s)", inFlightTransactions.size());
+        for (BitronixTransaction tx : inFlightTransactions.keySet()) {
+            log.debug(tx.toString());
         }
     }
 
@@ -394,6 +408,8 @@ public class BitronixTransactionManager implements TransactionManager, UserTrans
         log.info("shutting down Bitronix Transaction Manager");
         internalShutdown();
 
+        ManagementRegistrar.unregister(JMX_NAME);
+
         if (log.isDebugEnabled()) {
             log.debug("shutting down resource loader");
         }
@@ -513,13 +529,19 @@ public class BitronixTransactionManager implements TransactionManager, UserTrans
 
     private final class ClearContextSynchronization implements Synchronization {
         private final BitronixTransaction currentTx;
+        private final long timestamp;
         private final AtomicReference<ThreadContext> threadContext;
 
         public ClearContextSynchronization(BitronixTransaction currentTx, ThreadContext threadContext) {
             this.currentTx = currentTx;
+            this.timestamp = currentTx.getResourceManager().getGtrid().extractTimestamp();
             this.threadContext = new AtomicReference<>(threadContext);
         }
 
+        public long getTimestamp() {
+            return timestamp;
+        }
+
         @Override
         public void beforeCompletion() {
         }
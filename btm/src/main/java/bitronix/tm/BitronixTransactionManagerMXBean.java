@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * {@link BitronixTransactionManager} Management interface, exposing all in-flight transactions through a single
+ * MXBean along with the counters of the asynchronous JMX registration.
+ *
+ * @see Configuration#isAggregateTransactionJmx()
+ */
+public interface BitronixTransactionManagerMXBean {
+
+    int getInFlightTransactionCount();
+
+    long getOldestInFlightTransactionTimestamp();
+
+    /**
+     * Build a snapshot of the in-flight transactions. The table is indexed by GTRID and each row contains the same
+     * attributes as a {@link BitronixTransactionMBean}.
+     *
+     * @return a table of the transactions in-flight at the time of the call.
+     */
+    TabularData getInFlightTransactions();
+
+    /**
+     * @return the amount of queued JMX commands superseded by a later command for the same name.
+     * @see bitronix.tm.utils.ManagementRegistrar#getCoalescedCommandCount()
+     */
+    long getJmxCoalescedCommandCount();
+
+    /**
+     * @return the amount of queued JMX registrations dropped because their instance was garbage collected.
+     * @see bitronix.tm.utils.ManagementRegistrar#getDroppedCommandCount()
+     */
+    long getJmxDroppedCommandCount();
+}
@@ -68,6 +68,7 @@ public class Configuration implements Service {
     private volatile Duration backgroundRecoveryInterval;
     private volatile boolean disableJmx;
     private volatile boolean synchronousJmxRegistration;
+    private volatile boolean aggregateTransactionJmx;
     private volatile String jndiUserTransactionName;
     private volatile String jndiTransactionSynchronizationRegistryName;
     private volatile String journal;
@@ -75,6 +76,7 @@ public class Configuration implements Service {
     private volatile boolean currentNodeOnlyRecovery;
     private volatile boolean allowMultipleLrc;
     private volatile String resourceConfigurationFilename;
+    private volatile int resourceInitConcurrency;
     private volatile boolean conservativeJournaling;
     private volatile String jdbcProxyFactoryClass;
 
@@ -124,6 +126,7 @@ public class Configuration implements Service {
             backgroundRecoveryInterval = getDuration(properties, "bitronix.tm.timer.backgroundRecoveryInterval", Duration.ofSeconds(60L));
             disableJmx = getBoolean(properties, "bitronix.tm.disableJmx", false);
             synchronousJmxRegistration = getBoolean(properties, "bitronix.tm.jmx.sync", false);
+            aggregateTransactionJmx = getBoolean(properties, "bitronix.tm.jmx.aggregateTransactions", false);
             jndiUserTransactionName = getString(properties, "bitronix.tm.jndi.userTransactionName", "java:comp/UserTransaction");
             jndiTransactionSynchronizationRegistryName = getString(properties, "bitronix.tm.jndi.transactionSynchronizationRegistryName", "java:comp/TransactionSynchronizationRegistry");
             journal = getString(properties, "bitronix.tm.journal", "disk");
@@ -131,6 +134,7 @@ public class Configuration implements Service {
             currentNodeOnlyRecovery = getBoolean(properties, "bitronix.tm.currentNodeOnlyRecovery", true);
             allowMultipleLrc = getBoolean(properties, "bitronix.tm.allowMultipleLrc", false);
             resourceConfigurationFilename = getString(properties, "bitronix.tm.resource.configuration", null);
+            resourceInitConcurrency = getInt(properties, "bitronix.tm.resource.initConcurrency", 1);
             conservativeJournaling = getBoolean(properties, "bitronix.tm.conservativeJournaling", false);
             jdbcProxyFactoryClass = getString(properties, "bitronix.tm.jdbcProxyFactoryClass", "auto");
         } catch (IOException ex) {
@@ -554,6 +558,34 @@ public class Configuration implements Service {
         return this;
     }
 
+    /**
+     * Should in-flight transactions be exposed through a single aggregate MXBean instead of one MBean per transaction?
+     * <p>
+     * The transaction manager always registers a {@link BitronixTransactionManagerMXBean} which builds its tabular
+     * view of the in-flight transactions when queried. When enabled, per-transaction MBeans are only registered when
+     * debug logging is enabled for {@link BitronixTransaction}.</p>
+     * <p>Property name:<br><b>bitronix.tm.jmx.aggregateTransactions -</b> <i>(defaults to false)</i></p>
+     *
+     * @return true if in-flight transactions should be exposed through a single aggregate MXBean.
+     */
+    public boolean isAggregateTransactionJmx() {
+        return aggregateTransactionJmx;
+    }
+
+    /**
+     * Set to true if in-flight transactions should be exposed through a single aggregate MXBean instead of one MBean
+     * per transaction.
+     *
+     * @param aggregateTransactionJmx true if in-flight transactions should be exposed through a single aggregate MXBean.
+     * @return this.
+     * @see #isAggregateTransactionJmx()
+     */
+    public Configuration setAggregateTransactionJmx(boolean aggregateTransactionJmx) {
+        checkNotStarted();
+        this.aggregateTransactionJmx = aggregateTransactionJmx;
+        return this;
+    }
+
     /**
      * Get the name the {@link jakarta.transaction.UserTransaction} should be bound under in the
      * {@link bitronix.tm.jndi.BitronixContext}.
@@ -762,6 +794,30 @@ public class Configuration implements Service {
         return this;
     }
 
+    /**
+     * Maximum amount of resources the {@link bitronix.tm.resource.ResourceLoader} initializes in parallel, each of
+     * them creating the connections of its pool.
+     * <p>Property name:<br><b>bitronix.tm.resource.initConcurrency -</b> <i>(defaults to 1)</i></p>
+     *
+     * @return the maximum amount of resources initialized in parallel.
+     */
+    public int getResourceInitConcurrency() {
+        return resourceInitConcurrency;
+    }
+
+    /**
+     * Set the maximum amount of resources the {@link bitronix.tm.resource.ResourceLoader} initializes in parallel.
+     *
+     * @param resourceInitConcurrency the maximum amount of resources initialized in parallel.
+     * @return this.
+     * @see #getResourceInitConcurrency()
+     */
+    public Configuration setResourceInitConcurrency(int resourceInitConcurrency) {
+        checkNotStarted();
+        this.resourceInitConcurrency = resourceInitConcurrency;
+        return this;
+    }
+
     /**
      * Build the server ID byte array that will be prepended in generated UIDs. Once built, the value is cached for the duration of the JVM lifespan.
      *
@@ -179,6 +179,7 @@ public class XAResourceHolderState {
             ended = true;
         }
 
+        xaResourceHolder.beforeEnd(xid);
         try {
             getXAResource().end(xid, flags);
             if (log.isDebugEnabled()) {
@@ -18,6 +18,7 @@ package bitronix.tm.internal;
 import bitronix.tm.BitronixXid;
 import bitronix.tm.TransactionManagerServices;
 import bitronix.tm.resource.common.XAResourceHolder;
+import bitronix.tm.utils.CompactScheduler;
 import bitronix.tm.utils.Scheduler;
 import bitronix.tm.utils.Uid;
 import bitronix.tm.utils.UidGenerator;
@@ -39,7 +40,9 @@ public class XAResourceManager {
     private static final Logger log = LoggerFactory.getLogger(XAResourceManager.class);
 
     private final Uid gtrid;
-    private final Scheduler<XAResourceHolderState> resources = new Scheduler<>();
+    private final Scheduler<XAResourceHolderState> resources = new CompactScheduler<>();
+    // the scheduler is only used by the thread running the transaction, management reads this immutable snapshot
+    private volatile Set<String> uniqueNames = Collections.emptySet();
 
     /**
      * Create a resource manager for the specified GTRID.
@@ -119,6 +122,14 @@ public class XAResourceManager {
         }
         // this must be done only after start() successfully returned
         resources.add(xaResourceHolderState, xaResourceHolderState.getTwoPcOrderingPosition());
+
+        if (toBeJoinedHolderState != null || !uniqueNames.contains(xaResourceHolderState.getUniqueName())) {
+            Set<String> names = new HashSet<>(resources.size());
+            for (XAResourceHolderState resource : resources) {
+                names.add(resource.getUniqueName());
+            }
+            uniqueNames = Collections.unmodifiableSet(names);
+        }
     }
 
     /**
@@ -280,6 +291,7 @@ public class XAResourceManager {
 
             it.remove();
         }
+        uniqueNames = Collections.emptySet();
     }
 
     /**
@@ -288,11 +300,7 @@ public class XAResourceManager {
      * @return a {@link Set} of unique names of all the enlisted {@link XAResourceHolderState}s.
      */
     public Set<String> collectUniqueNames() {
-        Set<String> names = new HashSet<>(resources.size());
-        for (XAResourceHolderState xaResourceHolderState : resources) {
-            names.add(xaResourceHolderState.getUniqueName());
-        }
-        return Collections.unmodifiableSet(names);
+        return uniqueNames;
     }
 
     public SortedSet<Integer> getNaturalOrderPositions() {
@@ -304,17 +312,25 @@ public class XAResourceManager {
     }
 
     public List<XAResourceHolderState> getNaturalOrderResourcesForPosition(Integer position) {
+        return getNaturalOrderResourcesForPosition(position.intValue());
+    }
+
+    public List<XAResourceHolderState> getNaturalOrderResourcesForPosition(int position) {
         return Collections.unmodifiableList(resources.getByNaturalOrderForPosition(position));
     }
 
     public List<XAResourceHolderState> getReverseOrderResourcesForPosition(Integer position) {
+        return getReverseOrderResourcesForPosition(position.intValue());
+    }
+
+    public List<XAResourceHolderState> getReverseOrderResourcesForPosition(int position) {
         return Collections.unmodifiableList(resources.getByReverseOrderForPosition(position));
     }
 
     public List<XAResourceHolderState> getAllResources() {
         List<XAResourceHolderState> result = new ArrayList<>(resources.size());
-        for (Integer positionKey : resources.getNaturalOrderPositions()) {
-            result.addAll(resources.getByNaturalOrderForPosition(positionKey));
+        for (XAResourceHolderState xaResourceHolderState : resources) {
+            result.add(xaResourceHolderState);
         }
         return Collections.unmodifiableList(result);
     }
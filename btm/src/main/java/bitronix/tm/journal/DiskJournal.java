@@ -71,7 +71,12 @@ public class DiskJournal implements Journal, MigratableJournal, ReadableJournal
 
     private final Lock conservativeJournalingLock = new ReentrantLock();
     private final ReadWriteLock swapForceLock = new ReentrantReadWriteLock(true);
-    private final Object positionLock = new Object();
+    private final Lock positionLock = new ReentrantLock();
+    /**
+     * Guards opening, closing and swapping the journal files. A lock rather than a monitor so that a virtual thread
+     * rolling the journal over does not pin its carrier while it writes to disk.
+     */
+    private final Lock journalLock = new ReentrantLock();
     private final AtomicBoolean needsForce;
 
     private final Configuration configuration;
@@ -117,7 +122,8 @@ public class DiskJournal implements Journal, MigratableJournal, ReadableJournal
                 conservativeJournalingLock.lock();
             }
 
-            synchronized (positionLock) {
+            positionLock.lock();
+            try {
                 boolean rollover = activeTla.get().setPositionAndAdvance(tlog);
                 if (rollover) {
                     // time to swap log files
@@ -132,6 +138,8 @@ public class DiskJournal implements Journal, MigratableJournal, ReadableJournal
 
                 // this read lock MUST be acquired under positionLock
                 swapForceLock.readLock().lock();
+            } finally {
+                positionLock.unlock();
             }
 
             try {
@@ -176,52 +184,57 @@ public class DiskJournal implements Journal, MigratableJournal, ReadableJournal
      * @throws java.io.IOException in case of disk IO failure.
      */
     @Override
-    public synchronized void open() throws IOException {
-        if (activeTla.get() != null) {
-            log.warn("disk journal already open");
-            return;
-        }
+    public void open() throws IOException {
+        journalLock.lock();
+        try {
+            if (activeTla.get() != null) {
+                log.warn("disk journal already open");
+                return;
+            }
 
-        File file1 = new File(configuration.getLogPart1Filename());
-        File file2 = new File(configuration.getLogPart2Filename());
+            File file1 = new File(configuration.getLogPart1Filename());
+            File file2 = new File(configuration.getLogPart2Filename());
 
-        if (!file1.exists() && !file2.exists()) {
-            log.debug("creation of log files");
-            createLogfile(file2, configuration.getMaxLogSizeInMb());
+            if (!file1.exists() && !file2.exists()) {
+                log.debug("creation of log files");
+                createLogfile(file2, configuration.getMaxLogSizeInMb());
 
-            // make the clock run a little before creating the 2nd log file to ensure the timestamp headers are not the same
-            long before = MonotonicClock.currentTimeMillis();
-            while (MonotonicClock.currentTimeMillis() < before + 100L) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException ex) { /* ignore */ }
-            }
+                // make the clock run a little before creating the 2nd log file to ensure the timestamp headers are not the same
+                long before = MonotonicClock.currentTimeMillis();
+                while (MonotonicClock.currentTimeMillis() < before + 100L) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ex) { /* ignore */ }
+                }
 
-            createLogfile(file1, configuration.getMaxLogSizeInMb());
-        }
+                createLogfile(file1, configuration.getMaxLogSizeInMb());
+            }
 
-        if (file1.length() != file2.length()) {
-            if (!configuration.isSkipCorruptedLogs()) {
-                throw new IOException("transaction log files are not of the same length, assuming they're corrupt");
+            if (file1.length() != file2.length()) {
+                if (!configuration.isSkipCorruptedLogs()) {
+                    throw new IOException("transaction log files are not of the same length, assuming they're corrupt");
+                }
+                log.error("transaction log files are not of the same length: corrupted files?");
             }
-            log.error("transaction log files are not of the same length: corrupted files?");
-        }
 
-        long maxFileLength = Math.max(file1.length(), file2.length());
-        if (log.isDebugEnabled()) {
-            log.debug("disk journal files max length: {}", maxFileLength);
-        }
+            long maxFileLength = Math.max(file1.length(), file2.length());
+            if (log.isDebugEnabled()) {
+                log.debug("disk journal files max length: {}", maxFileLength);
+            }
 
-        tla1 = new TransactionLogAppender(file1, maxFileLength);
-        tla2 = new TransactionLogAppender(file2, maxFileLength);
+            tla1 = new TransactionLogAppender(file1, maxFileLength);
+            tla2 = new TransactionLogAppender(file2, maxFileLength);
 
-        byte cleanStatus = pickActiveJournalFile(tla1, tla2);
-        if (cleanStatus != TransactionLogHeader.CLEAN_LOG_STATE) {
-            log.warn("active log file is unclean, did you call BitronixTransactionManager.shutdown() at the end of the last run?");
-        }
+            byte cleanStatus = pickActiveJournalFile(tla1, tla2);
+            if (cleanStatus != TransactionLogHeader.CLEAN_LOG_STATE) {
+                log.warn("active log file is unclean, did you call BitronixTransactionManager.shutdown() at the end of the last run?");
+            }
 
-        if (log.isDebugEnabled()) {
-            log.debug("disk journal opened");
+            if (log.isDebugEnabled()) {
+                log.debug("disk journal opened");
+            }
+        } finally {
+            journalLock.unlock();
         }
     }
 
@@ -231,27 +244,32 @@ public class DiskJournal implements Journal, MigratableJournal, ReadableJournal
      * @throws java.io.IOException in case of disk IO failure.
      */
     @Override
-    public synchronized void close() throws IOException {
-        if (activeTla.get() == null) {
-            return;
-        }
-
-        try {
-            tla1.close();
-        } catch (IOException ex) {
-            log.error("cannot close " + tla1, ex);
-        }
-        tla1 = null;
+    public void close() throws IOException {
+        journalLock.lock();
         try {
-            tla2.close();
-        } catch (IOException ex) {
-            log.error("cannot close " + tla2, ex);
-        }
-        tla2 = null;
-        activeTla.set(null);
+            if (activeTla.get() == null) {
+                return;
+            }
 
-        if (log.isDebugEnabled()) {
-            log.debug("disk journal closed");
+            try {
+                tla1.close();
+            } catch (IOException ex) {
+                log.error("cannot close " + tla1, ex);
+            }
+            tla1 = null;
+            try {
+                tla2.close();
+            } catch (IOException ex) {
+                log.error("cannot close " + tla2, ex);
+            }
+            tla2 = null;
+            activeTla.set(null);
+
+            if (log.isDebugEnabled()) {
+                log.debug("disk journal closed");
+            }
+        } finally {
+            journalLock.unlock();
         }
     }
 
@@ -299,13 +317,18 @@ public class DiskJournal implements Journal, MigratableJournal, ReadableJournal
      * {@inheritDoc}
      */
     @Override
-    public synchronized void unsafeReadRecordsInto(Collection<JournalRecord> target, boolean includeInvalid) throws IOException {
-        if (activeTla.get() == null) {
-            throw new IOException("cannot read records, disk logger is not open");
-        }
+    public void unsafeReadRecordsInto(Collection<JournalRecord> target, boolean includeInvalid) throws IOException {
+        journalLock.lock();
+        try {
+            if (activeTla.get() == null) {
+                throw new IOException("cannot read records, disk logger is not open");
+            }
 
-        for (Iterator<TransactionLogRecord> i = iterateRecords(activeTla.get(), includeInvalid); i.hasNext(); ) {
-            target.add(i.next());
+            for (Iterator<TransactionLogRecord> i = iterateRecords(activeTla.get(), includeInvalid); i.hasNext(); ) {
+                target.add(i.next());
+            }
+        } finally {
+            journalLock.unlock();
         }
     }
 
@@ -360,26 +383,31 @@ public class DiskJournal implements Journal, MigratableJournal, ReadableJournal
      * @throws java.io.IOException in case of disk IO failure.
      * @see TransactionLogHeader
      */
-    private synchronized byte pickActiveJournalFile(TransactionLogAppender tla1, TransactionLogAppender tla2) throws IOException {
-        if (tla1.getTimestamp() > tla2.getTimestamp()) {
-            activeTla.set(tla1);
-            if (log.isDebugEnabled()) {
-                log.debug("logging to file 1: {}", activeTla);
+    private byte pickActiveJournalFile(TransactionLogAppender tla1, TransactionLogAppender tla2) throws IOException {
+        journalLock.lock();
+        try {
+            if (tla1.getTimestamp() > tla2.getTimestamp()) {
+                activeTla.set(tla1);
+                if (log.isDebugEnabled()) {
+                    log.debug("logging to file 1: {}", activeTla);
+                }
+            } else {
+                activeTla.set(tla2);
+                if (log.isDebugEnabled()) {
+                    log.debug("logging to file 2: {}", activeTla);
+                }
             }
-        } else {
-            activeTla.set(tla2);
+
+            byte cleanState = activeTla.get().getState();
+            activeTla.get().setState(TransactionLogHeader.UNCLEAN_LOG_STATE);
             if (log.isDebugEnabled()) {
-                log.debug("logging to file 2: {}", activeTla);
+                log.debug("log file activated, forcing file state to disk");
             }
+            activeTla.get().force();
+            return cleanState;
+        } finally {
+            journalLock.unlock();
         }
-
-        byte cleanState = activeTla.get().getState();
-        activeTla.get().setState(TransactionLogHeader.UNCLEAN_LOG_STATE);
-        if (log.isDebugEnabled()) {
-            log.debug("log file activated, forcing file state to disk");
-        }
-        activeTla.get().force();
-        return cleanState;
     }
 
 
@@ -397,52 +425,62 @@ public class DiskJournal implements Journal, MigratableJournal, ReadableJournal
      *
      * @throws java.io.IOException in case of disk IO failure.
      */
-    private synchronized void swapJournalFiles() throws IOException {
-        if (log.isDebugEnabled()) {
-            log.debug("swapping journal log file to {}", getPassiveTransactionLogAppender());
-        }
+    private void swapJournalFiles() throws IOException {
+        journalLock.lock();
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("swapping journal log file to {}", getPassiveTransactionLogAppender());
+            }
 
-        //step 1
-        activeTla.get().force();
+            //step 1
+            activeTla.get().force();
 
-        //step 2
-        TransactionLogAppender passiveTla = getPassiveTransactionLogAppender();
-        passiveTla.rewind();
+            //step 2
+            TransactionLogAppender passiveTla = getPassiveTransactionLogAppender();
+            passiveTla.rewind();
 
-        List<TransactionLogRecord> danglingLogs = activeTla.get().getDanglingLogs();
-        for (TransactionLogRecord tlog : danglingLogs) {
-            boolean rolloverError = passiveTla.setPositionAndAdvance(tlog);
-            if (rolloverError) {
-                throw new IOException("moving in-flight transactions the rollover log file would have resulted in an overflow of that file");
+            List<TransactionLogRecord> danglingLogs = activeTla.get().getDanglingLogs();
+            for (TransactionLogRecord tlog : danglingLogs) {
+                boolean rolloverError = passiveTla.setPositionAndAdvance(tlog);
+                if (rolloverError) {
+                    throw new IOException("moving in-flight transactions the rollover log file would have resulted in an overflow of that file");
+                }
+                passiveTla.writeLog(tlog);
             }
-            passiveTla.writeLog(tlog);
-        }
 
-        if (log.isDebugEnabled()) {
-            log.debug("{} dangling record(s) copied to passive log file", danglingLogs.size());
-        }
+            if (log.isDebugEnabled()) {
+                log.debug("{} dangling record(s) copied to passive log file", danglingLogs.size());
+            }
 
-        activeTla.get().clearDanglingLogs();
+            activeTla.get().clearDanglingLogs();
 
-        //step 3
-        passiveTla.setTimestamp(MonotonicClock.currentTimeMillis());
+            //step 3
+            passiveTla.setTimestamp(MonotonicClock.currentTimeMillis());
 
-        //step 4
-        passiveTla.force();
+            //step 4
+            passiveTla.force();
 
-        //step 5
-        activeTla.set(passiveTla);
+            //step 5
+            activeTla.set(passiveTla);
 
-        if (log.isDebugEnabled()) {
-            log.debug("journal log files swapped");
+            if (log.isDebugEnabled()) {
+                log.debug("journal log files swapped");
+            }
+        } finally {
+            journalLock.unlock();
         }
     }
 
     /**
      * @return the TransactionFileAppender of the passive journal file.
      */
-    private synchronized TransactionLogAppender getPassiveTransactionLogAppender() {
-        return (tla1 == activeTla.get() ? tla2 : tla1);
+    private TransactionLogAppender getPassiveTransactionLogAppender() {
+        journalLock.lock();
+        try {
+            return (tla1 == activeTla.get() ? tla2 : tla1);
+        } finally {
+            journalLock.unlock();
+        }
     }
 
     /**
@@ -21,6 +21,7 @@ import bitronix.tm.utils.ClassLoaderUtils;
 import bitronix.tm.utils.InitializationException;
 import bitronix.tm.utils.PropertyUtils;
 import bitronix.tm.utils.Service;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import jakarta.jms.XAConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,12 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * XA resources pools configurator &amp; loader.
@@ -49,7 +56,8 @@ public class ResourceLoader implements Service {
     private static final String JDBC_RESOURCE_CLASSNAME = "bitronix.tm.resource.jdbc.PoolingDataSource";
     private static final String JMS_RESOURCE_CLASSNAME = "bitronix.tm.resource.jms.PoolingConnectionFactory";
 
-    private final Map<String, XAResourceProducer> resourcesByUniqueName = new HashMap<>();
+    // resources initialized in parallel are registered from the init threads
+    private final Map<String, XAResourceProducer> resourcesByUniqueName = new ConcurrentHashMap<>();
 
     public ResourceLoader() {
     }
@@ -163,14 +171,15 @@ public class ResourceLoader implements Service {
     }
 
     /**
-     * Initialize {@link XAResourceProducer}s given a set of properties.
+     * Initialize {@link XAResourceProducer}s given a set of properties. Up to
+     * {@link bitronix.tm.Configuration#getResourceInitConcurrency()} resources are initialized in parallel.
      *
      * @param properties the properties to use for initialization.
      * @return the number of resources which failed to initialize.
      */
     int initXAResourceProducers(Properties properties) {
         Map<String, List<PropertyPair>> entries = buildConfigurationEntriesMap(properties);
-        int errorCount = 0;
+        List<XAResourceProducer> producers = new ArrayList<>();
 
         for (Map.Entry<String, List<PropertyPair>> entry : entries.entrySet()) {
             String uniqueName = entry.getKey();
@@ -183,22 +192,90 @@ public class ResourceLoader implements Service {
                 }
                 continue;
             }
+            producers.add(producer);
+        }
 
-            if (log.isDebugEnabled()) {
-                log.debug("creating resource " + producer);
+        int errorCount = 0;
+        int concurrency = Math.min(producers.size(), TransactionManagerServices.getConfiguration().getResourceInitConcurrency());
+        if (concurrency > 1) {
+            errorCount = initXAResourceProducersInParallel(producers, concurrency);
+        } else {
+            for (XAResourceProducer producer : producers) {
+                if (!initXAResourceProducer(producer)) {
+                    errorCount++;
+                }
             }
-            try {
-                producer.init();
-            } catch (ResourceConfigurationException ex) {
-                log.warn("unable to create resource with unique name " + producer.getUniqueName(), ex);
-                producer.close();
-                errorCount++;
+        }
+        return errorCount;
+    }
+
+    /**
+     * Initialize {@link XAResourceProducer}s on a bounded amount of threads, waiting for all of them to be initialized.
+     * Each resource registers itself in the {@link ResourceRegistrar} once its pool is ready.
+     *
+     * @param producers the resources to initialize.
+     * @param concurrency the maximum amount of resources initialized in parallel.
+     * @return the number of resources which failed to initialize.
+     */
+    private int initXAResourceProducersInParallel(List<XAResourceProducer> producers, int concurrency) {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("bitronix-resource-init-%d")
+                .setDaemon(true)
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, threadFactory);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>(producers.size());
+            for (XAResourceProducer producer : producers) {
+                futures.add(executor.submit(() -> initXAResourceProducer(producer)));
             }
 
-            resourcesByUniqueName.put(producer.getUniqueName(), producer);
+            int errorCount = 0;
+            RuntimeException failure = null;
+            for (Future<Boolean> future : futures) {
+                try {
+                    if (!future.get()) {
+                        errorCount++;
+                    }
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : new InitializationException("cannot create resource", ex.getCause());
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InitializationException("interrupted while creating resources", ex);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return errorCount;
+        } finally {
+            executor.shutdown();
         }
+    }
 
-        return errorCount;
+    /**
+     * Initialize a {@link XAResourceProducer}, closing it when its configuration is invalid. The resource is added to
+     * the resources closed by {@link #shutdown()} as soon as it is initialized, so that it does not stay open when
+     * another resource fails to initialize.
+     *
+     * @param producer the resource to initialize.
+     * @return true if the resource got initialized, false otherwise.
+     */
+    private boolean initXAResourceProducer(XAResourceProducer producer) {
+        if (log.isDebugEnabled()) {
+            log.debug("creating resource " + producer);
+        }
+        try {
+            producer.init();
+            resourcesByUniqueName.put(producer.getUniqueName(), producer);
+            return true;
+        } catch (ResourceConfigurationException ex) {
+            log.warn("unable to create resource with unique name " + producer.getUniqueName(), ex);
+            producer.close();
+            resourcesByUniqueName.put(producer.getUniqueName(), producer);
+            return false;
+        }
     }
 
     /**
@@ -28,7 +28,9 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
@@ -53,6 +55,12 @@ public final class ResourceRegistrar {
 
     private static final Set<ProducerHolder> resources = new CopyOnWriteArraySet<>();
 
+    /**
+     * The {@link XAResourceHolder}s indexed by the identity of their {@link XAResource}, as registered by the producers
+     * creating them.
+     */
+    private static final Map<XAResourceKey, XAResourceHolder> xaResourceHolders = new ConcurrentHashMap<>();
+
     /**
      * Get a registered {@link XAResourceProducer}.
      *
@@ -93,6 +101,9 @@ public final class ResourceRegistrar {
     /**
      * Register a {@link XAResourceProducer}. If registration happens after the transaction manager started, incremental
      * recovery is run on that resource.
+     * <p>Resources can be registered concurrently: the unique name is reserved atomically so only one of two resources
+     * with the same name gets registered, and a resource registered while the transaction manager runs only becomes
+     * visible once its incremental recovery succeeded.</p>
      *
      * @param producer the {@link XAResourceProducer}.
      * @throws RecoveryException When an error happens during recovery.
@@ -142,8 +153,33 @@ public final class ResourceRegistrar {
         }
     }
 
+    /**
+     * Index a {@link XAResourceHolder} by its {@link XAResource} so that {@link #findXAResourceHolder(XAResource)} finds
+     * it with a single lookup. Producers call this when they create a holder, and must call
+     * {@link #unregisterXAResourceHolder(XAResourceHolder)} when it gets closed.
+     *
+     * @param xaResourceHolder the {@link XAResourceHolder} to index.
+     */
+    public static void registerXAResourceHolder(XAResourceHolder xaResourceHolder) {
+        xaResourceHolders.put(new XAResourceKey(xaResourceHolder.getXAResource()), xaResourceHolder);
+    }
+
+    /**
+     * Remove a {@link XAResourceHolder} from the index of {@link XAResource}s.
+     *
+     * @param xaResourceHolder the {@link XAResourceHolder} to remove.
+     */
+    public static void unregisterXAResourceHolder(XAResourceHolder xaResourceHolder) {
+        XAResource xaResource = xaResourceHolder.getXAResource();
+        if (xaResource != null) {
+            xaResourceHolders.remove(new XAResourceKey(xaResource), xaResourceHolder);
+        }
+    }
+
     /**
      * Find in the registered {@link XAResourceProducer}s the {@link XAResourceHolder} from which the specified {@link XAResource} comes from.
+     * The holders indexed by their producer are found with a single lookup, the registered producers are only asked in
+     * turn for the other ones.
      *
      * @param xaResource the {@link XAResource} to look for
      * @return the associated {@link XAResourceHolder} or null if it cannot be found.
@@ -151,6 +187,14 @@ public final class ResourceRegistrar {
     public static XAResourceHolder findXAResourceHolder(XAResource xaResource) {
         final boolean debug = log.isDebugEnabled();
 
+        final XAResourceHolder indexedHolder = xaResourceHolders.get(new XAResourceKey(xaResource));
+        if (indexedHolder != null) {
+            if (debug) {
+                log.debug("XAResource " + xaResource + " belongs to " + indexedHolder);
+            }
+            return indexedHolder;
+        }
+
         for (ProducerHolder holder : resources) {
             if (!holder.isInitialized()) {
                 continue;
@@ -175,6 +219,22 @@ public final class ResourceRegistrar {
     private ResourceRegistrar() {
     }
 
+    /**
+     * Key comparing {@link XAResource}s by identity, as some implementations consider distinct resources equal.
+     */
+    private record XAResourceKey(XAResource xaResource) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof XAResourceKey that && xaResource == that.xaResource;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(xaResource);
+        }
+    }
+
     /**
      * Implements a holder that maintains XAResourceProducers in a set only differentiating them by their unique names.
      */
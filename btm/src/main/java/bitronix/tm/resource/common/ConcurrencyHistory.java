@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sliding history of the peak concurrent demand of a {@link XAPool}, used by adaptive pool sizing. Time is split in
+ * slots of about a tenth of the window; the peak demand of each slot is kept for a whole period so that the demand
+ * observed one period earlier can be anticipated.
+ * <p>Demand is recorded without locking by the threads acquiring connections, slots are only closed by the thread
+ * adapting the pool size.</p>
+ */
+class ConcurrencyHistory {
+
+    private static final int SLOTS_PER_WINDOW = 10;
+    private static final int MAX_PERIOD_SLOTS = 10000;
+
+    private final long slotMillis;
+    private final int windowSlots;
+    private final int periodSlots;
+    private final int[] peaks;
+    private final AtomicInteger currentPeak = new AtomicInteger();
+    private long currentSlot = -1;
+
+    /**
+     * @param windowMillis the length of the window over which the recent peak demand is tracked.
+     * @param periodMillis the length of the period after which the demand is expected to recur, 0 to only track the
+     *                     recent peak demand.
+     */
+    ConcurrencyHistory(long windowMillis, long periodMillis) {
+        this.slotMillis = Math.max(1L, Math.max(windowMillis / SLOTS_PER_WINDOW, periodMillis / MAX_PERIOD_SLOTS));
+        this.windowSlots = (int) Math.max(1L, windowMillis / slotMillis);
+        int slotsInPeriod = (int) (periodMillis / slotMillis);
+        this.periodSlots = slotsInPeriod > windowSlots ? slotsInPeriod : 0;
+        this.peaks = new int[Math.max(windowSlots, periodSlots) + 1];
+    }
+
+    /**
+     * @return the length in milliseconds of a slot, which is the interval at which the pool size gets adapted.
+     */
+    long getSlotMillis() {
+        return slotMillis;
+    }
+
+    /**
+     * Record the amount of connections needed at a given time.
+     *
+     * @param demand the amount of connections needed.
+     */
+    void record(int demand) {
+        int peak;
+        while (demand > (peak = currentPeak.get())) {
+            if (currentPeak.compareAndSet(peak, demand)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Close the slots elapsed since the last call and compute the demand the pool should be ready for.
+     *
+     * @param now the current time in milliseconds.
+     * @param inUse the amount of connections currently in use, the initial demand of a new slot.
+     * @return the peak demand of the last window and of the window which followed one period earlier.
+     */
+    synchronized int peakDemand(long now, int inUse) {
+        long slot = now / slotMillis;
+        if (currentSlot < 0) {
+            currentSlot = slot;
+        }
+        if (slot > currentSlot) {
+            peaks[index(currentSlot)] = currentPeak.getAndSet(inUse);
+            // nothing was recorded during the slots elapsed without the pool size being adapted
+            for (long skipped = currentSlot + 1; skipped < slot && skipped <= currentSlot + peaks.length; skipped++) {
+                peaks[index(skipped)] = 0;
+            }
+            currentSlot = slot;
+        }
+
+        int demand = Math.max(currentPeak.get(), inUse);
+        for (int i = 1; i < windowSlots; i++) {
+            demand = Math.max(demand, peaks[index(slot - i)]);
+        }
+        if (periodSlots > 0) {
+            for (int i = 0; i <= windowSlots; i++) {
+                demand = Math.max(demand, peaks[index(slot - periodSlots + i)]);
+            }
+        }
+        return demand;
+    }
+
+    private int index(long slot) {
+        return (int) Math.floorMod(slot, (long) peaks.length);
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.common;
+
+import bitronix.tm.utils.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Saturation metrics of a {@link XAPool}: histograms of the time spent waiting for a connection, of the time
+ * connections stay out of the pool and of the time needed to create a physical connection, plus counters of the
+ * acquisition timeouts, of the idle connection tests and of the connections closed by the pool.
+ * <p>Durations are recorded in microseconds. Recording only costs a few atomic increments.</p>
+ */
+public class PoolMetrics {
+
+    private final Histogram acquisitionWaitTime = new Histogram();
+    private final Histogram leaseTime = new Histogram();
+    private final Histogram creationTime = new Histogram();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder validationCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @return the histogram of the time spent waiting for a connection from the pool, including the time spent
+     * growing the pool on the requesting thread.
+     */
+    public Histogram getAcquisitionWaitTime() {
+        return acquisitionWaitTime;
+    }
+
+    /**
+     * @return the histogram of the time connections stay out of the pool.
+     */
+    public Histogram getLeaseTime() {
+        return leaseTime;
+    }
+
+    /**
+     * @return the histogram of the time needed to create a physical connection.
+     */
+    public Histogram getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * @return the amount of requests for a connection which timed out.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * @return the amount of idle connections tested in the background.
+     */
+    public long getValidationCount() {
+        return validationCount.sum();
+    }
+
+    /**
+     * @return the amount of connections closed by the pool because they were idle, expired or broken.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    void recordAcquisitionWaitTime(long nanos) {
+        acquisitionWaitTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordLeaseTime(long nanos) {
+        leaseTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void recordCreationTime(long nanos) {
+        creationTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    void incrementTimeoutCount() {
+        timeoutCount.increment();
+    }
+
+    void incrementValidationCount() {
+        validationCount.increment();
+    }
+
+    void incrementEvictionCount() {
+        evictionCount.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "a PoolMetrics with " + acquisitionWaitTime.getCount() + " acquisition(s), " + getTimeoutCount() +
+                " timeout(s), " + creationTime.getCount() + " creation(s) and " + getEvictionCount() + " eviction(s)";
+    }
+
+}
@@ -17,6 +17,7 @@ package bitronix.tm.resource.common;
 
 import java.io.Serializable;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -37,8 +38,17 @@ public abstract class ResourceBean implements Serializable {
     private volatile int minPoolSize = 0;
     private volatile int maxIdleTime = 60;
     private volatile int maxLifeTime = 0;
+    private volatile int idleValidationInterval = 0;
     private volatile int acquireIncrement = 1;
+    private volatile boolean asynchronousGrowth = false;
+    private volatile int minIdlePoolSize = 0;
+    private volatile int growthConcurrency = 2;
+    private volatile int warmUpConcurrency = 1;
+    private volatile boolean adaptivePoolSizing = false;
+    private volatile int adaptiveSizingWindow = 300;
+    private volatile int adaptiveSizingPeriod = 86400;
     private volatile int acquisitionTimeout = 30;
+    private volatile int acquisitionTimeoutMillis = -1;
     private volatile boolean deferConnectionRelease = true;
     private volatile int acquisitionInterval = 1;
     private volatile boolean allowLocalTransactions = false;
@@ -209,6 +219,25 @@ public abstract class ResourceBean implements Serializable {
         this.maxLifeTime = maxLifeTime;
     }
 
+    /**
+     * @return the amount of seconds between background tests of the idle connections.
+     */
+    public int getIdleValidationInterval() {
+        return idleValidationInterval;
+    }
+
+    /**
+     * Define the amount of seconds between background tests of the idle connections. Connections that have been
+     * idle for at least that long are tested in parallel and the ones failing the test are closed and replaced, so
+     * that a broken connection is rarely handed out. This also keeps idle connections alive. Default value is 0,
+     * meaning that idle connections are not tested.
+     *
+     * @param idleValidationInterval the amount of seconds between background tests of the idle connections.
+     */
+    public void setIdleValidationInterval(int idleValidationInterval) {
+        this.idleValidationInterval = idleValidationInterval;
+    }
+
     /**
      * @return the amount of connections to be created at once when the pool needs to grow.
      */
@@ -225,6 +254,132 @@ public abstract class ResourceBean implements Serializable {
         this.acquireIncrement = acquireIncrement;
     }
 
+    /**
+     * @return true if the pool grows in the background rather than on the thread requesting a connection.
+     */
+    public boolean getAsynchronousGrowth() {
+        return asynchronousGrowth;
+    }
+
+    /**
+     * Define if the pool grows in the background rather than on the thread requesting a connection. When enabled,
+     * a thread finding the pool empty waits for the first connection created in the background instead of creating
+     * a whole acquire increment itself, and the pool is refilled as soon as the amount of idle connections drops
+     * below the min idle pool size.
+     *
+     * @param asynchronousGrowth true if the pool should grow in the background.
+     */
+    public void setAsynchronousGrowth(boolean asynchronousGrowth) {
+        this.asynchronousGrowth = asynchronousGrowth;
+    }
+
+    /**
+     * @return the amount of idle connections the pool tries to keep when it grows in the background.
+     */
+    public int getMinIdlePoolSize() {
+        return minIdlePoolSize;
+    }
+
+    /**
+     * Define the amount of idle connections the pool tries to keep when it grows in the background, within the
+     * max pool size.
+     *
+     * @param minIdlePoolSize the amount of idle connections the pool tries to keep.
+     */
+    public void setMinIdlePoolSize(int minIdlePoolSize) {
+        this.minIdlePoolSize = minIdlePoolSize;
+    }
+
+    /**
+     * @return the maximum amount of connections created or tested in parallel in the background.
+     */
+    public int getGrowthConcurrency() {
+        return growthConcurrency;
+    }
+
+    /**
+     * Define the maximum amount of connections created or tested in parallel in the background, when the pool grows
+     * in the background or validates its idle connections.
+     *
+     * @param growthConcurrency the maximum amount of connections created or tested in parallel.
+     */
+    public void setGrowthConcurrency(int growthConcurrency) {
+        this.growthConcurrency = growthConcurrency;
+    }
+
+    /**
+     * @return the maximum amount of connections created in parallel when the pool grows to its min pool size.
+     */
+    public int getWarmUpConcurrency() {
+        return warmUpConcurrency;
+    }
+
+    /**
+     * Define the maximum amount of connections created in parallel when the pool grows to its min pool size, which
+     * happens when it gets initialized and after idle connections got closed. Default value is 1, meaning that the
+     * connections are created one after the other.
+     *
+     * @param warmUpConcurrency the maximum amount of connections created in parallel.
+     */
+    public void setWarmUpConcurrency(int warmUpConcurrency) {
+        this.warmUpConcurrency = warmUpConcurrency;
+    }
+
+    /**
+     * @return true if the amount of connections kept warm in the pool follows the observed concurrency.
+     */
+    public boolean getAdaptivePoolSizing() {
+        return adaptivePoolSizing;
+    }
+
+    /**
+     * Define if the amount of connections kept warm in the pool follows the observed concurrency, within the min and
+     * max pool sizes. The pool then keeps as many connections as the peak amount of concurrent leases observed during
+     * the last adaptive sizing window, plus the peak observed during the following window one adaptive sizing period
+     * earlier so that recurring load finds warm connections. When utilisation stays low, the pool shrinks by at most
+     * acquire increment connections per tenth of the window.
+     *
+     * @param adaptivePoolSizing true if the pool size should follow the observed concurrency.
+     */
+    public void setAdaptivePoolSizing(boolean adaptivePoolSizing) {
+        this.adaptivePoolSizing = adaptivePoolSizing;
+    }
+
+    /**
+     * @return the amount of seconds of history over which the peak concurrency is tracked by adaptive pool sizing.
+     */
+    public int getAdaptiveSizingWindow() {
+        return adaptiveSizingWindow;
+    }
+
+    /**
+     * Define the amount of seconds of history over which the peak concurrency is tracked by adaptive pool sizing.
+     * The pool size is adapted every tenth of this window. Default value is 300.
+     *
+     * @param adaptiveSizingWindow the amount of seconds over which the peak concurrency is tracked.
+     */
+    public void setAdaptiveSizingWindow(int adaptiveSizingWindow) {
+        this.adaptiveSizingWindow = adaptiveSizingWindow;
+    }
+
+    /**
+     * @return the amount of seconds after which the load is expected to recur by adaptive pool sizing.
+     */
+    public int getAdaptiveSizingPeriod() {
+        return adaptiveSizingPeriod;
+    }
+
+    /**
+     * Define the amount of seconds after which the load is expected to recur by adaptive pool sizing. The pool warms
+     * up ahead of the peak concurrency observed one period earlier. Default value is 86400, one day. 0 disables
+     * warming up ahead of recurring load.
+     *
+     * @param adaptiveSizingPeriod the amount of seconds after which the load is expected to recur.
+     */
+    public void setAdaptiveSizingPeriod(int adaptiveSizingPeriod) {
+        this.adaptiveSizingPeriod = adaptiveSizingPeriod;
+    }
+
     /**
      * @return the amount of time in seconds a call to get a connection from the pool will wait when the pool is empty.
      */
@@ -241,6 +396,34 @@ public abstract class ResourceBean implements Serializable {
         this.acquisitionTimeout = acquisitionTimeout;
     }
 
+    /**
+     * @return the amount of time in milliseconds a call to get a connection from the pool will wait when the pool is
+     * empty, or -1 if the acquisition timeout in seconds applies.
+     */
+    public int getAcquisitionTimeoutMillis() {
+        return acquisitionTimeoutMillis;
+    }
+
+    /**
+     * Define the amount of time in milliseconds a call to get a connection from the pool will wait when the pool is
+     * empty. When set, it takes precedence over the acquisition timeout in seconds. Default value is -1.
+     *
+     * @param acquisitionTimeoutMillis the amount of time in milliseconds a call to get a connection from the pool
+     *                                 will wait when the pool is empty.
+     */
+    public void setAcquisitionTimeoutMillis(int acquisitionTimeoutMillis) {
+        this.acquisitionTimeoutMillis = acquisitionTimeoutMillis;
+    }
+
+    /**
+     * @return the amount of time in milliseconds a call to get a connection from the pool will wait when the pool is
+     * empty, according to the acquisition timeout in milliseconds if set or else in seconds.
+     */
+    public long getEffectiveAcquisitionTimeoutMillis() {
+        int timeoutMillis = getAcquisitionTimeoutMillis();
+        return timeoutMillis >= 0 ? timeoutMillis : TimeUnit.SECONDS.toMillis(getAcquisitionTimeout());
+    }
+
     /**
      * @return false only if the database can run many transactions on the same connection.
      */
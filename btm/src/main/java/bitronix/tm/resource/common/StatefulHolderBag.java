@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.common;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Container of the {@link XAStatefulHolder}s of a {@link XAPool} in which borrowing and returning a holder does not
+ * take any lock shared by the whole pool, modeled after HikariCP's ConcurrentBag.
+ * <p>Each holder is wrapped in an entry whose availability is claimed with a CAS. A borrowing thread first tries
+ * the holders it returned itself most recently, then scans all holders and finally waits for a returning thread to
+ * hand a holder off. Waiting threads are served in FIFO order: as long as a thread is waiting, a returned holder
+ * is transferred to the longest waiting one without becoming available to the others in between.</p>
+ * <p>The availability tracked here is only about the pool: a holder stays unavailable from the moment it is
+ * borrowed until its state changes back to {@link XAStatefulHolder.State#IN_POOL}.</p>
+ *
+ * @param <T> the type of pooled holders.
+ */
+final class StatefulHolderBag<T extends XAStatefulHolder<T>> implements Iterable<T> {
+
+    private static final int REMOVED = -1;
+    private static final int NOT_AVAILABLE = 0;
+    private static final int AVAILABLE = 1;
+
+    private static final int MAX_RECENTLY_RETURNED = 16;
+    private static final long MIN_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final List<Entry<T>> entries = new CopyOnWriteArrayList<>();
+    private final Map<T, Entry<T>> entriesByHolder = new ConcurrentHashMap<>();
+    private final ThreadLocal<List<WeakReference<Entry<T>>>> recentlyReturned = ThreadLocal.withInitial(ArrayList::new);
+    private final SynchronousQueue<Entry<T>> handOffQueue = new SynchronousQueue<>(true);
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicInteger availableCount = new AtomicInteger();
+
+    /**
+     * Add a new available holder.
+     *
+     * @param holder the holder to add.
+     */
+    void add(T holder) {
+        Entry<T> entry = new Entry<>(holder);
+        entriesByHolder.put(holder, entry);
+        entries.add(entry);
+        availableCount.incrementAndGet();
+        handOff(entry);
+    }
+
+    /**
+     * Claim an available holder, waiting for one to be returned if necessary.
+     *
+     * @param timeout  the maximum time to wait.
+     * @param timeUnit the unit of the timeout.
+     * @return the claimed holder or null if none became available before the timeout.
+     * @throws InterruptedException if the current thread is interrupted while waiting.
+     */
+    T borrow(long timeout, TimeUnit timeUnit) throws InterruptedException {
+        List<WeakReference<Entry<T>>> recentEntries = recentlyReturned.get();
+        for (int i = recentEntries.size() - 1; i >= 0; i--) {
+            Entry<T> entry = recentEntries.remove(i).get();
+            if (entry != null && claim(entry)) {
+                return borrowed(entry);
+            }
+        }
+
+        // register as a waiter before scanning so that a holder returned in the meantime is handed off
+        waiters.incrementAndGet();
+        try {
+            for (Entry<T> entry : entries) {
+                if (claim(entry)) {
+                    return borrowed(entry);
+                }
+            }
+
+            long remainingNanos = timeUnit.toNanos(timeout);
+            while (remainingNanos > MIN_WAIT_NANOS) {
+                long start = System.nanoTime();
+                Entry<T> entry = handOffQueue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                if (entry != null) {
+                    // handed off entries are claimed on behalf of the receiving thread
+                    return borrowed(entry);
+                }
+                remainingNanos -= System.nanoTime() - start;
+            }
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Make a borrowed holder available again, handing it off to a waiting thread if there is any.
+     *
+     * @param holder the holder to return.
+     * @return the amount of nanoseconds the holder has been borrowed for or -1 if it was not borrowed.
+     */
+    long requite(T holder) {
+        Entry<T> entry = entriesByHolder.get(holder);
+        if (entry == null || entry.state.get() != NOT_AVAILABLE) {
+            return -1;
+        }
+        long borrowedNanos = System.nanoTime() - entry.borrowTime;
+        if (transfer(entry)) {
+            return borrowedNanos;
+        }
+        if (release(entry) && !handOff(entry)) {
+            List<WeakReference<Entry<T>>> recentEntries = recentlyReturned.get();
+            if (recentEntries.size() < MAX_RECENTLY_RETURNED) {
+                recentEntries.add(new WeakReference<>(entry));
+            }
+        }
+        return borrowedNanos;
+    }
+
+    /**
+     * Claim a specific holder if it is available, for housekeeping purposes.
+     *
+     * @param holder the holder to claim.
+     * @return true if the holder was available and is now claimed by the caller.
+     */
+    boolean reserve(T holder) {
+        Entry<T> entry = entriesByHolder.get(holder);
+        return entry != null && claim(entry);
+    }
+
+    /**
+     * Make a holder claimed with {@link #reserve(XAStatefulHolder)} available again.
+     *
+     * @param holder the holder to release.
+     */
+    void unreserve(T holder) {
+        Entry<T> entry = release(holder);
+        if (entry != null) {
+            handOff(entry);
+        }
+    }
+
+    /**
+     * Forget about a holder.
+     *
+     * @param holder the holder to remove.
+     */
+    void remove(T holder) {
+        Entry<T> entry = entriesByHolder.remove(holder);
+        if (entry == null) {
+            return;
+        }
+        if (entry.state.getAndSet(REMOVED) == AVAILABLE) {
+            availableCount.decrementAndGet();
+        }
+        entries.remove(entry);
+    }
+
+    /**
+     * Forget about all holders.
+     */
+    void clear() {
+        for (Entry<T> entry : entries) {
+            remove(entry.holder);
+        }
+    }
+
+    /**
+     * @return a snapshot of all holders.
+     */
+    List<T> values() {
+        List<T> holders = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries) {
+            holders.add(entry.holder);
+        }
+        return holders;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final Iterator<Entry<T>> it = entries.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return it.next().holder;
+            }
+        };
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int availableCount() {
+        return availableCount.get();
+    }
+
+    int waitingCount() {
+        return waiters.get();
+    }
+
+    private T borrowed(Entry<T> entry) {
+        entry.borrowTime = System.nanoTime();
+        return entry.holder;
+    }
+
+    private boolean claim(Entry<T> entry) {
+        if (entry.state.compareAndSet(AVAILABLE, NOT_AVAILABLE)) {
+            availableCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private Entry<T> release(T holder) {
+        Entry<T> entry = entriesByHolder.get(holder);
+        if (entry == null || !release(entry)) {
+            return null;
+        }
+        return entry;
+    }
+
+    private boolean release(Entry<T> entry) {
+        if (entry.state.compareAndSet(NOT_AVAILABLE, AVAILABLE)) {
+            availableCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Try to hand an available entry off to a waiting thread. The caller keeps trying as long as there are waiters
+     * and the entry has not been claimed, as a waiter may still be scanning the entries before polling the queue.
+     * The entry is claimed before being offered so that {@link #availableCount()} never counts an entry which is
+     * already on its way to a waiting thread.
+     *
+     * @param entry the entry to hand off.
+     * @return true if the entry has been handed off or claimed by another thread.
+     */
+    private boolean handOff(Entry<T> entry) {
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (!claim(entry) || handOffQueue.offer(entry)) {
+                return true;
+            }
+            if (!release(entry)) {
+                // removed in the meantime
+                return true;
+            }
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(MIN_WAIT_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Transfer a claimed entry to the longest waiting thread, keeping it claimed until it has been received so that
+     * no thread arriving in the meantime can take it.
+     *
+     * @param entry the claimed entry to transfer.
+     * @return true if the entry has been received by a waiting thread or removed, false if no thread is waiting.
+     */
+    private boolean transfer(Entry<T> entry) {
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (entry.state.get() == REMOVED || handOffQueue.offer(entry)) {
+                return true;
+            }
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(MIN_WAIT_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry<T> {
+        private final T holder;
+        private final AtomicInteger state = new AtomicInteger(AVAILABLE);
+        private volatile long borrowTime;
+
+        private Entry(T holder) {
+            this.holder = holder;
+        }
+    }
+
+}
@@ -50,10 +50,11 @@ public final class TransactionContextHelper {
      * context for this thread.
      *
      * @param xaResourceHolder the {@link XAResourceHolder} to enlist.
+     * @return the state of the resource in the current transaction, or null if there is no global transaction context.
      * @throws SystemException   if an internal error happens.
      * @throws RollbackException if the current transaction has been marked as rollback only.
      */
-    public static void enlistInCurrentTransaction(XAResourceHolder<? extends XAResourceHolder> xaResourceHolder) throws SystemException, RollbackException {
+    public static XAResourceHolderState enlistInCurrentTransaction(XAResourceHolder<? extends XAResourceHolder> xaResourceHolder) throws SystemException, RollbackException {
         BitronixTransaction currentTransaction = currentTransaction();
         ResourceBean bean = xaResourceHolder.getResourceBean();
         if (log.isDebugEnabled()) {
@@ -70,9 +71,12 @@ public final class TransactionContextHelper {
             XAResourceHolderState alreadyEnlistedXAResourceHolderState = TransactionContextHelper.getLatestAlreadyEnlistedXAResourceHolderState(xaResourceHolder, currentTransaction);
             if (alreadyEnlistedXAResourceHolderState == null || alreadyEnlistedXAResourceHolderState.isEnded()) {
                 currentTransaction.enlistResource(xaResourceHolder.getXAResource());
-            } else if (log.isDebugEnabled()) {
+                return TransactionContextHelper.getLatestAlreadyEnlistedXAResourceHolderState(xaResourceHolder, currentTransaction);
+            }
+            if (log.isDebugEnabled()) {
                 log.debug("avoiding re-enlistment of already enlisted but not ended resource " + alreadyEnlistedXAResourceHolderState);
             }
+            return alreadyEnlistedXAResourceHolderState;
         } else {
             if (bean.getAllowLocalTransactions()) {
                 if (log.isDebugEnabled()) {
@@ -84,6 +88,7 @@ public final class TransactionContextHelper {
                         "your resource supports this.");
             }
         }
+        return null;
     }
 
     /**
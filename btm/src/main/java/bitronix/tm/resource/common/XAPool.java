@@ -25,6 +25,7 @@ import bitronix.tm.recovery.RecoveryException;
 import bitronix.tm.resource.common.XAStatefulHolder.State;
 import bitronix.tm.utils.MonotonicClock;
 import bitronix.tm.utils.Uid;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import jakarta.transaction.Synchronization;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,13 +34,20 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Generic XA pool. {@link XAStatefulHolder} instances are created by the {@link XAPool} out of a
@@ -52,33 +60,55 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>> implements StateChangeListener<T> {
 
     private static final Logger log = LoggerFactory.getLogger(XAPool.class);
+    private static final long MIN_CREATION_BACKOFF_MS = 100L;
+    private static final long MAX_CREATION_BACKOFF_MS = 10_000L;
 
     /**
-     * The stateTransitionLock makes sure that transitions of XAStatefulHolders from one state to another
-     * (movement from one pool to another) are atomic.  A ReentrantReadWriteLock allows any number of
-     * readers to access and iterate the accessiblePool and inaccessiblePool without blocking.  Readers
-     * are blocked only for the instant when a connection is moving between pools.  These locks are
-     * sufficient to protect the collections, which are left intentionally non-concurrent so that failures
-     * in locking logic will be quickly uncovered.
+     * All the XAStatefulHolders of this pool. Borrowing an IN_POOL one and returning it does not take any lock,
+     * the pool-wide poolGrowthShrinkLock is only used to grow, shrink or close the pool.
      */
-    private final ReentrantReadWriteLock stateTransitionLock = new ReentrantReadWriteLock();
-
-    private final BlockingDeque<T> availablePool = new LinkedBlockingDeque<>();
-    private final Queue<T> accessiblePool = new LinkedList<>();
-    private final Queue<T> inaccessiblePool = new LinkedList<>();
-
-    private final AtomicInteger poolSize = new AtomicInteger();
+    private final StatefulHolderBag<T> holders = new StatefulHolderBag<>();
 
     /**
      * This map is used to implement the connection sharing feature of Bitronix.
      */
     private final Map<Uid, StatefulHolderThreadLocal<T>> statefulHolderTransactionMap = new ConcurrentHashMap<>();
 
+    /**
+     * The NOT_ACCESSIBLE XAStatefulHolders indexed by the GTRID of the transaction they are enlisted in, and the GTRID
+     * each of them is indexed under, so that a connection can be recycled without scanning the pool.
+     */
+    private final Map<Uid, Set<T>> notAccessibleHolders = new ConcurrentHashMap<>();
+    private final Map<T, Uid> notAccessibleGtrids = new ConcurrentHashMap<>();
+
     private final ResourceBean bean;
     private final XAResourceProducer<R, T> xaResourceProducer;
     private final Object xaFactory;
     private final AtomicBoolean failed = new AtomicBoolean();
-    private final Object poolGrowthShrinkLock = new Object();
+    private final Lock poolGrowthShrinkLock = new ReentrantLock();
+
+    /**
+     * Executor creating connections when the pool grows in the background, and the amount of connections it has
+     * been asked to create but has not added to the pool yet.
+     */
+    private volatile ExecutorService maintenanceExecutor;
+    private final AtomicInteger pendingGrowth = new AtomicInteger();
+
+    /**
+     * The amount of connections the maintenance executor failed to create in a row, and the last reason why. A
+     * background creation following a failure first backs off, and a thread timing out while waiting for a connection
+     * gets the reason as cause.
+     */
+    private final AtomicInteger consecutiveCreationFailures = new AtomicInteger();
+    private volatile Exception lastCreationFailure;
+    private final PoolMetrics metrics = new PoolMetrics();
+
+    /**
+     * History of the peak concurrent demand when adaptive pool sizing is enabled, and the amount of connections it
+     * currently keeps warm in the pool.
+     */
+    private final ConcurrencyHistory concurrencyHistory;
+    private volatile int adaptiveMinPoolSize;
 
     public XAPool(XAResourceProducer<R, T> xaResourceProducer, ResourceBean bean, Object xaFactory) throws Exception {
         this.xaResourceProducer = xaResourceProducer;
@@ -90,12 +120,26 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
             throw new IllegalArgumentException("cannot create a pool with a connection acquisition increment less than 1, configured value is " + bean.getAcquireIncrement());
         }
 
+        if (bean.getAdaptivePoolSizing()) {
+            this.concurrencyHistory = new ConcurrencyHistory(TimeUnit.SECONDS.toMillis(bean.getAdaptiveSizingWindow()),
+                    TimeUnit.SECONDS.toMillis(bean.getAdaptiveSizingPeriod()));
+        } else {
+            this.concurrencyHistory = null;
+        }
+        this.adaptiveMinPoolSize = bean.getMinPoolSize();
+
         if (xaFactory == null) {
             this.xaFactory = XAFactoryHelper.createXAFactory(bean);
         } else {
             this.xaFactory = xaFactory;
         }
-        init();
+        try {
+            init();
+        } catch (Exception ex) {
+            // the connections created before the failure would never be closed as the pool is not handed out
+            close();
+            throw ex;
+        }
 
         if (bean.getIgnoreRecoveryFailures()) {
             log.warn("resource '" + bean.getUniqueName() + "' is configured to ignore recovery failures, make sure this setting is not enabled on a production system!");
@@ -108,13 +152,20 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
         if (bean.getMaxIdleTime() > 0 || bean.getMaxLifeTime() > 0) {
             TransactionManagerServices.getTaskScheduler().schedulePoolShrinking(this);
         }
+        if (bean.getIdleValidationInterval() > 0) {
+            TransactionManagerServices.getTaskScheduler().schedulePoolValidation(this);
+        }
+        if (concurrencyHistory != null) {
+            TransactionManagerServices.getTaskScheduler().schedulePoolSizing(this);
+        }
     }
 
     /**
      * Close down and cleanup this XAPool instance.
      */
     public void close() {
-        synchronized (poolGrowthShrinkLock) {
+        poolGrowthShrinkLock.lock();
+        try {
             if (log.isDebugEnabled()) {
                 log.debug("closing all connections of " + this);
             }
@@ -131,17 +182,24 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
 
             if (TransactionManagerServices.isTaskSchedulerRunning()) {
                 TransactionManagerServices.getTaskScheduler().cancelPoolShrinking(this);
+                TransactionManagerServices.getTaskScheduler().cancelPoolValidation(this);
+                TransactionManagerServices.getTaskScheduler().cancelPoolSizing(this);
             }
 
-            stateTransitionLock.writeLock().lock();
-            try {
-                availablePool.clear();
-                accessiblePool.clear();
-                inaccessiblePool.clear();
-                failed.set(false);
-            } finally {
-                stateTransitionLock.writeLock().unlock();
+            if (maintenanceExecutor != null) {
+                // connections created by already submitted tasks get closed instead of being added to the pool
+                maintenanceExecutor.shutdown();
+                maintenanceExecutor = null;
             }
+
+            holders.clear();
+            notAccessibleHolders.clear();
+            notAccessibleGtrids.clear();
+            consecutiveCreationFailures.set(0);
+            lastCreationFailure = null;
+            failed.set(false);
+        } finally {
+            poolGrowthShrinkLock.unlock();
         }
     }
 
@@ -163,13 +221,18 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
      * @throws Exception throw in the pool is unrecoverable or a timeout occurs getting a connection
      */
     public Object getConnectionHandle(boolean recycle) throws Exception {
-        synchronized (poolGrowthShrinkLock) {
-            if (isFailed()) {
-                reinitializePool();
+        if (isFailed()) {
+            poolGrowthShrinkLock.lock();
+            try {
+                if (isFailed()) {
+                    reinitializePool();
+                }
+            } finally {
+                poolGrowthShrinkLock.unlock();
             }
         }
 
-        long remainingTimeMs = TimeUnit.SECONDS.toMillis(bean.getAcquisitionTimeout());
+        long remainingTimeMs = bean.getEffectiveAcquisitionTimeoutMillis();
         while (true) {
             long before = MonotonicClock.currentTimeMillis();
             T xaStatefulHolder = null;
@@ -202,6 +265,7 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
                 if (log.isDebugEnabled()) {
                     log.debug("connection is invalid, trying to close it", ex);
                 }
+                metrics.incrementEvictionCount();
                 try {
                     xaStatefulHolder.close();
                 } catch (Exception ex2) {
@@ -234,78 +298,46 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
                 remainingTimeMs -= (now - before);
                 before = now;
                 if (remainingTimeMs <= 0) {
-                    throw new BitronixRuntimeException("cannot get valid connection from " + this + " after trying for " + bean.getAcquisitionTimeout() + "s", ex);
+                    metrics.incrementTimeoutCount();
+                    throw new BitronixRuntimeException("cannot get valid connection from " + this + " after trying for " + bean.getEffectiveAcquisitionTimeoutMillis() + "ms", ex);
                 }
             }
         } // while true
     }
 
     /* -----------------------------------------------------------------------------------
-     * Pool Transition.  stateChanging() and stateChanged() obtain the stateTransitionLock
-     * write lock to prevent other threads from iterating the pools while a coonection is
-     * in transition from one pool to another.  However, this window of time is extremely
-     * small, and in general allows high-concurrency.
+     * Pool Transition.  The transitions to IN_POOL and CLOSED matter to the pool: the former
+     * makes the XAStatefulHolder available again, the latter removes it from the pool. The
+     * transitions to and from NOT_ACCESSIBLE maintain the index of recyclable connections.
      * ----------------------------------------------------------------------------------*/
 
     @Override
     public void stateChanging(T source, State currentState, State futureState) {
-        stateTransitionLock.writeLock().lock();
-        try {
-            switch (currentState) {
-                case IN_POOL:
-                    // no-op.  calling availablePool.remove(source) here is reduncant because it was
-                    // already removed when availablePool.poll() was called.
-                    break;
-                case ACCESSIBLE:
-                    if (log.isDebugEnabled()) {
-                        log.debug("removed " + source + " from the accessible pool");
-                    }
-                    accessiblePool.remove(source);
-                    break;
-                case NOT_ACCESSIBLE:
-                    if (log.isDebugEnabled()) {
-                        log.debug("removed " + source + " from the inaccessible pool");
-                    }
-                    inaccessiblePool.remove(source);
-                    break;
-                case CLOSED:
-                    break;
-            }
-        } finally {
-            stateTransitionLock.writeLock().unlock();
-        }
+        // no-op, an IN_POOL XAStatefulHolder has already been claimed by the time it changes state.
     }
 
     @Override
     public void stateChanged(T source, State oldState, State newState) {
-        stateTransitionLock.writeLock().lock();
-        try {
-            switch (newState) {
-                case IN_POOL -> {
-                    if (log.isDebugEnabled()) {
-                        log.debug("added " + source + " to the available pool");
-                    }
-                    availablePool.addFirst(source);
-                }
-                case ACCESSIBLE -> {
-                    if (log.isDebugEnabled()) {
-                        log.debug("added " + source + " to the accessible pool");
-                    }
-                    accessiblePool.add(source);
-                }
-                case NOT_ACCESSIBLE -> {
-                    if (log.isDebugEnabled()) {
-                        log.debug("added " + source + " to the inaccessible pool");
-                    }
-                    inaccessiblePool.add(source);
+        if (oldState == State.NOT_ACCESSIBLE) {
+            unindexNotAccessible(source);
+        }
+        switch (newState) {
+            case IN_POOL -> {
+                if (log.isDebugEnabled()) {
+                    log.debug("added " + source + " to the available pool");
                 }
-                case CLOSED -> {
-                    source.removeStateChangeEventListener(this);
-                    poolSize.decrementAndGet();
+                long leaseNanos = holders.requite(source);
+                if (leaseNanos >= 0) {
+                    metrics.recordLeaseTime(leaseNanos);
                 }
             }
-        } finally {
-            stateTransitionLock.writeLock().unlock();
+            case NOT_ACCESSIBLE -> indexNotAccessible(source);
+            case CLOSED -> {
+                source.removeStateChangeEventListener(this);
+                holders.remove(source);
+            }
+            default -> {
+            }
         }
     }
 
@@ -316,19 +348,33 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
     /**
      * Get an IN_POOL connection.  This method blocks for up to remainingTimeMs milliseconds
      * for someone to return or create a connection in the available pool.  If remainingTimeMs
-     * expires, an exception is thrown.  It does not use stateTransitionLock.readLock() because
-     * the availablePool [a LinkedBlockingQueue] is already thread safe.
+     * expires, an exception is thrown.
      *
      * @param remainingTimeMs the maximum time to wait for a connection
      * @return a connection from the available (IN_POOL) pool
      * @throws Exception thrown in no connection is available before the remainingTimeMs time expires
      */
     private T getInPool(long remainingTimeMs) throws Exception {
-        if (inPoolSize() == 0) {
-            if (log.isDebugEnabled()) {
-                log.debug("no more free connections in " + this + ", trying to grow it");
+        long start = System.nanoTime();
+        boolean asynchronousGrowth = bean.getAsynchronousGrowth();
+        int inPoolSize = inPoolSize();
+        if (concurrencyHistory != null) {
+            // a request finding no idle connection asks for an acquire increment more, for the next peak to find them warm
+            concurrencyHistory.record(totalPoolSize() - inPoolSize + holders.waitingCount() + (inPoolSize == 0 ? bean.getAcquireIncrement() : 1));
+        }
+        if (inPoolSize == 0) {
+            if (asynchronousGrowth) {
+                if (log.isDebugEnabled()) {
+                    log.debug("no more free connections in " + this + ", growing it in the background");
+                }
+                // this thread is about to wait too
+                growInBackground(Math.max(bean.getAcquireIncrement(), holders.waitingCount() + 1));
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("no more free connections in " + this + ", trying to grow it");
+                }
+                grow();
             }
-            grow();
         }
 
         if (log.isDebugEnabled()) {
@@ -336,19 +382,31 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
         }
 
         try {
-            T xaStatefulHolder = availablePool.pollFirst(remainingTimeMs, TimeUnit.MILLISECONDS);
+            T xaStatefulHolder = holders.borrow(remainingTimeMs, TimeUnit.MILLISECONDS);
             if (xaStatefulHolder == null) {
                 if (TransactionManagerServices.isTransactionManagerRunning()) {
                     TransactionManagerServices.getTransactionManager().dumpTransactionContexts();
                 }
 
-                throw new BitronixRuntimeException("XA pool of resource " + bean.getUniqueName() + " still empty after " + bean.getAcquisitionTimeout() + "s wait time");
+                metrics.incrementTimeoutCount();
+                String message = "XA pool of resource " + bean.getUniqueName() + " still empty after " + bean.getEffectiveAcquisitionTimeoutMillis() + "ms wait time";
+                Exception creationFailure = lastCreationFailure;
+                if (creationFailure != null) {
+                    throw new BitronixRuntimeException(message + ", connections could not be created", creationFailure);
+                }
+                throw new BitronixRuntimeException(message);
             }
 
+            metrics.recordAcquisitionWaitTime(System.nanoTime() - start);
+
             if (expireStatefulHolder(xaStatefulHolder, false)) {
                 return getInPool(remainingTimeMs);
             }
 
+            if (asynchronousGrowth && inPoolSize() < bean.getMinIdlePoolSize()) {
+                growInBackground(0);
+            }
+
             return xaStatefulHolder;
         } catch (InterruptedException e) {
             throw new BitronixRuntimeException("Interrupted while waiting for IN_POOL connection.");
@@ -356,9 +414,7 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
     }
 
     /**
-     * Get a XAStatefulHolder (connection) from the NOT_ACCESSIBLE pool.  This method obtains
-     * the stateTransitionLock.readLock() which prevents any modification during iteration, but
-     * allows multiple threads to iterate simultaneously.
+     * Get a XAStatefulHolder (connection) in NOT_ACCESSIBLE state enlisted in the current transaction.
      *
      * @return a connection, or null if there are no connections in the inaccessible pool for the current transaction
      */
@@ -378,24 +434,23 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
             log.debug("current transaction GTRID is [" + currentTxGtrid + "]");
         }
 
-        stateTransitionLock.readLock().lock();
-        try {
-            for (T xaStatefulHolder : inaccessiblePool) {
-                if (log.isDebugEnabled()) {
-                    log.debug("found a connection in NOT_ACCESSIBLE state: " + xaStatefulHolder);
-                }
-                if (containsXAResourceHolderMatchingGtrid(xaStatefulHolder, currentTxGtrid)) {
+        Set<T> candidates = notAccessibleHolders.get(currentTxGtrid);
+        if (candidates != null) {
+            for (T xaStatefulHolder : candidates) {
+                // the index is updated after the state changed, skip a connection that just got recycled
+                if (xaStatefulHolder.getState() == State.NOT_ACCESSIBLE) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("found a connection in NOT_ACCESSIBLE state enlisted in this transaction: " + xaStatefulHolder);
+                    }
                     return xaStatefulHolder;
                 }
             }
+        }
 
-            if (log.isDebugEnabled()) {
-                log.debug("no NOT_ACCESSIBLE connection enlisted in this transaction");
-            }
-            return null;
-        } finally {
-            stateTransitionLock.readLock().unlock();
+        if (log.isDebugEnabled()) {
+            log.debug("no NOT_ACCESSIBLE connection enlisted in this transaction");
         }
+        return null;
     }
 
     /**
@@ -435,6 +490,39 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
         return null;
     }
 
+    /**
+     * Index a connection which became NOT_ACCESSIBLE under the GTRID of the current transaction. A connection only
+     * becomes NOT_ACCESSIBLE when its handle gets closed in the transaction it is enlisted in.
+     *
+     * @param xaStatefulHolder the NOT_ACCESSIBLE connection.
+     */
+    private void indexNotAccessible(T xaStatefulHolder) {
+        BitronixTransaction transaction = TransactionContextHelper.currentTransaction();
+        if (transaction == null) {
+            return;
+        }
+        Uid currentTxGtrid = transaction.getResourceManager().getGtrid();
+        if (!containsXAResourceHolderMatchingGtrid(xaStatefulHolder, currentTxGtrid)) {
+            return;
+        }
+        notAccessibleGtrids.put(xaStatefulHolder, currentTxGtrid);
+        notAccessibleHolders.compute(currentTxGtrid, (key, candidates) -> {
+            Set<T> indexed = candidates == null ? ConcurrentHashMap.newKeySet() : candidates;
+            indexed.add(xaStatefulHolder);
+            return indexed;
+        });
+    }
+
+    private void unindexNotAccessible(T xaStatefulHolder) {
+        Uid gtrid = notAccessibleGtrids.remove(xaStatefulHolder);
+        if (gtrid != null) {
+            notAccessibleHolders.computeIfPresent(gtrid, (key, candidates) -> {
+                candidates.remove(xaStatefulHolder);
+                return candidates.isEmpty() ? null : candidates;
+            });
+        }
+    }
+
     private boolean containsXAResourceHolderMatchingGtrid(T xaStatefulHolder, final Uid currentTxGtrid) {
         List<? extends XAResourceHolder<? extends XAResourceHolder>> xaResourceHolders = xaStatefulHolder.getXAResourceHolders();
         if (log.isDebugEnabled()) {
@@ -482,7 +570,8 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
      * @throws Exception thrown if creating a pooled objects fails
      */
     private void grow() throws Exception {
-        synchronized (poolGrowthShrinkLock) {
+        poolGrowthShrinkLock.lock();
+        try {
             final long totalPoolSize = totalPoolSize();
             if (totalPoolSize < bean.getMaxPoolSize()) {
                 long increment = bean.getAcquireIncrement();
@@ -502,28 +591,227 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
                 }
             }
 
-            if (totalPoolSize() < bean.getMinPoolSize()) {
+            if (totalPoolSize() < minPoolSize()) {
                 growUntilMinPoolSize();
             }
+        } finally {
+            poolGrowthShrinkLock.unlock();
         }
     }
 
     private void growUntilMinPoolSize() throws Exception {
-        synchronized (poolGrowthShrinkLock) {
+        poolGrowthShrinkLock.lock();
+        try {
             if (log.isDebugEnabled()) {
-                log.debug("growing " + this + " to minimum pool size " + bean.getMinPoolSize());
+                log.debug("growing " + this + " to minimum pool size " + minPoolSize());
+            }
+            int missing = minPoolSize() - totalPoolSize();
+            if (missing > 1 && bean.getWarmUpConcurrency() > 1) {
+                createPooledObjectsInParallel(missing);
+                return;
             }
-            for (int i = totalPoolSize(); i < bean.getMinPoolSize(); i++) {
+            for (int i = 0; i < missing; i++) {
                 createPooledObject(xaFactory);
             }
+        } finally {
+            poolGrowthShrinkLock.unlock();
+        }
+    }
+
+    /**
+     * Create connections on at most warm up concurrency threads and add them to the pool once they are all created.
+     * When some of them cannot be created, the others are added to the pool anyway before the first error is thrown.
+     * When the calling thread is interrupted, the creations which did not start yet are skipped and the ones in progress
+     * are waited for so that their connections are added to the pool too before the interruption is thrown.
+     *
+     * @param count the amount of connections to create.
+     * @throws Exception thrown if creating a pooled object fails
+     */
+    private void createPooledObjectsInParallel(int count) throws Exception {
+        int threads = Math.min(count, bean.getWarmUpConcurrency());
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("bitronix-pool-warm-up-" + bean.getUniqueName() + "-%d")
+                .setDaemon(true)
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory);
+        try {
+            AtomicBoolean interrupted = new AtomicBoolean();
+            List<Future<T>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> interrupted.get() ? null : createPooledConnection(xaFactory)));
+            }
+
+            Exception failure = null;
+            InterruptedException interruption = null;
+            for (Future<T> future : futures) {
+                while (true) {
+                    try {
+                        T xaStatefulHolder = future.get();
+                        if (xaStatefulHolder != null) {
+                            xaStatefulHolder.addStateChangeEventListener(this);
+                            holders.add(xaStatefulHolder);
+                        }
+                        break;
+                    } catch (ExecutionException ex) {
+                        if (failure == null) {
+                            failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                        }
+                        break;
+                    } catch (InterruptedException ex) {
+                        if (interruption == null) {
+                            interruption = ex;
+                        }
+                        interrupted.set(true);
+                    }
+                }
+            }
+            if (interruption != null) {
+                throw interruption;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
     private void createPooledObject(Object xaFactory) throws Exception {
-        T xaStatefulHolder = xaResourceProducer.createPooledConnection(xaFactory, bean);
+        T xaStatefulHolder = createPooledConnection(xaFactory);
         xaStatefulHolder.addStateChangeEventListener(this);
-        availablePool.addLast(xaStatefulHolder);
-        poolSize.incrementAndGet();
+        holders.add(xaStatefulHolder);
+    }
+
+    /**
+     * Ask the maintenance executor to create enough connections to reach the min pool size and the min idle pool size,
+     * to serve the threads currently waiting for a connection and to reach the requested increment, within the max
+     * pool size. Connections already being created are taken into account. Each connection is added to the pool as
+     * soon as it is created, so a waiting thread does not have to wait for all of them.
+     *
+     * @param increment the minimum amount of connections that should be being created.
+     */
+    private void growInBackground(int increment) {
+        while (true) {
+            int pending = pendingGrowth.get();
+            int wanted = Math.max(minPoolSize() - totalPoolSize(), bean.getMinIdlePoolSize() - inPoolSize());
+            wanted = Math.max(Math.max(wanted, holders.waitingCount()), increment) - pending;
+            int count = Math.min(wanted, bean.getMaxPoolSize() - totalPoolSize() - pending);
+            if (count <= 0) {
+                return;
+            }
+
+            if (pendingGrowth.compareAndSet(pending, pending + count)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("creating " + count + " connection(s) in the background for " + this);
+                }
+                ExecutorService executor = getMaintenanceExecutor();
+                for (int i = 0; i < count; i++) {
+                    executor.execute(() -> createPooledObjectInBackground(executor));
+                }
+                return;
+            }
+        }
+    }
+
+    private ExecutorService getMaintenanceExecutor() {
+        ExecutorService executor = maintenanceExecutor;
+        if (executor == null) {
+            poolGrowthShrinkLock.lock();
+            try {
+                executor = maintenanceExecutor;
+                if (executor == null) {
+                    int threads = Math.max(1, bean.getGrowthConcurrency());
+                    ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                            .setNameFormat("bitronix-pool-maintenance-" + bean.getUniqueName() + "-%d")
+                            .setDaemon(true)
+                            .build();
+                    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, 10L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), threadFactory);
+                    threadPoolExecutor.allowCoreThreadTimeOut(true);
+                    executor = threadPoolExecutor;
+                    maintenanceExecutor = executor;
+                }
+            } finally {
+                poolGrowthShrinkLock.unlock();
+            }
+        }
+        return executor;
+    }
+
+    private T createPooledConnection(Object xaFactory) throws Exception {
+        long start = System.nanoTime();
+        T xaStatefulHolder = xaResourceProducer.createPooledConnection(xaFactory, bean);
+        metrics.recordCreationTime(System.nanoTime() - start);
+        return xaStatefulHolder;
+    }
+
+    private void createPooledObjectInBackground(ExecutorService executor) {
+        boolean creationFailed = false;
+        try {
+            // still counted as pending, so that the threads asking for more connections meanwhile do not retry sooner
+            backOffAfterCreationFailures();
+            if (executor.isShutdown()) {
+                return;
+            }
+            T xaStatefulHolder = createPooledConnection(xaFactory);
+            consecutiveCreationFailures.set(0);
+            lastCreationFailure = null;
+            boolean added = false;
+            poolGrowthShrinkLock.lock();
+            try {
+                if (!executor.isShutdown()) {
+                    xaStatefulHolder.addStateChangeEventListener(this);
+                    holders.add(xaStatefulHolder);
+                    added = true;
+                }
+            } finally {
+                poolGrowthShrinkLock.unlock();
+            }
+            if (!added) {
+                if (log.isDebugEnabled()) {
+                    log.debug("closing connection created in the background after " + this + " got closed");
+                }
+                xaStatefulHolder.close();
+            }
+        } catch (Exception ex) {
+            creationFailed = true;
+            lastCreationFailure = ex;
+            int failures = consecutiveCreationFailures.incrementAndGet();
+            if (failures == 1) {
+                log.warn("error creating a connection in the background for " + this, ex);
+            } else if (log.isDebugEnabled()) {
+                log.debug("error creating a connection in the background for " + this + ", " + failures + " consecutive failure(s)", ex);
+            }
+        } finally {
+            pendingGrowth.decrementAndGet();
+        }
+
+        // the connection may have been handed off to a waiting thread while still counted as pending, and a failed
+        // creation is retried for the threads still waiting
+        if ((creationFailed || inPoolSize() < bean.getMinIdlePoolSize()) && !executor.isShutdown()) {
+            growInBackground(0);
+        }
+    }
+
+    /**
+     * Wait before creating a connection in the background when the previous creations failed, from
+     * {@link #MIN_CREATION_BACKOFF_MS} after the first failure, doubling with every failure up to
+     * {@link #MAX_CREATION_BACKOFF_MS}.
+     */
+    private void backOffAfterCreationFailures() {
+        int failures = consecutiveCreationFailures.get();
+        if (failures == 0) {
+            return;
+        }
+        long backoffMs = Math.min(MIN_CREATION_BACKOFF_MS << Math.min(failures - 1, 16), MAX_CREATION_BACKOFF_MS);
+        if (log.isDebugEnabled()) {
+            log.debug("waiting " + backoffMs + "ms before creating a connection in the background for " + this + " after " + failures + " failure(s)");
+        }
+        try {
+            Thread.sleep(backoffMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /* ------------------------------------------------------------------------
@@ -536,7 +824,8 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
     }
 
     public void shrink() throws Exception {
-        synchronized (poolGrowthShrinkLock) {
+        poolGrowthShrinkLock.lock();
+        try {
             if (log.isDebugEnabled()) {
                 log.debug("shrinking " + this);
             }
@@ -544,11 +833,14 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
             if (log.isDebugEnabled()) {
                 log.debug("shrunk " + this);
             }
+        } finally {
+            poolGrowthShrinkLock.unlock();
         }
     }
 
     public void reset() throws Exception {
-        synchronized (poolGrowthShrinkLock) {
+        poolGrowthShrinkLock.lock();
+        try {
             if (log.isDebugEnabled()) {
                 log.debug("resetting " + this);
             }
@@ -556,22 +848,22 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
             if (log.isDebugEnabled()) {
                 log.debug("reset " + this);
             }
+        } finally {
+            poolGrowthShrinkLock.unlock();
         }
     }
 
     private void expireOrCloseStatefulHolders(boolean forceClose) throws Exception {
         int closed = 0;
-        final int availableSize = availablePool.size();
-        for (int i = 0; i < availableSize; i++) {
-            T xaStatefulHolder = availablePool.pollFirst();
-            if (xaStatefulHolder == null) {
-                break;
+        for (T xaStatefulHolder : holders) {
+            if (!holders.reserve(xaStatefulHolder)) {
+                continue;
             }
 
             if (expireStatefulHolder(xaStatefulHolder, forceClose)) {
                 closed++;
             } else {
-                availablePool.addLast(xaStatefulHolder);
+                holders.unreserve(xaStatefulHolder);
             }
         }
 
@@ -580,6 +872,90 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
         }
 
         growUntilMinPoolSize();
+        if (bean.getAsynchronousGrowth()) {
+            growInBackground(0);
+        }
+    }
+
+    /* ------------------------------------------------------------------------
+     * Idle connection validation.
+     * ------------------------------------------------------------------------*/
+
+    public LocalDateTime getNextValidationDate() {
+        return Instant.ofEpochMilli(MonotonicClock.currentTimeMillis() + TimeUnit.SECONDS.toMillis(bean.getIdleValidationInterval()))
+                .atZone(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    /**
+     * Test in the background the connections which have been idle for at least the idle validation interval. The
+     * connections failing their test are closed and replaced, the others go back to the pool. A connection cannot be
+     * acquired while it is being tested.
+     */
+    public void validateIdle() {
+        long idleSince = MonotonicClock.currentTimeMillis() - TimeUnit.SECONDS.toMillis(bean.getIdleValidationInterval());
+        ExecutorService executor = null;
+        int submitted = 0;
+        for (T xaStatefulHolder : holders) {
+            long lastRelease = xaStatefulHolder.getLastReleaseDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (lastRelease > idleSince || !holders.reserve(xaStatefulHolder)) {
+                continue;
+            }
+
+            if (executor == null) {
+                executor = getMaintenanceExecutor();
+            }
+            try {
+                executor.execute(() -> validateStatefulHolder(xaStatefulHolder));
+                submitted++;
+            } catch (RejectedExecutionException ex) {
+                // the pool got closed in the meantime
+                holders.unreserve(xaStatefulHolder);
+                break;
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("validating " + submitted + " idle connection(s) of " + this);
+        }
+    }
+
+    private void validateStatefulHolder(T xaStatefulHolder) {
+        metrics.incrementValidationCount();
+        try {
+            xaStatefulHolder.validate();
+            holders.unreserve(xaStatefulHolder);
+            return;
+        } catch (Exception ex) {
+            if (log.isDebugEnabled()) {
+                log.debug("idle connection " + xaStatefulHolder + " failed its test, closing it", ex);
+            }
+        }
+        if (xaStatefulHolder.getState() == State.CLOSED) {
+            // the pool got closed in the meantime
+            return;
+        }
+        metrics.incrementEvictionCount();
+
+        try {
+            xaStatefulHolder.close();
+        } catch (Exception ex) {
+            if (log.isDebugEnabled()) {
+                log.debug("exception while trying to close invalid connection, ignoring it", ex);
+            }
+        }
+        if (xaStatefulHolder.getState() != State.CLOSED) {
+            stateChanged(xaStatefulHolder, xaStatefulHolder.getState(), State.CLOSED);
+        }
+
+        try {
+            if (bean.getAsynchronousGrowth()) {
+                growInBackground(0);
+            } else if (totalPoolSize() < minPoolSize()) {
+                growUntilMinPoolSize();
+            }
+        } catch (Exception ex) {
+            log.warn("error replacing invalid connection of " + this, ex);
+        }
     }
 
     private boolean expireStatefulHolder(T xaStatefulHolder, boolean forceClose) {
@@ -598,6 +974,9 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
             log.debug("checking if connection can be closed: " + xaStatefulHolder + " - closing time: " + expirationTime + ", now time: " + now);
         }
         if (expirationTime <= now || forceClose) {
+            if (!forceClose) {
+                metrics.incrementEvictionCount();
+            }
             try {
                 xaStatefulHolder.close();
             } catch (Exception ex) {
@@ -608,6 +987,86 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
         return false;
     }
 
+    /* ------------------------------------------------------------------------
+     * Adaptive pool sizing.
+     * ------------------------------------------------------------------------*/
+
+    public LocalDateTime getNextSizingDate() {
+        return Instant.ofEpochMilli(MonotonicClock.currentTimeMillis() + concurrencyHistory.getSlotMillis())
+                .atZone(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    /**
+     * Adapt the amount of connections kept warm to the peak concurrency observed during the adaptive sizing window
+     * and expected from one adaptive sizing period earlier, within the min and max pool sizes. The pool grows at once
+     * to a higher amount, while it only closes up to acquire increment idle connections above a lower amount, the
+     * ones idle for the longest time first.
+     *
+     * @throws Exception thrown if creating a pooled object fails
+     */
+    public void adaptSize() throws Exception {
+        poolGrowthShrinkLock.lock();
+        try {
+            int demand = concurrencyHistory.peakDemand(MonotonicClock.currentTimeMillis(), totalPoolSize() - inPoolSize());
+            int target = Math.min(Math.max(demand, bean.getMinPoolSize()), bean.getMaxPoolSize());
+            int current = adaptiveMinPoolSize;
+            int warm = target >= current ? target : Math.max(target, current - bean.getAcquireIncrement());
+            if (warm != current) {
+                if (log.isDebugEnabled()) {
+                    log.debug("adapting minimum pool size of " + this + " from " + current + " to " + warm + " connection(s) for a peak demand of " + demand);
+                }
+                adaptiveMinPoolSize = warm;
+            }
+
+            if (totalPoolSize() < warm) {
+                if (bean.getAsynchronousGrowth()) {
+                    growInBackground(0);
+                } else {
+                    growUntilMinPoolSize();
+                }
+                return;
+            }
+
+            int excess = Math.min(totalPoolSize() - warm, bean.getAcquireIncrement());
+            if (excess <= 0) {
+                return;
+            }
+            List<T> idleHolders = new ArrayList<>();
+            for (T xaStatefulHolder : holders) {
+                if (xaStatefulHolder.getState() == State.IN_POOL) {
+                    idleHolders.add(xaStatefulHolder);
+                }
+            }
+            idleHolders.sort(Comparator.comparing(XAStatefulHolder::getLastReleaseDate));
+
+            int closed = 0;
+            for (T xaStatefulHolder : idleHolders) {
+                if (closed >= excess) {
+                    break;
+                }
+                if (!holders.reserve(xaStatefulHolder)) {
+                    continue;
+                }
+                metrics.incrementEvictionCount();
+                try {
+                    xaStatefulHolder.close();
+                } catch (Exception ex) {
+                    log.warn("error closing " + xaStatefulHolder, ex);
+                }
+                closed++;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("closed " + closed + " idle connection(s) above the minimum pool size of " + this);
+            }
+        } finally {
+            poolGrowthShrinkLock.unlock();
+        }
+    }
+
+    private int minPoolSize() {
+        return concurrencyHistory == null ? bean.getMinPoolSize() : adaptiveMinPoolSize;
+    }
+
     private void reinitializePool() {
         try {
             if (log.isDebugEnabled()) {
@@ -660,7 +1119,7 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
      * @return the total size of this pool
      */
     public int totalPoolSize() {
-        return poolSize.get();
+        return holders.size();
     }
 
     /**
@@ -669,20 +1128,26 @@ public class XAPool<R extends XAResourceHolder<R>, T extends XAStatefulHolder<T>
      * @return the number of available objects
      */
     public int inPoolSize() {
-        return availablePool.size();
+        return holders.availableCount();
+    }
+
+    /**
+     * @return the amount of connections the pool keeps warm: the min pool size, or the amount chosen by adaptive pool
+     * sizing when it is enabled.
+     */
+    public int getEffectiveMinPoolSize() {
+        return minPoolSize();
+    }
+
+    /**
+     * @return the saturation metrics of this pool.
+     */
+    public PoolMetrics getMetrics() {
+        return metrics;
     }
 
     public List<T> getXAResourceHolders() {
-        stateTransitionLock.readLock().lock();
-        try {
-            List<T> holders = new ArrayList<>();
-            holders.addAll(availablePool);
-            holders.addAll(accessiblePool);
-            holders.addAll(inaccessiblePool);
-            return holders;
-        } finally {
-            stateTransitionLock.readLock().unlock();
-        }
+        return holders.values();
     }
 
     @Override
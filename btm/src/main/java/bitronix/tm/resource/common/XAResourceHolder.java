@@ -19,6 +19,7 @@ import bitronix.tm.BitronixXid;
 import bitronix.tm.internal.XAResourceHolderState;
 import bitronix.tm.utils.Uid;
 
+import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 
 /**
@@ -85,6 +86,16 @@ public interface XAResourceHolder<T extends XAResourceHolder<T>> extends XAState
      */
     void removeXAResourceHolderState(BitronixXid xid);
 
+    /**
+     * Called right before the branch of a transaction is ended or suspended on the {@link XAResource}, while work
+     * done on this resource still belongs to the branch. The default implementation does nothing.
+     *
+     * @param xid the Xid of the branch about to be ended.
+     * @throws XAException if the work pending on this resource could not be done in the branch.
+     */
+    default void beforeEnd(BitronixXid xid) throws XAException {
+    }
+
     /**
      * Check if this {@link XAResourceHolder} contains a state for a specific {@link XAResourceHolder}.
      * In other words: has the {@link XAResourceHolder}'s {@link XAResource} been enlisted in some transaction ?
@@ -106,6 +106,15 @@ public interface XAStatefulHolder<T extends XAStatefulHolder<T>> {
      */
     void close() throws Exception;
 
+    /**
+     * Test the physical connection that this {@link bitronix.tm.resource.common.XAStatefulHolder} represents while
+     * it is idle in the pool, which also keeps it alive. The default implementation does nothing.
+     *
+     * @throws Exception a resource-specific exception thrown when the physical connection is not usable anymore.
+     */
+    default void validate() throws Exception {
+    }
+
     /**
      * Get the date at which this object was last released to the pool. This is required to check if it is eligible
      * for discard when the containing pool needs to shrink.
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc;
+
+import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interning table of the prepared statement {@link CacheKey}s of a pool.
+ * <p>
+ * Looking up a statement that has already been prepared returns the canonical key
+ * without allocating anything, the requested attributes being compared against the
+ * known variants of the SQL text. A key is only created the first time a statement
+ * is seen. The table is emptied when it grows past its maximum size so that dynamic
+ * SQL cannot make it grow forever.
+ * </p>
+ */
+public final class CacheKeyTable {
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, CacheKey[]> keys = new ConcurrentHashMap<>();
+
+    public CacheKeyTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public CacheKey get(String sql) {
+        return intern(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, null, null, null, null);
+    }
+
+    public CacheKey get(String sql, int autoGeneratedKeys) {
+        return intern(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, null, autoGeneratedKeys, null, null);
+    }
+
+    public CacheKey get(String sql, int resultSetType, int resultSetConcurrency) {
+        return intern(sql, resultSetType, resultSetConcurrency, null, null, null, null);
+    }
+
+    public CacheKey get(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+        return intern(sql, resultSetType, resultSetConcurrency, resultSetHoldability, null, null, null);
+    }
+
+    public CacheKey get(String sql, int[] columnIndexes) {
+        return intern(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, null, null, columnIndexes, null);
+    }
+
+    public CacheKey get(String sql, String[] columnNames) {
+        return intern(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, null, null, null, columnNames);
+    }
+
+    /**
+     * @return the number of distinct SQL texts currently interned.
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    private CacheKey intern(String sql, int resultSetType, int resultSetConcurrency, Integer resultSetHoldability,
+                            Integer autoGeneratedKeys, int[] columnIndexes, String[] columnNames) {
+        if (sql != null) {
+            CacheKey[] variants = keys.get(sql);
+            if (variants != null) {
+                for (CacheKey variant : variants) {
+                    if (variant.matches(resultSetType, resultSetConcurrency, resultSetHoldability, autoGeneratedKeys, columnIndexes, columnNames)) {
+                        return variant;
+                    }
+                }
+            }
+        }
+
+        CacheKey key = new CacheKey(sql, resultSetType, resultSetConcurrency, resultSetHoldability, autoGeneratedKeys,
+                columnIndexes == null ? null : columnIndexes.clone(), columnNames == null ? null : columnNames.clone());
+        if (sql != null) {
+            if (keys.size() >= maxSize) {
+                keys.clear();
+            }
+            keys.merge(sql, new CacheKey[] { key }, CacheKeyTable::append);
+        }
+        return key;
+    }
+
+    private static CacheKey[] append(CacheKey[] variants, CacheKey[] added) {
+        CacheKey[] merged = Arrays.copyOf(variants, variants.length + added.length);
+        System.arraycopy(added, 0, merged, variants.length, added.length);
+        return merged;
+    }
+
+}
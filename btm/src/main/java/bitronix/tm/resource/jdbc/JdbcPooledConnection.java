@@ -15,20 +15,29 @@
  */
 package bitronix.tm.resource.jdbc;
 
+import bitronix.tm.BitronixTransaction;
+import bitronix.tm.BitronixXid;
 import bitronix.tm.internal.BitronixRollbackSystemException;
+import bitronix.tm.internal.BitronixRuntimeException;
 import bitronix.tm.internal.BitronixSystemException;
+import bitronix.tm.internal.BitronixXAException;
+import bitronix.tm.internal.XAResourceHolderState;
 import bitronix.tm.resource.common.*;
 import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
 import bitronix.tm.resource.jdbc.lrc.LrcXADataSource;
 import bitronix.tm.resource.jdbc.proxy.JdbcProxyFactory;
+import bitronix.tm.resource.jdbc.proxy.PreparedStatementJavaProxy;
 import bitronix.tm.utils.ManagementRegistrar;
 import bitronix.tm.utils.MonotonicClock;
 import bitronix.tm.utils.Scheduler;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
 import jakarta.transaction.SystemException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.XAConnection;
+import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import java.lang.reflect.Method;
 import java.sql.*;
@@ -38,7 +47,11 @@ import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implementation of a JDBC pooled connection wrapping vendor's {@link XAConnection} implementation.
@@ -55,8 +68,29 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
     private final XAResource xaResource;
     private final PoolingDataSource poolingDataSource;
     private final LruStatementCache statementsCache;
-    private final List<Statement> uncachedStatements;
+    private final StatementUsageTracker statementUsageTracker;
+    private final Lock statementWarmUpLock = new ReentrantLock();
+    private volatile boolean statementWarmUpStopped;
+    private final boolean statementResetTracked;
+    private final int coalescedUpdatesBatchSize;
+    private final boolean resultSetUnwrapped;
+    private PreparedStatement coalescedStatement;
+    private int coalescedUpdates;
+    private boolean coalescingStopped;
+    private BitronixTransaction coalescingTransaction;
+    /* registered by the application thread, cleared by the thread ending the transaction */
+    private final Lock uncachedStatementsLock = new ReentrantLock();
+    private final Set<Statement> uncachedStatements;
+    private final Set<Statement> generatedKeysStatements;
+    private final Lock leakedStatementsLock = new ReentrantLock();
+    private final List<Statement> leakedStatements = new ArrayList<>();
     private volatile int usageCount;
+    private volatile long lastUsedTime;
+
+    /* last known values of the physical connection's settings, to avoid resetting them when they did not change */
+    private volatile int currentIsolationLevel = -1;
+    private volatile int currentHoldability = -1;
+    private volatile Boolean currentAutoCommit;
 
     /* management */
     private final String jmxName;
@@ -69,9 +103,15 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
         this.poolingDataSource = poolingDataSource;
         this.xaConnection = xaConnection;
         this.xaResource = xaConnection.getXAResource();
-        this.statementsCache = new LruStatementCache(poolingDataSource.getPreparedStatementCacheSize());
-        this.uncachedStatements = Collections.synchronizedList(new ArrayList<>());
-        this.lastReleaseDate = Instant.ofEpochMilli(MonotonicClock.currentTimeMillis()).atZone(ZoneId.systemDefault()).toLocalDateTime();
+        this.statementUsageTracker = poolingDataSource.getStatementUsageTracker();
+        this.statementsCache = new LruStatementCache(statementUsageTracker == null ? poolingDataSource.getPreparedStatementCacheSize() : statementUsageTracker.getCacheSize());
+        this.statementResetTracked = isStatementResetTracked(poolingDataSource);
+        this.coalescedUpdatesBatchSize = poolingDataSource.getCoalescedUpdatesBatchSize();
+        this.resultSetUnwrapped = poolingDataSource.getUnwrappedResultSets();
+        this.uncachedStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.generatedKeysStatements = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.lastUsedTime = MonotonicClock.currentTimeMillis();
+        this.lastReleaseDate = Instant.ofEpochMilli(lastUsedTime).atZone(ZoneId.systemDefault()).toLocalDateTime();
         statementsCache.addEvictionListener(stmt -> {
             try {
                 stmt.close();
@@ -111,11 +151,12 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
             int level = translateIsolationLevel(isolationLevel);
             if (level < 0) {
                 log.warn("invalid transaction isolation level '{}' configured, keeping the default isolation level.", isolationLevel);
-            } else {
+            } else if (level != currentIsolationLevel) {
                 if (log.isDebugEnabled()) {
                     log.debug("setting connection's isolation level to {}", isolationLevel);
                 }
                 connection.setTransactionIsolation(level);
+                currentIsolationLevel = level;
             }
         }
     }
@@ -151,6 +192,7 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
         setState(State.CLOSED);
 
         // cleanup of pooled resources
+        stopStatementWarmUp();
         statementsCache.clear();
 
         ManagementRegistrar.unregister(jmxName);
@@ -221,6 +263,72 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
         }
     }
 
+    /**
+     * Test the physical connection while it is idle in the pool. A successful test counts as a usage of the
+     * connection for the alive bypass window.
+     *
+     * @throws SQLException if the connection is not usable anymore.
+     */
+    @Override
+    public void validate() throws SQLException {
+        // the connection may still be warming up its statements in the background
+        statementWarmUpLock.lock();
+        try {
+            testConnection(connection);
+        } finally {
+            statementWarmUpLock.unlock();
+        }
+        lastUsedTime = MonotonicClock.currentTimeMillis();
+    }
+
+    /**
+     * Prepare statements ahead of their first use and add them to the statement cache. This runs in the background
+     * on new connections and stops as soon as the connection is handed out or closed, which waits for at most the
+     * statement being prepared.
+     *
+     * @param keys the keys of the statements to prepare.
+     */
+    void warmUpStatements(List<CacheKey> keys) {
+        int prepared = 0;
+        for (CacheKey key : keys) {
+            statementWarmUpLock.lock();
+            try {
+                if (statementWarmUpStopped) {
+                    break;
+                }
+                try {
+                    PreparedStatement statement = key.prepare(connection);
+                    if (statementsCache.preload(key, statement)) {
+                        prepared++;
+                    } else {
+                        statement.close();
+                    }
+                } catch (SQLException ex) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("error preparing statement <" + key + "> ahead of its use on " + this, ex);
+                    }
+                    break;
+                }
+            } finally {
+                statementWarmUpLock.unlock();
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("prepared {} statement(s) ahead of their use on {}", prepared, this);
+        }
+    }
+
+    private void stopStatementWarmUp() {
+        if (!statementWarmUpStopped) {
+            statementWarmUpLock.lock();
+            try {
+                statementWarmUpStopped = true;
+            } finally {
+                statementWarmUpLock.unlock();
+            }
+        }
+    }
+
     public boolean release() throws SQLException {
         if (log.isDebugEnabled()) {
             log.debug("releasing to pool {}", this);
@@ -296,6 +404,8 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
             log.debug("getting connection handle from {}", this);
         }
         State oldState = getState();
+        stopStatementWarmUp();
+        closeLeakedStatements();
 
         // Increment the usage count
         usageCount++;
@@ -316,7 +426,17 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
             if (log.isDebugEnabled()) {
                 log.debug("connection {} was in state IN_POOL, testing it", xaConnection);
             }
-            testConnection(connection);
+            if (isRecentlyUsed()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("connection {} was used less than {}ms ago, not testing it", xaConnection, poolingDataSource.getAliveBypassWindow());
+                }
+            } else {
+                testConnection(connection);
+            }
+            if (statementUsageTracker != null) {
+                statementsCache.setMaxSize(statementUsageTracker.getCacheSize());
+            }
+            coalescingStopped = false;
             applyIsolationLevel();
             applyCursorHoldabilty();
             if (TransactionContextHelper.currentTransaction() == null) {
@@ -337,10 +457,50 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
         return getConnectionHandle(connection);
     }
 
+    private boolean isRecentlyUsed() {
+        int aliveBypassWindow = poolingDataSource.getAliveBypassWindow();
+        return aliveBypassWindow > 0 && MonotonicClock.currentTimeMillis() - lastUsedTime < aliveBypassWindow;
+    }
+
+    @Override
+    public void putXAResourceHolderState(BitronixXid xid, XAResourceHolderState xaResourceHolderState) {
+        super.putXAResourceHolderState(xid, xaResourceHolderState);
+        // the driver is free to change the auto-commit mode while the connection is enlisted in a global transaction
+        currentAutoCommit = null;
+    }
+
+    /**
+     * Record a transaction isolation level set on the physical connection through a connection handle.
+     *
+     * @param level the new transaction isolation level.
+     */
+    public void transactionIsolationChanged(int level) {
+        currentIsolationLevel = level;
+    }
+
+    /**
+     * Record a cursor holdability set on the physical connection through a connection handle.
+     *
+     * @param holdability the new cursor holdability.
+     */
+    public void holdabilityChanged(int holdability) {
+        currentHoldability = holdability;
+    }
+
+    /**
+     * Record an auto-commit mode set on the physical connection through a connection handle.
+     *
+     * @param autoCommit the new auto-commit mode.
+     */
+    public void autoCommitChanged(boolean autoCommit) {
+        currentAutoCommit = autoCommit;
+    }
+
     @Override
     public void stateChanged(JdbcPooledConnection source, State oldState, State newState) {
         if (newState == State.IN_POOL) {
-            lastReleaseDate = Instant.ofEpochMilli(MonotonicClock.currentTimeMillis()).atZone(ZoneId.systemDefault()).toLocalDateTime();
+            lastUsedTime = MonotonicClock.currentTimeMillis();
+            lastReleaseDate = Instant.ofEpochMilli(lastUsedTime).atZone(ZoneId.systemDefault()).toLocalDateTime();
         } else if (oldState == State.IN_POOL && newState == State.ACCESSIBLE) {
             acquisitionDate = Instant.ofEpochMilli(MonotonicClock.currentTimeMillis()).atZone(ZoneId.systemDefault()).toLocalDateTime();
         } else if (oldState == State.NOT_ACCESSIBLE && newState == State.ACCESSIBLE) {
@@ -355,20 +515,33 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
         }
 
         if (futureState == State.IN_POOL || futureState == State.NOT_ACCESSIBLE) {
-            // close all uncached statements
-            if (log.isDebugEnabled()) {
-                log.debug("closing " + uncachedStatements.size() + " dangling uncached statement(s)");
-            }
-            for (Statement statement : uncachedStatements) {
-                try {
-                    statement.close();
-                } catch (SQLException ex) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("error trying to close uncached statement " + statement, ex);
+            discardCoalescedUpdates();
+
+            // close all uncached statements, in the background when the connection goes back to the pool
+            boolean leaked;
+            uncachedStatementsLock.lock();
+            try {
+                leaked = !uncachedStatements.isEmpty();
+                if (leaked) {
+                    leakedStatementsLock.lock();
+                    try {
+                        leakedStatements.addAll(uncachedStatements);
+                    } finally {
+                        leakedStatementsLock.unlock();
                     }
+                    uncachedStatements.clear();
+                    generatedKeysStatements.clear();
+                }
+            } finally {
+                uncachedStatementsLock.unlock();
+            }
+            if (leaked) {
+                if (futureState == State.IN_POOL) {
+                    LruStatementCache.closeInBackground(this::closeLeakedStatements);
+                } else {
+                    closeLeakedStatements();
                 }
             }
-            uncachedStatements.clear();
 
             // clear SQL warnings
             try {
@@ -381,6 +554,34 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
         }
     }
 
+    /**
+     * Close the uncached statements left open when the connection was released. This runs in the background once the
+     * connection is back in the pool and is completed by the next user of the connection before it gets its handle.
+     */
+    private void closeLeakedStatements() {
+        leakedStatementsLock.lock();
+        try {
+            if (leakedStatements.isEmpty()) {
+                return;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("closing " + leakedStatements.size() + " dangling uncached statement(s)");
+            }
+            for (Statement statement : leakedStatements) {
+                try {
+                    statement.close();
+                } catch (SQLException ex) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("error trying to close uncached statement " + statement, ex);
+                    }
+                }
+            }
+            leakedStatements.clear();
+        } finally {
+            leakedStatementsLock.unlock();
+        }
+    }
+
     /**
      * Get a PreparedStatement from cache.
      *
@@ -388,9 +589,25 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
      * @return the cached statement corresponding to the key or null if no statement is cached under that key.
      */
     public PreparedStatement getCachedStatement(CacheKey key) {
+        if (statementUsageTracker != null) {
+            statementUsageTracker.record(key);
+        }
         return statementsCache.get(key);
     }
 
+    /**
+     * Get a new proxy of a PreparedStatement from cache.
+     *
+     * @param key the key that has been used to cache the statement.
+     * @return a proxy of the cached statement corresponding to the key or null if no statement is cached under that key.
+     */
+    public PreparedStatement getCachedStatementProxy(CacheKey key) {
+        if (statementUsageTracker != null) {
+            statementUsageTracker.record(key);
+        }
+        return statementsCache.getProxy(key, this);
+    }
+
     /**
      * Put a PreparedStatement in the cache.
      *
@@ -402,6 +619,164 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
         return statementsCache.put(key, statement);
     }
 
+    /**
+     * @return true if closed cached statements only need to be reset of what has actually been used on them.
+     */
+    public boolean isStatementResetTracked() {
+        return statementResetTracked;
+    }
+
+    /**
+     * @return true if the statements of this connection return the driver's result sets instead of wrapping them.
+     */
+    public boolean isResultSetUnwrapped() {
+        return resultSetUnwrapped;
+    }
+
+    /**
+     * Buffer a single-row update in the batch of its statement instead of executing it, when update coalescing is
+     * enabled and the connection takes part in an active global transaction. The buffered updates are executed as one
+     * batch by {@link #flushCoalescedUpdates()}, at the latest before the transaction branch gets ended or suspended
+     * or before the transaction completes.
+     *
+     * @param statement the statement which parameters make up the update.
+     * @return true if the update has been buffered, false if it has to be executed right away.
+     * @throws SQLException if the updates buffered for another statement could not be executed.
+     */
+    public boolean coalesceUpdate(PreparedStatement statement) throws SQLException {
+        if (coalescedUpdatesBatchSize < 1 || coalescingStopped) {
+            return false;
+        }
+        BitronixTransaction transaction = TransactionContextHelper.currentTransaction();
+        if (transaction == null || !isActive(transaction)) {
+            return false;
+        }
+
+        if (coalescingTransaction != transaction) {
+            flushCoalescedUpdates();
+            transaction.getSynchronizationScheduler().add(new CoalescedUpdatesSynchronization(transaction), Scheduler.ALWAYS_FIRST_POSITION);
+            coalescingTransaction = transaction;
+        }
+        if (statement != coalescedStatement) {
+            flushCoalescedUpdates();
+            coalescedStatement = statement;
+        }
+        statement.addBatch();
+        if (++coalescedUpdates >= coalescedUpdatesBatchSize) {
+            flushCoalescedUpdates();
+        }
+        return true;
+    }
+
+    /**
+     * Execute the updates buffered by {@link #coalesceUpdate(PreparedStatement)}, if any. The transaction is marked as
+     * rollback only when this fails or when any of the updates did not update exactly one row.
+     *
+     * @throws SQLException if the batch of buffered updates failed or did not update one row per update.
+     */
+    public void flushCoalescedUpdates() throws SQLException {
+        PreparedStatement statement = coalescedStatement;
+        if (statement == null) {
+            return;
+        }
+        int updates = coalescedUpdates;
+        coalescedStatement = null;
+        coalescedUpdates = 0;
+
+        if (log.isDebugEnabled()) {
+            log.debug("executing " + updates + " coalesced update(s) on " + this);
+        }
+        int[] updateCounts;
+        try {
+            updateCounts = statement.executeBatch();
+        } catch (SQLException ex) {
+            markCoalescingTransactionRollbackOnly();
+            throw ex;
+        }
+
+        // each coalesced update already reported a single updated row to its caller
+        for (int i = 0; i < updateCounts.length; i++) {
+            int updateCount = updateCounts[i];
+            if (updateCount != 1 && updateCount != Statement.SUCCESS_NO_INFO) {
+                markCoalescingTransactionRollbackOnly();
+                throw new SQLException("coalesced update " + (i + 1) + " of " + updates + " on " + this + " updated " + updateCount + " row(s) instead of 1");
+            }
+        }
+    }
+
+    /**
+     * Execute the updates buffered in the branch about to be ended or suspended, as they cannot be executed in it
+     * anymore afterwards. The updates of a transaction which is not active anymore are left to be discarded when it
+     * completes.
+     *
+     * @param xid the Xid of the branch about to be ended.
+     * @throws XAException if the batch of buffered updates failed.
+     */
+    @Override
+    public void beforeEnd(BitronixXid xid) throws XAException {
+        BitronixTransaction transaction = coalescingTransaction;
+        if (coalescedStatement == null || transaction == null || !isActive(transaction)
+                || !transaction.getResourceManager().getGtrid().equals(xid.getGlobalTransactionIdUid())) {
+            return;
+        }
+        try {
+            flushCoalescedUpdates();
+        } catch (SQLException ex) {
+            throw new BitronixXAException("cannot execute coalesced updates of " + this + " before ending " + xid, XAException.XAER_RMERR, ex);
+        }
+    }
+
+    private void markCoalescingTransactionRollbackOnly() {
+        BitronixTransaction transaction = coalescingTransaction;
+        if (transaction == null) {
+            return;
+        }
+        try {
+            transaction.setRollbackOnly();
+        } catch (SystemException | IllegalStateException ex) {
+            log.warn("cannot mark " + transaction + " as rollback only after coalesced updates failed", ex);
+        }
+    }
+
+    /**
+     * Execute the buffered updates and stop coalescing updates until the connection goes back to the pool. This is
+     * required as soon as a statement which is not a prepared statement is created, as its executions would not be
+     * ordered with the buffered updates.
+     *
+     * @throws SQLException if the batch of buffered updates failed.
+     */
+    public void stopCoalescingUpdates() throws SQLException {
+        if (coalescedUpdatesBatchSize < 1) {
+            return;
+        }
+        coalescingStopped = true;
+        flushCoalescedUpdates();
+    }
+
+    private static boolean isActive(BitronixTransaction transaction) {
+        try {
+            return transaction.getStatus() == Status.STATUS_ACTIVE;
+        } catch (SystemException ex) {
+            return false;
+        }
+    }
+
+    private void discardCoalescedUpdates() {
+        PreparedStatement statement = coalescedStatement;
+        if (statement == null) {
+            return;
+        }
+        coalescedStatement = null;
+        coalescedUpdates = 0;
+        try {
+            statement.clearBatch();
+        } catch (SQLException ex) {
+            if (log.isDebugEnabled()) {
+                log.debug("error discarding coalesced updates of " + this, ex);
+            }
+        }
+    }
+
     /**
      * Register uncached statement so that it can be closed when the connection is put back in the pool.
      *
@@ -409,12 +784,53 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
      * @return the registered statement.
      */
     public Statement registerUncachedStatement(Statement stmt) {
-        uncachedStatements.add(stmt);
+        uncachedStatementsLock.lock();
+        try {
+            uncachedStatements.add(stmt);
+        } finally {
+            uncachedStatementsLock.unlock();
+        }
+        return stmt;
+    }
+
+    /**
+     * Register uncached statement prepared to return auto-generated keys, so that its updates are never coalesced.
+     *
+     * @param stmt the statement to register.
+     * @return the registered statement.
+     */
+    public Statement registerUncachedGeneratedKeysStatement(Statement stmt) {
+        uncachedStatementsLock.lock();
+        try {
+            generatedKeysStatements.add(stmt);
+            uncachedStatements.add(stmt);
+        } finally {
+            uncachedStatementsLock.unlock();
+        }
         return stmt;
     }
 
     public void unregisterUncachedStatement(Statement stmt) {
-        uncachedStatements.remove(stmt);
+        uncachedStatementsLock.lock();
+        try {
+            uncachedStatements.remove(stmt);
+            generatedKeysStatements.remove(stmt);
+        } finally {
+            uncachedStatementsLock.unlock();
+        }
+    }
+
+    /**
+     * @param stmt an uncached statement.
+     * @return true if the statement has been registered by {@link #registerUncachedGeneratedKeysStatement(Statement)}.
+     */
+    public boolean returnsGeneratedKeys(Statement stmt) {
+        uncachedStatementsLock.lock();
+        try {
+            return generatedKeysStatements.contains(stmt);
+        } finally {
+            uncachedStatementsLock.unlock();
+        }
     }
 
     @Override
@@ -428,15 +844,28 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
             int holdability = translateCursorHoldability(cursorHoldability);
             if (holdability < 0) {
                 log.warn("invalid cursor holdability '{}' configured, keeping the default cursor holdability.", cursorHoldability);
-            } else {
+            } else if (holdability != currentHoldability) {
                 if (log.isDebugEnabled()) {
                     log.debug("setting connection's cursor holdability to {}", cursorHoldability);
                 }
                 connection.setHoldability(holdability);
+                currentHoldability = holdability;
             }
         }
     }
 
+    private static boolean isStatementResetTracked(PoolingDataSource poolingDataSource) {
+        String statementResetPolicy = poolingDataSource.getStatementResetPolicy();
+        if (statementResetPolicy == null || "ALWAYS".equals(statementResetPolicy)) {
+            return false;
+        }
+        if ("TRACKED".equals(statementResetPolicy)) {
+            return true;
+        }
+        log.warn("invalid statement reset policy '{}' configured, always resetting statements.", statementResetPolicy);
+        return false;
+    }
+
     private static int translateCursorHoldability(String cursorHoldability) {
         if ("CLOSE_CURSORS_AT_COMMIT".equals(cursorHoldability)) {
             return ResultSet.CLOSE_CURSORS_AT_COMMIT;
@@ -452,15 +881,21 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
         String localAutoCommit = getPoolingDataSource().getLocalAutoCommit();
         if (localAutoCommit != null) {
             if (localAutoCommit.equalsIgnoreCase("true")) {
-                if (log.isDebugEnabled()) {
-                    log.debug("setting connection's auto commit to true");
+                if (!Boolean.TRUE.equals(currentAutoCommit)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("setting connection's auto commit to true");
+                    }
+                    connection.setAutoCommit(true);
+                    currentAutoCommit = Boolean.TRUE;
                 }
-                connection.setAutoCommit(true);
             } else if (localAutoCommit.equalsIgnoreCase("false")) {
-                if (log.isDebugEnabled()) {
-                    log.debug("setting connection's auto commit to false");
+                if (!Boolean.FALSE.equals(currentAutoCommit)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("setting connection's auto commit to false");
+                    }
+                    connection.setAutoCommit(false);
+                    currentAutoCommit = Boolean.FALSE;
                 }
-                connection.setAutoCommit(false);
             } else {
                 log.warn("invalid auto commit '{}' configured, keeping default auto commit", localAutoCommit);
             }
@@ -492,4 +927,39 @@ public class JdbcPooledConnection extends AbstractXAResourceHolder<JdbcPooledCon
     public Collection<String> getTransactionGtridsCurrentlyHoldingThis() {
         return getXAResourceHolderStateGtrids();
     }
+    /**
+     * Executes the coalesced updates before the transaction gets prepared, and drops the ones left when it has
+     * been rolled back.
+     */
+    private final class CoalescedUpdatesSynchronization implements Synchronization {
+
+        private final BitronixTransaction transaction;
+
+        private CoalescedUpdatesSynchronization(BitronixTransaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            try {
+                flushCoalescedUpdates();
+            } catch (SQLException ex) {
+                throw new BitronixRuntimeException("cannot execute coalesced updates of " + JdbcPooledConnection.this, ex);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (coalescingTransaction == transaction) {
+                discardCoalescedUpdates();
+                coalescingTransaction = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "a CoalescedUpdatesSynchronization of " + JdbcPooledConnection.this;
+        }
+    }
+
 }
@@ -15,22 +15,43 @@
  */
 package bitronix.tm.resource.jdbc;
 
+import bitronix.tm.resource.jdbc.proxy.JdbcProxyFactory;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Last Recently Used PreparedStatement cache with eviction listeners
- * support implementation.
+ * PreparedStatement cache with eviction listeners support implementation.
+ * <p>
+ * The least recently used statements are approximated with the CLOCK
+ * policy: a cache hit only flags the statement as referenced, without
+ * taking any lock, and the eviction hand gives flagged statements a second
+ * chance.  Statements which have never been hit since they were added are
+ * evicted first.  Evicted statements are handed to the eviction listeners on a
+ * background thread so that closing them does not slow down the thread
+ * which prepared a new statement.
  *
  * @author Ludovic Orban
  * @author Brett Wooldridge
@@ -39,28 +60,20 @@ public class LruStatementCache {
 
     private static final Logger log = LoggerFactory.getLogger(LruStatementCache.class);
 
+    /**
+     * Closes evicted statements for all the caches, its thread stops when idle.
+     */
+    private static final ExecutorService backgroundCloser = createBackgroundCloser();
+
     /**
      * The <i>target</i> maxSize of the cache.  The cache may drift slightly
      * higher in size in the case that every statement in the cache is
      * in use and therefore nothing can be evicted.  But eventually
      * (probably quickly) the cache will return to maxSize.
      */
-    private int maxSize;
+    private volatile int maxSize;
 
-    /**
-     * We use a LinkedHashMap with _access order_ specified in the
-     * constructor.  According to the LinkedHashMap documentation:
-     * <pre>
-     *   A special constructor is provided to create a linked hash map
-     *   whose order of iteration is the order in which its entries
-     *   were last accessed, from least-recently accessed to most-recently
-     *   (access-order). This kind of map is well-suited to building LRU
-     *   caches. Invoking the put or get method results in an access to
-     *   the corresponding entry (assuming it exists after the invocation
-     *   completes).
-     * </pre>
-     */
-    private final LinkedHashMap<CacheKey, StatementTracker> cache;
+    private final ConcurrentHashMap<CacheKey, StatementTracker> cache;
 
     /**
      * A list of listeners concerned with prepared statement cache
@@ -69,56 +82,81 @@ public class LruStatementCache {
     private final List<LruEvictionListener<PreparedStatement>> evictionListeners;
 
     /**
-     * See the LinkedHashMap documentation.  We maintain our own size
-     * here, rather than calling size(), because size() on a LinkedHashMap
-     * is proportional in time (O(n)) with the size of the collection -- i.e.
-     * calling size() must traverse the entire list and count the elements.
-     * Tracking size ourselves provides O(1) access.
+     * We maintain our own size here, rather than calling size(), as the
+     * ConcurrentHashMap size is an estimate summed over its counter cells.
      */
-    private int size;
+    private final AtomicInteger size;
 
     /**
      * A flag that is set during clear operations to prevent statements that
      * are closing from coming back into the cache.
      */
-    private AtomicBoolean clearInProgress;
+    private final AtomicBoolean clearInProgress;
+
+    /**
+     * Guards the eviction hand, cache hits never take it.
+     */
+    private final Lock evictionLock = new ReentrantLock();
+
+    /**
+     * The CLOCK hand, a weakly consistent iterator over the cached statements
+     * which is restarted when it reaches the end of the cache.
+     */
+    private Iterator<StatementTracker> clockHand;
 
     public LruStatementCache(int maxSize) {
         this.maxSize = maxSize;
-        cache = new LinkedHashMap<>(maxSize, 0.75f, true /* access order */);
+        cache = new ConcurrentHashMap<>(Math.max(16, (int) (maxSize / 0.75f) + 1));
         evictionListeners = new CopyOnWriteArrayList<>();
+        size = new AtomicInteger();
         clearInProgress = new AtomicBoolean();
     }
 
     /**
-     * The provided key is just a 'shell' JdbcPreparedStatementHandle, it comes
-     * in with no actual 'delegate' PreparedStatement.  However, it contains all
-     * other pertinent information such as SQL statement, autogeneratedkeys
-     * flag, cursor holdability, etc.  See the equals() method in the
-     * JdbcPreparedStatementHandle class.  It is a complete key for a cached
-     * statement.
+     * The provided key is just a 'shell', it comes in with no actual
+     * PreparedStatement.  However, it contains all other pertinent
+     * information such as SQL statement, autogeneratedkeys flag, cursor
+     * holdability, etc.  See the equals() method in the CacheKey class.
+     * It is a complete key for a cached statement.
      * <p>
-     * If there is a matching cached PreparedStatement, it will be set as the
-     * delegate in the provided JdbcPreparedStatementHandle.
+     * If there is a matching cached PreparedStatement, its usage count is
+     * incremented until it is put back in the cache.
      *
      * @param key the cache key
-     * @return the cached JdbcPreparedStatementHandle statement, or null
+     * @return the cached statement, or null
      */
     public PreparedStatement get(CacheKey key) {
-        synchronized (cache) {
-            // See LinkedHashMap documentation.  Getting an entry means it is
-            // updated as the 'youngest' (Most Recently Used) entry.
-            StatementTracker cached = cache.get(key);
-            if (cached != null) {
-                cached.usageCount++;
-                if (log.isDebugEnabled()) {
-                    log.debug("delivered from cache with usage count " + cached.usageCount + " statement <" + key + ">");
-                }
-                return cached.statement;
+        StatementTracker cached = cache.get(key);
+        if (cached != null && cached.acquire()) {
+            if (log.isDebugEnabled()) {
+                log.debug("delivered from cache with usage count " + cached.usageCount.get() + " statement <" + key + ">");
             }
+            return cached.statement;
+        }
+
+        return null;
+    }
 
+    /**
+     * Get a proxy of the cached statement matching the key, like
+     * {@link #get(CacheKey)} does for the statement itself.  Each call
+     * hands out a new proxy, so that a handle which has been closed stays
+     * closed and closing it again cannot release the statement of another
+     * caller.
+     *
+     * @param key                  the cache key
+     * @param jdbcPooledConnection the connection owning this cache
+     * @return a proxy of the cached statement, or null
+     */
+    public PreparedStatement getProxy(CacheKey key, JdbcPooledConnection jdbcPooledConnection) {
+        StatementTracker cached = cache.get(key);
+        if (cached == null || !cached.acquire()) {
             return null;
         }
+        if (log.isDebugEnabled()) {
+            log.debug("delivered from cache with usage count " + cached.usageCount.get() + " statement <" + key + ">");
+        }
+        return JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, cached.statement, key);
     }
 
     /**
@@ -132,41 +170,77 @@ public class LruStatementCache {
      * @return a prepared statement
      */
     public PreparedStatement put(CacheKey key, PreparedStatement statement) {
-        if (clearInProgress.get()) {
+        if (clearInProgress.get() || maxSize < 1) {
             return null;
         }
 
-        synchronized (cache) {
-            if (maxSize < 1) {
-                return null;
-            }
+        StatementTracker cached = cache.get(key);
+        if (cached == null) {
+            cached = cache.putIfAbsent(key, new StatementTracker(key, statement, 1));
+        }
 
-            // See LinkedHashMap documentation.  Getting an entry means it is
-            // updated as the 'youngest' (Most Recently Used) entry.
-            StatementTracker cached = cache.get(key);
-            if (cached == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("adding to cache statement <" + key + ">");
-                }
-                cache.put(key, new StatementTracker(statement));
-                size++;
-            } else {
-                cached.usageCount--;
-                statement = cached.statement;
-                if (log.isDebugEnabled()) {
-                    log.debug("returning to cache statement <" + key + "> with usage count " + cached.usageCount);
-                }
+        if (cached == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("adding to cache statement <" + key + ">");
             }
-
-            // If the size is exceeded, we will _try_ to evict one (or more)
-            // statements until the max level is again reached.  However, if
-            // every statement in the cache is 'in use', the size of the cache
-            // is not reduced.  Eventually the cache will be reduced, no worries.
-            if (size > maxSize) {
-                tryEviction();
+            size.incrementAndGet();
+        } else {
+            cached.release();
+            statement = cached.statement;
+            if (log.isDebugEnabled()) {
+                log.debug("returning to cache statement <" + key + "> with usage count " + cached.usageCount.get());
             }
+        }
+
+        // If the size is exceeded, we will _try_ to evict one (or more)
+        // statements until the max level is again reached.  However, if
+        // every statement in the cache is 'in use', the size of the cache
+        // is not reduced.  Eventually the cache will be reduced, no worries.
+        if (size.get() > maxSize) {
+            tryEviction();
+        }
+
+        return statement;
+    }
+
+    /**
+     * Add a statement prepared ahead of its first use to the cache.  Unlike
+     * {@link #put(CacheKey, PreparedStatement)}, the statement is not
+     * considered in use and is immediately available to {@link #get(CacheKey)}.
+     *
+     * @param key       a cache key
+     * @param statement a prepared statement
+     * @return true if the statement has been cached, false if the cache
+     * already contains a statement for that key or is full.
+     */
+    public boolean preload(CacheKey key, PreparedStatement statement) {
+        if (clearInProgress.get() || size.get() >= maxSize) {
+            return false;
+        }
 
-            return statement;
+        if (cache.putIfAbsent(key, new StatementTracker(key, statement, 0)) != null) {
+            return false;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("preloading in cache statement <" + key + ">");
+        }
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Change the target maxSize of the cache.  Statements which are not in
+     * use are evicted right away when the cache is larger than its new size.
+     *
+     * @param maxSize the new target maxSize.
+     */
+    public void setMaxSize(int maxSize) {
+        if (this.maxSize == maxSize) {
+            return;
+        }
+        this.maxSize = maxSize;
+        if (size.get() > maxSize) {
+            tryEviction();
         }
     }
 
@@ -180,21 +254,24 @@ public class LruStatementCache {
 
     /**
      * Evict all statements from the cache.  This likely happens on
-     * connection close.
+     * connection close, the eviction listeners are called before this
+     * method returns.
      */
     protected void clear() {
         if (clearInProgress.compareAndSet(false, true)) {
             try {
-                synchronized (cache) {
-                    Iterator<Entry<CacheKey, StatementTracker>> it = cache.entrySet().iterator();
-                    while (it.hasNext()) {
-                        Entry<CacheKey, StatementTracker> entry = it.next();
-                        StatementTracker tracker = entry.getValue();
-                        it.remove();
-                        fireEvictionEvent(tracker.statement);
+                evictionLock.lock();
+                try {
+                    for (StatementTracker tracker : cache.values()) {
+                        tracker.usageCount.set(StatementTracker.EVICTED);
+                        if (cache.remove(tracker.key, tracker)) {
+                            fireEvictionEvent(tracker.statement);
+                        }
                     }
-                    cache.clear();
-                    size = 0;
+                    size.set(0);
+                    clockHand = null;
+                } finally {
+                    evictionLock.unlock();
                 }
             } finally {
                 clearInProgress.set(false);
@@ -205,27 +282,62 @@ public class LruStatementCache {
     /**
      * Try to evict statements from the cache.  Only statements with a
      * current usage count of zero will be evicted.  Statements are
-     * evicted until the cache is reduced to maxSize.
+     * evicted until the cache is reduced to maxSize or the hand has gone
+     * twice around the cache, which is enough to clear the referenced flag
+     * of every statement and then evict it.
      */
     private void tryEviction() {
-        // Iteration order of the LinkedHashMap is from LRU to MRU
-        Iterator<Entry<CacheKey, StatementTracker>> it = cache.entrySet().iterator();
-        while (it.hasNext()) {
-            Entry<CacheKey, StatementTracker> entry = it.next();
-            StatementTracker tracker = entry.getValue();
-            if (tracker.usageCount == 0) {
-                it.remove();
-                size--;
-                CacheKey key = entry.getKey();
-                if (log.isDebugEnabled()) {
-                    log.debug("evicting from cache statement <" + key + "> " + entry.getValue().statement);
+        List<PreparedStatement> evicted = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            int steps = 2 * size.get();
+            while (size.get() > maxSize && steps-- > 0) {
+                if (clockHand == null || !clockHand.hasNext()) {
+                    clockHand = cache.values().iterator();
+                    if (!clockHand.hasNext()) {
+                        break;
+                    }
                 }
-                fireEvictionEvent(tracker.statement);
-                // We can stop evicting if we're at maxSize...
-                if (size <= maxSize) {
-                    break;
+
+                StatementTracker tracker = clockHand.next();
+                if (tracker.referenced) {
+                    tracker.referenced = false;
+                } else if (tracker.evict() && cache.remove(tracker.key, tracker)) {
+                    size.decrementAndGet();
+                    if (log.isDebugEnabled()) {
+                        log.debug("evicting from cache statement <" + tracker.key + "> " + tracker.statement);
+                    }
+                    evicted.add(tracker.statement);
                 }
             }
+        } finally {
+            evictionLock.unlock();
+        }
+
+        if (!evicted.isEmpty()) {
+            fireEvictionEventsInBackground(evicted);
+        }
+    }
+
+    private void fireEvictionEventsInBackground(List<PreparedStatement> statements) {
+        closeInBackground(() -> {
+            for (PreparedStatement statement : statements) {
+                fireEvictionEvent(statement);
+            }
+        });
+    }
+
+    /**
+     * Run a task closing statements on the background thread shared by all the caches, or on the calling
+     * thread if it cannot be scheduled.
+     *
+     * @param task the task closing statements.
+     */
+    static void closeInBackground(Runnable task) {
+        try {
+            backgroundCloser.execute(task);
+        } catch (RejectedExecutionException ex) {
+            task.run();
         }
     }
 
@@ -235,97 +347,190 @@ public class LruStatementCache {
         }
     }
 
+    private static ExecutorService createBackgroundCloser() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("bitronix-statement-closer-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public static final class CacheKey {
         // All of these attributes must match a proposed statement before the
         // statement can be considered "the same" and delivered from the cache.
         private final String sql;
-        private int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
-        private int resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
-        private Integer resultSetHoldability;
-        private Integer autoGeneratedKeys;
-        private int[] columnIndexes;
-        private String[] columnNames;
+        private final int resultSetType;
+        private final int resultSetConcurrency;
+        private final Integer resultSetHoldability;
+        private final Integer autoGeneratedKeys;
+        private final int[] columnIndexes;
+        private final String[] columnNames;
+
+        // computed once as keys are built for every prepareStatement() call
+        private final int hash;
 
         public CacheKey(String sql) {
-            this.sql = sql;
+            this(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, null, null, null, null);
         }
 
         public CacheKey(String sql, int autoGeneratedKeys) {
-            this.sql = sql;
-            this.autoGeneratedKeys = autoGeneratedKeys;
+            this(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, null, autoGeneratedKeys, null, null);
         }
 
         public CacheKey(String sql, int resultSetType, int resultSetConcurrency) {
-            this.sql = sql;
-            this.resultSetType = resultSetType;
-            this.resultSetConcurrency = resultSetConcurrency;
+            this(sql, resultSetType, resultSetConcurrency, null, null, null, null);
         }
 
         public CacheKey(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+            this(sql, resultSetType, resultSetConcurrency, resultSetHoldability, null, null, null);
+        }
+
+        public CacheKey(String sql, int[] columnIndexes) {
+            this(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, null, null, columnIndexes.clone(), null);
+        }
+
+        public CacheKey(String sql, String[] columnNames) {
+            this(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, null, null, null, columnNames.clone());
+        }
+
+        CacheKey(String sql, int resultSetType, int resultSetConcurrency, Integer resultSetHoldability,
+                 Integer autoGeneratedKeys, int[] columnIndexes, String[] columnNames) {
             this.sql = sql;
             this.resultSetType = resultSetType;
             this.resultSetConcurrency = resultSetConcurrency;
             this.resultSetHoldability = resultSetHoldability;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+            this.columnIndexes = columnIndexes;
+            this.columnNames = columnNames;
+
+            int h = Objects.hashCode(sql);
+            h = 31 * h + resultSetType;
+            h = 31 * h + resultSetConcurrency;
+            h = 31 * h + Objects.hashCode(resultSetHoldability);
+            h = 31 * h + Objects.hashCode(autoGeneratedKeys);
+            h = 31 * h + Arrays.hashCode(columnIndexes);
+            h = 31 * h + Arrays.hashCode(columnNames);
+            this.hash = h;
         }
 
-        public CacheKey(String sql, int[] columnIndexes) {
-            this.sql = sql;
-            this.columnIndexes = new int[columnIndexes.length];
-            System.arraycopy(columnIndexes, 0, this.columnIndexes, 0, columnIndexes.length);
+        /**
+         * Prepare the statement this key describes.
+         *
+         * @param connection the physical connection to prepare the statement on.
+         * @return the prepared statement.
+         * @throws SQLException if the statement cannot be prepared.
+         */
+        PreparedStatement prepare(Connection connection) throws SQLException {
+            if (autoGeneratedKeys != null) {
+                return connection.prepareStatement(sql, autoGeneratedKeys);
+            }
+            if (columnIndexes != null) {
+                return connection.prepareStatement(sql, columnIndexes);
+            }
+            if (columnNames != null) {
+                return connection.prepareStatement(sql, columnNames);
+            }
+            if (resultSetHoldability != null) {
+                return connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+            }
+            if (resultSetType != ResultSet.TYPE_FORWARD_ONLY || resultSetConcurrency != ResultSet.CONCUR_READ_ONLY) {
+                return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+            }
+            return connection.prepareStatement(sql);
         }
 
-        public CacheKey(String sql, String[] columnNames) {
-            this.sql = sql;
-            this.columnNames = new String[columnNames.length];
-            System.arraycopy(columnNames, 0, this.columnNames, 0, columnNames.length);
+        /**
+         * @return true if the statement this key describes has been prepared to return auto-generated keys.
+         */
+        public boolean returnsGeneratedKeys() {
+            return (autoGeneratedKeys != null && autoGeneratedKeys != Statement.NO_GENERATED_KEYS)
+                    || columnIndexes != null || columnNames != null;
+        }
+
+        /**
+         * @return true if this key has the given attributes, compared without allocating a key.
+         */
+        boolean matches(int resultSetType, int resultSetConcurrency, Integer resultSetHoldability,
+                        Integer autoGeneratedKeys, int[] columnIndexes, String[] columnNames) {
+            return this.resultSetType == resultSetType
+                    && this.resultSetConcurrency == resultSetConcurrency
+                    && Objects.equals(this.resultSetHoldability, resultSetHoldability)
+                    && Objects.equals(this.autoGeneratedKeys, autoGeneratedKeys)
+                    && Arrays.equals(this.columnIndexes, columnIndexes)
+                    && Arrays.equals(this.columnNames, columnNames);
+        }
+
+        @Override
+        public String toString() {
+            return sql;
         }
 
         /**
          * Overridden equals() that takes all PreparedStatement attributes into
-         * account.
+         * account.  Keys with different hashes are told apart without comparing
+         * their SQL.
          *
          * @return true if equal, false otherwise
          */
         @Override
         public boolean equals(Object obj) {
-            if (!(obj instanceof CacheKey otherKey)) {
-                return false;
+            if (this == obj) {
+                return true;
             }
-
-            if (!sql.equals(otherKey.sql)) {
-                return false;
-            } else if (resultSetType != otherKey.resultSetType) {
-                return false;
-            } else if (resultSetConcurrency != otherKey.resultSetConcurrency) {
-                return false;
-            } else if (!Arrays.equals(columnIndexes, otherKey.columnIndexes)) {
-                return false;
-            } else if (!Arrays.equals(columnNames, otherKey.columnNames)) {
-                return false;
-            } else if ((autoGeneratedKeys == null && otherKey.autoGeneratedKeys != null) ||
-                    (autoGeneratedKeys != null && !autoGeneratedKeys.equals(otherKey.autoGeneratedKeys))) {
-                return false;
-            } else if ((resultSetHoldability == null && otherKey.resultSetHoldability != null) ||
-                    (resultSetHoldability != null && !resultSetHoldability.equals(otherKey.resultSetHoldability))) {
+            if (!(obj instanceof CacheKey otherKey) || hash != otherKey.hash) {
                 return false;
             }
 
-            return true;
+            return otherKey.matches(resultSetType, resultSetConcurrency, resultSetHoldability, autoGeneratedKeys, columnIndexes, columnNames)
+                    && Objects.equals(sql, otherKey.sql);
         }
 
         @Override
         public int hashCode() {
-            return sql != null ? sql.hashCode() : System.identityHashCode(this);
+            return hash;
         }
     }
 
     private static final class StatementTracker {
+        private static final int EVICTED = -1;
+
+        private final CacheKey key;
         private final PreparedStatement statement;
-        private int usageCount;
+        private final AtomicInteger usageCount;
+        private volatile boolean referenced;
 
-        private StatementTracker(PreparedStatement stmt) {
+        private StatementTracker(CacheKey key, PreparedStatement stmt, int usageCount) {
+            this.key = key;
             this.statement = stmt;
-            this.usageCount = 1;
+            this.usageCount = new AtomicInteger(usageCount);
+        }
+
+        /**
+         * @return true if the statement is now in use, false if it has been evicted.
+         */
+        private boolean acquire() {
+            while (true) {
+                int count = usageCount.get();
+                if (count == EVICTED) {
+                    return false;
+                }
+                if (usageCount.compareAndSet(count, count + 1)) {
+                    if (!referenced) {
+                        referenced = true;
+                    }
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            usageCount.updateAndGet(count -> count > 0 ? count - 1 : count);
+        }
+
+        /**
+         * @return true if the statement was not in use and can not be acquired anymore.
+         */
+        private boolean evict() {
+            return usageCount.compareAndSet(0, EVICTED);
         }
     }
 }
@@ -20,14 +20,18 @@ import bitronix.tm.recovery.RecoveryException;
 import bitronix.tm.resource.ResourceConfigurationException;
 import bitronix.tm.resource.ResourceObjectFactory;
 import bitronix.tm.resource.ResourceRegistrar;
+import bitronix.tm.resource.common.PoolMetrics;
 import bitronix.tm.resource.common.RecoveryXAResourceHolder;
 import bitronix.tm.resource.common.ResourceBean;
 import bitronix.tm.resource.common.XAPool;
 import bitronix.tm.resource.common.XAResourceProducer;
+import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
 import bitronix.tm.utils.ManagementRegistrar;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.openmbean.CompositeData;
 import javax.naming.NamingException;
 import javax.naming.Reference;
 import javax.naming.StringRefAddr;
@@ -43,6 +47,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implementation of a JDBC {@link DataSource} wrapping vendor's {@link XADataSource} implementation.
@@ -54,17 +66,32 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class PoolingDataSource extends ResourceBean implements DataSource, XAResourceProducer<JdbcPooledConnection, JdbcPooledConnection>, PoolingDataSourceMBean {
 
     private static final Logger log = LoggerFactory.getLogger(PoolingDataSource.class);
+    private static final int CACHE_KEY_TABLE_MIN_SIZE = 1024;
 
     private volatile transient XAPool<JdbcPooledConnection, JdbcPooledConnection> pool;
+    /**
+     * Set once the pool is built and registered, so that {@link #getConnection()} only takes the init lock while the
+     * pool is being built. The pool is already set during its registration, as recovery uses it.
+     */
+    private volatile transient boolean initialized;
+    private final Lock initLock = new ReentrantLock();
     private volatile transient XADataSource xaDataSource;
     private volatile transient RecoveryXAResourceHolder recoveryXAResourceHolder;
     private volatile transient Connection recoveryConnectionHandle;
     private volatile transient Map<XAResource, JdbcPooledConnection> xaResourceHolderMap;
+    private volatile transient StatementUsageTracker statementUsageTracker;
+    private volatile transient CacheKeyTable cacheKeyTable;
+    private volatile transient ExecutorService statementWarmUpExecutor;
 
     private volatile String testQuery;
     private volatile boolean enableJdbc4ConnectionTest;
     private volatile int connectionTestTimeout;
+    private volatile int aliveBypassWindow;
     private volatile int preparedStatementCacheSize = 0;
+    private volatile int preparedStatementWarmUpSize = 0;
+    private volatile String statementResetPolicy;
+    private volatile int coalescedUpdatesBatchSize = 0;
+    private volatile boolean unwrappedResultSets = false;
     private volatile String isolationLevel;
     private volatile String cursorHoldability;
     private volatile String localAutoCommit;
@@ -79,17 +106,26 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
      * Initializes the pool by creating the initial amount of connections.
      */
     @Override
-    public synchronized void init() {
-        if (this.pool != null) {
+    public void init() {
+        if (initialized) {
             return;
         }
 
+        // creating the connections blocks, a virtual thread must not hold a monitor meanwhile
+        initLock.lock();
         try {
+            if (this.pool != null) {
+                return;
+            }
+
             buildXAPool();
             this.jmxName = "bitronix.tm:type=JDBC,UniqueName=" + ManagementRegistrar.makeValidName(getUniqueName());
             ManagementRegistrar.register(jmxName, this);
+            initialized = true;
         } catch (Exception ex) {
             throw new ResourceConfigurationException("cannot create JDBC datasource named " + getUniqueName(), ex);
+        } finally {
+            initLock.unlock();
         }
     }
 
@@ -101,6 +137,12 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
         if (log.isDebugEnabled()) {
             log.debug("building XA pool for {} with {} connection(s)", getUniqueName(), getMinPoolSize());
         }
+        if (preparedStatementCacheSize > 0) {
+            cacheKeyTable = new CacheKeyTable(Math.max(CACHE_KEY_TABLE_MIN_SIZE, 8 * preparedStatementCacheSize));
+        }
+        if (preparedStatementCacheSize > 0 && preparedStatementWarmUpSize > 0) {
+            startStatementWarmUp();
+        }
         pool = new XAPool<>(this, this, xaDataSource);
         boolean builtXaFactory = false;
         if (xaDataSource == null) {
@@ -109,11 +151,14 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
         }
         try {
             ResourceRegistrar.register(this);
-        } catch (RecoveryException ex) {
+        } catch (RecoveryException | RuntimeException ex) {
             if (builtXaFactory) {
                 xaDataSource = null;
             }
+            // the connections of the pool were created before registration
+            pool.close();
             pool = null;
+            stopStatementWarmUp();
             throw ex;
         }
     }
@@ -188,13 +233,32 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
         return connectionTestTimeout;
     }
 
+    /**
+     * When set to a positive value, a connection acquired from the pool is not tested if it has been used within the
+     * last specified amount of milliseconds. This saves the testQuery or isValid() round trip on busy pools. Keep it
+     * well below the idle timeouts of the database and of the network in between. Default value is 0, meaning that
+     * connections are always tested.
+     *
+     * @param aliveBypassWindow the amount of milliseconds after its last usage during which a connection is not tested.
+     */
+    public void setAliveBypassWindow(int aliveBypassWindow) {
+        this.aliveBypassWindow = aliveBypassWindow;
+    }
+
+    /**
+     * @return the amount of milliseconds after its last usage during which a connection is not tested.
+     */
+    public int getAliveBypassWindow() {
+        return aliveBypassWindow;
+    }
+
     /**
      * @return how many seconds each connection test will wait for a response,
      * bounded above by the acquisition timeout.
      */
     public int getEffectiveConnectionTestTimeout() {
         int t1 = getConnectionTestTimeout();
-        int t2 = getAcquisitionTimeout();
+        int t2 = (int) Math.ceil(getEffectiveAcquisitionTimeoutMillis() / 1000.0);
 
         if ((t1 > 0) && (t2 > 0)) {
             return Math.min(t1, t2);
@@ -221,6 +285,88 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
         this.preparedStatementCacheSize = preparedStatementCacheSize;
     }
 
+    /**
+     * @return the amount of most used statements prepared in the background on new connections.
+     */
+    public int getPreparedStatementWarmUpSize() {
+        return preparedStatementWarmUpSize;
+    }
+
+    /**
+     * Set the amount of statements prepared in the background on each new connection. The pool learns which
+     * statements are prepared most often through all its connections, prepares that many of them ahead of their first
+     * use on the connections it creates and sizes the statement cache of each connection after the amount of
+     * statements actually in use, within {@link #getPreparedStatementCacheSize()}. This requires statement caching to
+     * be enabled.
+     *
+     * @param preparedStatementWarmUpSize the amount of most used statements to prepare on new connections,
+     *                                    0 to disable statement warm-up.
+     */
+    public void setPreparedStatementWarmUpSize(int preparedStatementWarmUpSize) {
+        this.preparedStatementWarmUpSize = preparedStatementWarmUpSize;
+    }
+
+    /**
+     * @return the way cached statements are reset when their handle is closed.
+     */
+    public String getStatementResetPolicy() {
+        return statementResetPolicy;
+    }
+
+    /**
+     * Set the way cached statements are reset when their handle is closed. With <code>ALWAYS</code>, the default,
+     * the parameters, warnings and batch of the statement are always cleared. With <code>TRACKED</code>, the
+     * warnings are only cleared when the statement has been executed and the batch only when statements were added
+     * to it and not executed, saving driver calls which can be expensive with some drivers. The parameters are always
+     * cleared.
+     *
+     * @param statementResetPolicy the statement reset policy, <code>ALWAYS</code> or <code>TRACKED</code>.
+     */
+    public void setStatementResetPolicy(String statementResetPolicy) {
+        this.statementResetPolicy = statementResetPolicy;
+    }
+
+    /**
+     * @return the maximum amount of single-row updates coalesced into one batch.
+     */
+    public int getCoalescedUpdatesBatchSize() {
+        return coalescedUpdatesBatchSize;
+    }
+
+    /**
+     * Set the maximum amount of updates coalesced into one batch. When enabled, the
+     * {@link java.sql.PreparedStatement#executeUpdate()} calls made in a global transaction are added to the batch of their
+     * statement, then executed together when another statement is executed, the statement or connection handle is
+     * closed, the batch is full or the transaction is about to complete. The buffered updates report an update
+     * count of 1 and their failures are reported by the call which executes them, so only enable this when the
+     * application does not depend on the update counts.
+     *
+     * @param coalescedUpdatesBatchSize the maximum amount of updates executed as one batch, 0 to disable update
+     *                                  coalescing.
+     */
+    public void setCoalescedUpdatesBatchSize(int coalescedUpdatesBatchSize) {
+        this.coalescedUpdatesBatchSize = coalescedUpdatesBatchSize;
+    }
+
+    /**
+     * @return true if statements return the driver's result sets instead of wrapping them.
+     */
+    public boolean getUnwrappedResultSets() {
+        return unwrappedResultSets;
+    }
+
+    /**
+     * Set whether statements return the driver's result sets instead of wrapping them. The wrapper only makes
+     * {@link java.sql.ResultSet#getStatement()} return the statement handle, so this saves a wrapper per query when
+     * the application never calls it. An unwrapped result set returns the driver's statement, which must not be
+     * closed by the application as it may be cached by the pool.
+     *
+     * @param unwrappedResultSets true if statements should return the driver's result sets.
+     */
+    public void setUnwrappedResultSets(boolean unwrappedResultSets) {
+        this.unwrappedResultSets = unwrappedResultSets;
+    }
+
     /**
      * @return the default isolation level.
      */
@@ -431,9 +577,14 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
         if (log.isDebugEnabled()) {
             log.debug("closing {}", this);
         }
+        initialized = false;
         pool.close();
         pool = null;
+        stopStatementWarmUp();
 
+        for (JdbcPooledConnection pooledConnection : xaResourceHolderMap.values()) {
+            ResourceRegistrar.unregisterXAResourceHolder(pooledConnection);
+        }
         xaResourceHolderMap.clear();
 
         connectionCustomizers.clear();
@@ -451,9 +602,66 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
         }
         JdbcPooledConnection pooledConnection = new JdbcPooledConnection(this, xads.getXAConnection());
         xaResourceHolderMap.put(pooledConnection.getXAResource(), pooledConnection);
+        ResourceRegistrar.registerXAResourceHolder(pooledConnection);
+        warmUpStatements(pooledConnection);
         return pooledConnection;
     }
 
+    /**
+     * @return the table interning the prepared statement cache keys of this pool, or null when the prepared
+     * statement cache is disabled.
+     */
+    public CacheKeyTable getCacheKeyTable() {
+        return cacheKeyTable;
+    }
+
+    /**
+     * @return the tracker of the statements prepared through the connections of this pool, or null when statement
+     * warm-up is disabled.
+     */
+    StatementUsageTracker getStatementUsageTracker() {
+        return statementUsageTracker;
+    }
+
+    private void startStatementWarmUp() {
+        statementUsageTracker = new StatementUsageTracker(preparedStatementCacheSize, preparedStatementWarmUpSize);
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("bitronix-statement-warm-up-" + getUniqueName() + "-%d")
+                .setDaemon(true)
+                .build();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        statementWarmUpExecutor = executor;
+    }
+
+    private void stopStatementWarmUp() {
+        ExecutorService executor = statementWarmUpExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+            statementWarmUpExecutor = null;
+        }
+        statementUsageTracker = null;
+    }
+
+    private void warmUpStatements(JdbcPooledConnection pooledConnection) {
+        StatementUsageTracker tracker = statementUsageTracker;
+        ExecutorService executor = statementWarmUpExecutor;
+        if (tracker == null || executor == null) {
+            return;
+        }
+        List<CacheKey> statements = tracker.getHotStatements();
+        if (statements.isEmpty()) {
+            return;
+        }
+        try {
+            executor.execute(() -> pooledConnection.warmUpStatements(statements));
+        } catch (RejectedExecutionException ex) {
+            if (log.isDebugEnabled()) {
+                log.debug("not warming up statements of {}, the pool is closing", pooledConnection);
+            }
+        }
+    }
+
     @Override
     public JdbcPooledConnection findXAResourceHolder(XAResource xaResource) {
         return xaResourceHolderMap.get(xaResource);
@@ -528,6 +736,49 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
         return pool.totalPoolSize();
     }
 
+    @Override
+    public int getEffectiveMinPoolSize() {
+        return pool.getEffectiveMinPoolSize();
+    }
+
+    @Override
+    public CompositeData getAcquisitionWaitTime() {
+        return pool.getMetrics().getAcquisitionWaitTime().toCompositeData();
+    }
+
+    @Override
+    public CompositeData getLeaseTime() {
+        return pool.getMetrics().getLeaseTime().toCompositeData();
+    }
+
+    @Override
+    public CompositeData getCreationTime() {
+        return pool.getMetrics().getCreationTime().toCompositeData();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return pool.getMetrics().getTimeoutCount();
+    }
+
+    @Override
+    public long getValidationCount() {
+        return pool.getMetrics().getValidationCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return pool.getMetrics().getEvictionCount();
+    }
+
+    /**
+     * @return the saturation metrics of the pool, or null if the pool has not been initialized yet.
+     */
+    public PoolMetrics getPoolMetrics() {
+        XAPool<?, ?> pool = this.pool;
+        return pool == null ? null : pool.getMetrics();
+    }
+
     @Override
     public void reset() throws Exception {
         pool.reset();
@@ -535,6 +786,7 @@ public class PoolingDataSource extends ResourceBean implements DataSource, XARes
 
     public void unregister(JdbcPooledConnection xaResourceHolder) {
         xaResourceHolderMap.remove(xaResourceHolder.getXAResource());
+        ResourceRegistrar.unregisterXAResourceHolder(xaResourceHolder);
 
     }
 
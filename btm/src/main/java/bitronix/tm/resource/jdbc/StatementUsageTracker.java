@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc;
+
+import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Learns which statements are prepared most often through all the connections of a {@link PoolingDataSource}.
+ * <p>
+ * Every {@link #REFRESH_INTERVAL} recorded usages the counters are ranked to publish the statements worth preparing
+ * on new connections and the amount of statements covering most of the usages, which is the size the per-connection
+ * caches need. The counters are halved at the same time so that the ranking follows changes of the workload and
+ * statements which are rarely prepared are forgotten.
+ */
+final class StatementUsageTracker {
+
+    static final int REFRESH_INTERVAL = 1024;
+
+    /**
+     * Share of the recorded usages the per-connection caches should be able to serve.
+     */
+    private static final double CACHE_COVERAGE = 0.95;
+
+    private final int maxCacheSize;
+    private final int warmUpSize;
+    private final Map<CacheKey, LongAdder> usages = new ConcurrentHashMap<>();
+    private final AtomicInteger recordsSinceRefresh = new AtomicInteger();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile List<CacheKey> hotStatements = Collections.emptyList();
+    private volatile int cacheSize;
+
+    /**
+     * @param maxCacheSize the configured size of the per-connection statement caches.
+     * @param warmUpSize the amount of statements to prepare on new connections, bounded by the cache size.
+     */
+    StatementUsageTracker(int maxCacheSize, int warmUpSize) {
+        this.maxCacheSize = maxCacheSize;
+        this.warmUpSize = Math.min(warmUpSize, maxCacheSize);
+        this.cacheSize = maxCacheSize;
+    }
+
+    /**
+     * Record that a statement has been prepared through one of the connections of the pool.
+     *
+     * @param key the key of the prepared statement.
+     */
+    void record(CacheKey key) {
+        LongAdder counter = usages.get(key);
+        if (counter == null) {
+            counter = usages.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+
+        if (recordsSinceRefresh.incrementAndGet() >= REFRESH_INTERVAL) {
+            refresh();
+        }
+    }
+
+    /**
+     * @return the statements to prepare on a new connection, most used first.
+     */
+    List<CacheKey> getHotStatements() {
+        return hotStatements;
+    }
+
+    /**
+     * @return the amount of statements each connection should cache, never above the configured cache size.
+     */
+    int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Rank the statements by usage and age the counters. Concurrent calls return immediately, the usages recorded
+     * while the counters are halved may be lost which only slightly skews the statistics.
+     */
+    void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            recordsSinceRefresh.set(0);
+
+            List<Usage> ranking = new ArrayList<>(usages.size());
+            long total = 0;
+            for (Map.Entry<CacheKey, LongAdder> entry : usages.entrySet()) {
+                long count = entry.getValue().sumThenReset();
+                if (count / 2 > 0) {
+                    entry.getValue().add(count / 2);
+                } else {
+                    usages.remove(entry.getKey(), entry.getValue());
+                }
+                if (count > 0) {
+                    ranking.add(new Usage(entry.getKey(), count));
+                    total += count;
+                }
+            }
+            if (ranking.isEmpty()) {
+                return;
+            }
+            ranking.sort((u1, u2) -> Long.compare(u2.count, u1.count));
+
+            List<CacheKey> hottest = new ArrayList<>(Math.min(warmUpSize, ranking.size()));
+            for (int i = 0; i < warmUpSize && i < ranking.size(); i++) {
+                hottest.add(ranking.get(i).key);
+            }
+
+            int covering = 0;
+            long covered = 0;
+            while (covering < ranking.size() && covered < total * CACHE_COVERAGE) {
+                covered += ranking.get(covering++).count;
+            }
+
+            hotStatements = Collections.unmodifiableList(hottest);
+            cacheSize = Math.min(maxCacheSize, Math.max(covering, warmUpSize));
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private record Usage(CacheKey key, long count) {
+    }
+}
@@ -58,15 +58,22 @@ public class CallableStatementJavaProxy extends JavaProxyBase<CallableStatement>
     }
 
     public ResultSet executeQuery() throws SQLException {
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), delegate.executeQuery());
+        return proxyResultSet(delegate.executeQuery());
     }
 
     public ResultSet executeQuery(String sql) throws SQLException {
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), delegate.executeQuery(sql));
+        return proxyResultSet(delegate.executeQuery(sql));
     }
 
     public ResultSet getGeneratedKeys() throws SQLException {
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), delegate.getGeneratedKeys());
+        return proxyResultSet(delegate.getGeneratedKeys());
+    }
+
+    private ResultSet proxyResultSet(ResultSet resultSet) {
+        if (resultSet == null || jdbcPooledConnection.isResultSetUnwrapped()) {
+            return resultSet;
+        }
+        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), resultSet);
     }
 
     /* java.sql.Wrapper implementation */
@@ -15,7 +15,10 @@
  */
 package bitronix.tm.resource.jdbc.proxy;
 
+import bitronix.tm.BitronixTransaction;
+import bitronix.tm.internal.XAResourceHolderState;
 import bitronix.tm.resource.common.TransactionContextHelper;
+import bitronix.tm.resource.jdbc.CacheKeyTable;
 import bitronix.tm.resource.jdbc.JdbcPooledConnection;
 import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
 import bitronix.tm.resource.jdbc.PooledConnectionProxy;
@@ -39,6 +42,9 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
 
     private JdbcPooledConnection jdbcPooledConnection;
     private boolean useStatementCache;
+    private CacheKeyTable cacheKeys;
+    private BitronixTransaction enlistedTransaction;
+    private XAResourceHolderState enlistedState;
 
     public ConnectionJavaProxy() {
         // Default constructor
@@ -54,7 +60,8 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
         this.delegate = connection;
 
         if (jdbcPooledConnection != null) {
-            useStatementCache = jdbcPooledConnection.getPoolingDataSource().getPreparedStatementCacheSize() > 0;
+            cacheKeys = jdbcPooledConnection.getPoolingDataSource().getCacheKeyTable();
+            useStatementCache = cacheKeys != null && jdbcPooledConnection.getPoolingDataSource().getPreparedStatementCacheSize() > 0;
         }
     }
 
@@ -87,8 +94,12 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
             return;
         }
 
-        jdbcPooledConnection.release();
-        jdbcPooledConnection = null;
+        try {
+            jdbcPooledConnection.flushCoalescedUpdates();
+        } finally {
+            jdbcPooledConnection.release();
+            jdbcPooledConnection = null;
+        }
     }
 
     public void commit() throws SQLException {
@@ -176,11 +187,30 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
 
         if (!jdbcPooledConnection.isParticipatingInActiveGlobalTransaction()) {
             delegate.setAutoCommit(autoCommit);
+            jdbcPooledConnection.autoCommitChanged(autoCommit);
         } else if (autoCommit) {
             throw new SQLException("autocommit is not allowed on a resource enlisted in a global transaction");
         }
     }
 
+    public void setTransactionIsolation(int level) throws SQLException {
+        if (jdbcPooledConnection == null) {
+            throw new SQLException("connection handle already closed");
+        }
+
+        delegate.setTransactionIsolation(level);
+        jdbcPooledConnection.transactionIsolationChanged(level);
+    }
+
+    public void setHoldability(int holdability) throws SQLException {
+        if (jdbcPooledConnection == null) {
+            throw new SQLException("connection handle already closed");
+        }
+
+        delegate.setHoldability(holdability);
+        jdbcPooledConnection.holdabilityChanged(holdability);
+    }
+
     public boolean isClosed() throws SQLException {
         if (jdbcPooledConnection == null) {
             return true;
@@ -190,6 +220,7 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
 
     public Statement createStatement() throws SQLException {
         enlistResource();
+        jdbcPooledConnection.stopCoalescingUpdates();
 
         Statement statement = delegate.createStatement();
         jdbcPooledConnection.registerUncachedStatement(statement);
@@ -199,6 +230,7 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
 
     public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
         enlistResource();
+        jdbcPooledConnection.stopCoalescingUpdates();
 
         Statement statement = delegate.createStatement(resultSetType, resultSetConcurrency);
         jdbcPooledConnection.registerUncachedStatement(statement);
@@ -208,6 +240,7 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
 
     public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
         enlistResource();
+        jdbcPooledConnection.stopCoalescingUpdates();
 
         Statement statement = delegate.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
         jdbcPooledConnection.registerUncachedStatement(statement);
@@ -217,6 +250,7 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
 
     public CallableStatement prepareCall(String sql) throws SQLException {
         enlistResource();
+        jdbcPooledConnection.stopCoalescingUpdates();
 
         CallableStatement statement = delegate.prepareCall(sql);
         jdbcPooledConnection.registerUncachedStatement(statement);
@@ -226,6 +260,7 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
 
     public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
         enlistResource();
+        jdbcPooledConnection.stopCoalescingUpdates();
 
         CallableStatement statement = delegate.prepareCall(sql, resultSetType, resultSetConcurrency);
         jdbcPooledConnection.registerUncachedStatement(statement);
@@ -235,6 +270,7 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
 
     public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
         enlistResource();
+        jdbcPooledConnection.stopCoalescingUpdates();
 
         CallableStatement statement = delegate.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
         jdbcPooledConnection.registerUncachedStatement(statement);
@@ -248,14 +284,14 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
         enlistResource();
 
         if (useStatementCache) {
-            CacheKey cacheKey = new CacheKey(sql);
-            PreparedStatement cachedStmt = jdbcPooledConnection.getCachedStatement(cacheKey);
-            if (cachedStmt == null) {
-                cachedStmt = delegate.prepareStatement(sql);
-                jdbcPooledConnection.putCachedStatement(cacheKey, cachedStmt);
+            CacheKey cacheKey = cacheKeys.get(sql);
+            PreparedStatement statementProxy = jdbcPooledConnection.getCachedStatementProxy(cacheKey);
+            if (statementProxy == null) {
+                PreparedStatement stmt = delegate.prepareStatement(sql);
+                jdbcPooledConnection.putCachedStatement(cacheKey, stmt);
+                statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, cacheKey);
             }
-
-            return JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, cachedStmt, cacheKey);
+            return statementProxy;
         } else {
             PreparedStatement stmt = delegate.prepareStatement(sql);
             jdbcPooledConnection.registerUncachedStatement(stmt);
@@ -268,17 +304,21 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
         enlistResource();
 
         if (useStatementCache) {
-            CacheKey cacheKey = new CacheKey(sql, autoGeneratedKeys);
-            PreparedStatement cachedStmt = jdbcPooledConnection.getCachedStatement(cacheKey);
-            if (cachedStmt == null) {
-                cachedStmt = delegate.prepareStatement(sql, autoGeneratedKeys);
-                jdbcPooledConnection.putCachedStatement(cacheKey, cachedStmt);
+            CacheKey cacheKey = cacheKeys.get(sql, autoGeneratedKeys);
+            PreparedStatement statementProxy = jdbcPooledConnection.getCachedStatementProxy(cacheKey);
+            if (statementProxy == null) {
+                PreparedStatement stmt = delegate.prepareStatement(sql, autoGeneratedKeys);
+                jdbcPooledConnection.putCachedStatement(cacheKey, stmt);
+                statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, cacheKey);
             }
-
-            return JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, cachedStmt, cacheKey);
+            return statementProxy;
         } else {
             PreparedStatement stmt = delegate.prepareStatement(sql, autoGeneratedKeys);
-            jdbcPooledConnection.registerUncachedStatement(stmt);
+            if (autoGeneratedKeys == Statement.NO_GENERATED_KEYS) {
+                jdbcPooledConnection.registerUncachedStatement(stmt);
+            } else {
+                jdbcPooledConnection.registerUncachedGeneratedKeysStatement(stmt);
+            }
             PreparedStatement statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, null);
             return statementProxy;
         }
@@ -288,14 +328,14 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
         enlistResource();
 
         if (useStatementCache) {
-            CacheKey cacheKey = new CacheKey(sql, resultSetType, resultSetConcurrency);
-            PreparedStatement cachedStmt = jdbcPooledConnection.getCachedStatement(cacheKey);
-            if (cachedStmt == null) {
-                cachedStmt = delegate.prepareStatement(sql, resultSetType, resultSetConcurrency);
-                jdbcPooledConnection.putCachedStatement(cacheKey, cachedStmt);
+            CacheKey cacheKey = cacheKeys.get(sql, resultSetType, resultSetConcurrency);
+            PreparedStatement statementProxy = jdbcPooledConnection.getCachedStatementProxy(cacheKey);
+            if (statementProxy == null) {
+                PreparedStatement stmt = delegate.prepareStatement(sql, resultSetType, resultSetConcurrency);
+                jdbcPooledConnection.putCachedStatement(cacheKey, stmt);
+                statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, cacheKey);
             }
-
-            return JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, cachedStmt, cacheKey);
+            return statementProxy;
         } else {
             PreparedStatement stmt = delegate.prepareStatement(sql, resultSetType, resultSetConcurrency);
             jdbcPooledConnection.registerUncachedStatement(stmt);
@@ -308,14 +348,14 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
         enlistResource();
 
         if (useStatementCache) {
-            CacheKey cacheKey = new CacheKey(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
-            PreparedStatement cachedStmt = jdbcPooledConnection.getCachedStatement(cacheKey);
-            if (cachedStmt == null) {
-                cachedStmt = delegate.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
-                jdbcPooledConnection.putCachedStatement(cacheKey, cachedStmt);
+            CacheKey cacheKey = cacheKeys.get(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+            PreparedStatement statementProxy = jdbcPooledConnection.getCachedStatementProxy(cacheKey);
+            if (statementProxy == null) {
+                PreparedStatement stmt = delegate.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+                jdbcPooledConnection.putCachedStatement(cacheKey, stmt);
+                statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, cacheKey);
             }
-
-            return JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, cachedStmt, cacheKey);
+            return statementProxy;
         } else {
             PreparedStatement stmt = delegate.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
             jdbcPooledConnection.registerUncachedStatement(stmt);
@@ -328,17 +368,17 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
         enlistResource();
 
         if (useStatementCache) {
-            CacheKey cacheKey = new CacheKey(sql, columnIndexes);
-            PreparedStatement cachedStmt = jdbcPooledConnection.getCachedStatement(cacheKey);
-            if (cachedStmt == null) {
-                cachedStmt = delegate.prepareStatement(sql, columnIndexes);
-                jdbcPooledConnection.putCachedStatement(cacheKey, cachedStmt);
+            CacheKey cacheKey = cacheKeys.get(sql, columnIndexes);
+            PreparedStatement statementProxy = jdbcPooledConnection.getCachedStatementProxy(cacheKey);
+            if (statementProxy == null) {
+                PreparedStatement stmt = delegate.prepareStatement(sql, columnIndexes);
+                jdbcPooledConnection.putCachedStatement(cacheKey, stmt);
+                statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, cacheKey);
             }
-
-            return JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, cachedStmt, cacheKey);
+            return statementProxy;
         } else {
             PreparedStatement stmt = delegate.prepareStatement(sql, columnIndexes);
-            jdbcPooledConnection.registerUncachedStatement(stmt);
+            jdbcPooledConnection.registerUncachedGeneratedKeysStatement(stmt);
             PreparedStatement statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, null);
             return statementProxy;
         }
@@ -348,17 +388,17 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
         enlistResource();
 
         if (useStatementCache) {
-            CacheKey cacheKey = new CacheKey(sql, columnNames);
-            PreparedStatement cachedStmt = jdbcPooledConnection.getCachedStatement(cacheKey);
-            if (cachedStmt == null) {
-                cachedStmt = delegate.prepareStatement(sql, columnNames);
-                jdbcPooledConnection.putCachedStatement(cacheKey, cachedStmt);
+            CacheKey cacheKey = cacheKeys.get(sql, columnNames);
+            PreparedStatement statementProxy = jdbcPooledConnection.getCachedStatementProxy(cacheKey);
+            if (statementProxy == null) {
+                PreparedStatement stmt = delegate.prepareStatement(sql, columnNames);
+                jdbcPooledConnection.putCachedStatement(cacheKey, stmt);
+                statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, cacheKey);
             }
-
-            return JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, cachedStmt, cacheKey);
+            return statementProxy;
         } else {
             PreparedStatement stmt = delegate.prepareStatement(sql, columnNames);
-            jdbcPooledConnection.registerUncachedStatement(stmt);
+            jdbcPooledConnection.registerUncachedGeneratedKeysStatement(stmt);
             PreparedStatement statementProxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(jdbcPooledConnection, stmt, null);
             return statementProxy;
         }
@@ -393,8 +433,17 @@ public class ConnectionJavaProxy extends JavaProxyBase<Connection> implements Po
         }
 
         if (jdbcPooledConnection.getPoolingDataSource().getAutomaticEnlistingEnabled()) {
+            // skip the enlistment when this handle already enlisted its connection in the current
+            // transaction and that branch has not been ended since
+            BitronixTransaction currentTransaction = TransactionContextHelper.currentTransaction();
+            XAResourceHolderState state = enlistedState;
+            if (state != null && currentTransaction == enlistedTransaction && !state.isEnded() && !currentTransaction.timedOut()) {
+                return;
+            }
+
             try {
-                TransactionContextHelper.enlistInCurrentTransaction(jdbcPooledConnection);
+                enlistedState = TransactionContextHelper.enlistInCurrentTransaction(jdbcPooledConnection);
+                enlistedTransaction = enlistedState == null ? null : currentTransaction;
             } catch (SystemException | RollbackException ex) {
                 throw new SQLException("error enlisting " + this, ex);
             }
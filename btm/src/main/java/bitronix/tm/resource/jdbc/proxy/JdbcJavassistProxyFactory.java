@@ -18,14 +18,11 @@ package bitronix.tm.resource.jdbc.proxy;
 import bitronix.tm.resource.jdbc.JdbcPooledConnection;
 import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
 import bitronix.tm.resource.jdbc.lrc.LrcXAResource;
-import bitronix.tm.utils.ClassLoaderUtils;
 import javassist.*;
 
 import javax.sql.XAConnection;
 import java.lang.reflect.Constructor;
 import java.sql.*;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * This class generates JDBC proxy classes using Javassist bytecode generated
@@ -35,8 +32,7 @@ import java.util.Set;
  */
 public class JdbcJavassistProxyFactory implements JdbcProxyFactory {
 
-    private final ClassMap classMap;
-    private ClassPool classPool;
+    private JdbcProxyClassGenerator generator;
 
     private Constructor<Connection> proxyConnectionConstructor;
     private Constructor<Statement> proxyStatementConstructor;
@@ -48,11 +44,11 @@ public class JdbcJavassistProxyFactory implements JdbcProxyFactory {
     private final JdbcJavaProxyFactory lrcProxyFactory;
 
     JdbcJavassistProxyFactory() {
-        classMap = new ClassMap();
         ClassPool defaultPool = ClassPool.getDefault();
-        classPool = new ClassPool(defaultPool);
+        ClassPool classPool = new ClassPool(defaultPool);
         classPool.insertClassPath(new ClassClassPath(this.getClass()));
         classPool.childFirstLookup = true;
+        generator = new JdbcProxyClassGenerator(classPool);
 
         createProxyConnectionClass();
         createProxyStatementClass();
@@ -62,9 +58,8 @@ public class JdbcJavassistProxyFactory implements JdbcProxyFactory {
 
         lrcProxyFactory = new JdbcJavaProxyFactory();
 
-        // Clear the map, we don't need it anymore
-        classMap.clear();
-        classPool = null;
+        // Drop the generator and its class pool, we don't need them anymore
+        generator = null;
     }
 
     /**
@@ -211,57 +206,7 @@ public class JdbcJavassistProxyFactory implements JdbcProxyFactory {
     private <T> Class<T> generateProxyClass(Class<T> primaryInterface, Class<?> superClass)
             throws NotFoundException, CannotCompileException, NoSuchMethodException, SecurityException {
 
-        // Make a new class that extends one of the JavaProxy classes (ie. superClass); use the name to XxxJavassistProxy instead of XxxJavaProxy
-        String superClassName = superClass.getName();
-        CtClass superClassCt = classPool.getCtClass(superClassName);
-        CtClass targetCt = classPool.makeClass(superClassName.replace("JavaProxy", "JavassistProxy"), superClassCt);
-
-        // Generate constructors that simply call super(..)
-        for (CtConstructor constructor : superClassCt.getConstructors()) {
-            CtConstructor ctConstructor = CtNewConstructor.make(constructor.getParameterTypes(), constructor.getExceptionTypes(), targetCt);
-            targetCt.addConstructor(ctConstructor);
-        }
-
-        // Make a set of method signatures we inherit implementation for, so we don't generate delegates for these
-        Set<String> superSigs = new HashSet<>();
-        for (CtMethod method : superClassCt.getMethods()) {
-            superSigs.add(method.getName() + method.getSignature());
-        }
-
-        Set<String> methods = new HashSet<>();
-        Set<Class<?>> interfaces = ClassLoaderUtils.getAllInterfaces(primaryInterface);
-        for (Class<?> intf : interfaces) {
-            CtClass intfCt = classPool.getCtClass(intf.getName());
-            targetCt.addInterface(intfCt);
-            for (CtMethod intfMethod : intfCt.getDeclaredMethods()) {
-                if (superSigs.contains(intfMethod.getName() + intfMethod.getSignature())) {
-                    // don't generate delegates for methods we override
-                    continue;
-                }
-
-                CtMethod method = CtNewMethod.copy(intfMethod, targetCt, classMap);
-                // Ignore already added methods that come from other interfaces
-                if (methods.contains(intfMethod.getName() + intfMethod.getSignature())) {
-                    continue;
-                }
-
-                methods.add(intfMethod.getName() + intfMethod.getSignature());
-
-                // Generate a method that simply invokes the same method on the delegate
-                StringBuilder call = new StringBuilder("{");
-                if (method.getReturnType() != CtClass.voidType) {
-                    call.append("return ");
-                }
-                // cast to primary interface
-                call.append("((").append(primaryInterface.getName()).append(')');
-                call.append("delegate).");
-                call.append(method.getName()).append("($$);");
-                call.append('}');
-                method.setBody(call.toString());
-                targetCt.addMethod(method);
-            }
-        }
-
+        CtClass targetCt = generator.makeProxyClass(primaryInterface, superClass, "JavassistProxy");
         return (Class<T>) targetCt.toClass(JdbcProxyFactory.class);
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc.proxy;
+
+import bitronix.tm.utils.ClassLoaderUtils;
+import javassist.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Generates JDBC proxy classes with Javassist. Each generated class extends one of the JavaProxy classes and
+ * implements the remaining methods of the JDBC interface with a direct call to the delegate.
+ * <p>
+ * The generator is used at runtime by {@link JdbcJavassistProxyFactory}, the classes used by
+ * {@code JdbcGeneratedProxyFactory} are generated as sources at build time by {@code JdbcProxySourceGenerator}.
+ */
+public final class JdbcProxyClassGenerator {
+
+    private final ClassPool classPool;
+    private final ClassMap classMap = new ClassMap();
+
+    JdbcProxyClassGenerator(ClassPool classPool) {
+        this.classPool = classPool;
+    }
+
+    /**
+     * Make a proxy class: class XxxSuffix extends XxxJavaProxy implements java.sql.Xxx
+     *
+     * @param primaryInterface the JDBC interface implemented by the proxy.
+     * @param superClass the JavaProxy class containing the intercepted methods.
+     * @param proxySuffix the suffix replacing JavaProxy in the proxy class name.
+     * @return the proxy class.
+     * @throws NotFoundException if one of the classes cannot be found.
+     * @throws CannotCompileException if a delegating method cannot be compiled.
+     */
+    CtClass makeProxyClass(Class<?> primaryInterface, Class<?> superClass, String proxySuffix)
+            throws NotFoundException, CannotCompileException {
+
+        // Make a new class that extends one of the JavaProxy classes (ie. superClass); use the name to XxxSuffix instead of XxxJavaProxy
+        String superClassName = superClass.getName();
+        CtClass superClassCt = classPool.getCtClass(superClassName);
+        CtClass targetCt = classPool.makeClass(superClassName.replace("JavaProxy", proxySuffix), superClassCt);
+
+        // Generate constructors that simply call super(..)
+        for (CtConstructor constructor : superClassCt.getConstructors()) {
+            CtConstructor ctConstructor = CtNewConstructor.make(constructor.getParameterTypes(), constructor.getExceptionTypes(), targetCt);
+            targetCt.addConstructor(ctConstructor);
+        }
+
+        // Make a set of method signatures we inherit implementation for, so we don't generate delegates for these
+        Set<String> superSigs = new HashSet<>();
+        for (CtMethod method : superClassCt.getMethods()) {
+            superSigs.add(method.getName() + method.getSignature());
+        }
+
+        Set<String> methods = new HashSet<>();
+        Set<Class<?>> interfaces = ClassLoaderUtils.getAllInterfaces(primaryInterface);
+        for (Class<?> intf : interfaces) {
+            CtClass intfCt = classPool.getCtClass(intf.getName());
+            targetCt.addInterface(intfCt);
+            for (CtMethod intfMethod : intfCt.getDeclaredMethods()) {
+                if (superSigs.contains(intfMethod.getName() + intfMethod.getSignature())) {
+                    // don't generate delegates for methods we override
+                    continue;
+                }
+
+                CtMethod method = CtNewMethod.copy(intfMethod, targetCt, classMap);
+                // Ignore already added methods that come from other interfaces
+                if (methods.contains(intfMethod.getName() + intfMethod.getSignature())) {
+                    continue;
+                }
+
+                methods.add(intfMethod.getName() + intfMethod.getSignature());
+
+                // Generate a method that simply invokes the same method on the delegate
+                StringBuilder call = new StringBuilder("{");
+                if (method.getReturnType() != CtClass.voidType) {
+                    call.append("return ");
+                }
+                // cast to primary interface
+                call.append("((").append(primaryInterface.getName()).append(')');
+                call.append("delegate).");
+                call.append(method.getName()).append("($$);");
+                call.append('}');
+                method.setBody(call.toString());
+                targetCt.addMethod(method);
+            }
+        }
+
+        return targetCt;
+    }
+}
@@ -63,17 +63,7 @@ public interface JdbcProxyFactory {
             try {
                 String jdbcProxyFactoryClass = TransactionManagerServices.getConfiguration().getJdbcProxyFactoryClass();
                 if ("auto".equals(jdbcProxyFactoryClass)) {
-                    try {
-                        ClassLoaderUtils.loadClass("javassist.CtClass");
-                        jdbcProxyFactoryClass = "bitronix.tm.resource.jdbc.proxy.JdbcJavassistProxyFactory";
-                    } catch (ClassNotFoundException cnfe) {
-                        try {
-                            ClassLoaderUtils.loadClass("net.sf.cglib.proxy.Enhancer");
-                            jdbcProxyFactoryClass = "bitronix.tm.resource.jdbc.proxy.JdbcCglibProxyFactory";
-                        } catch (ClassNotFoundException cnfe2) {
-                            jdbcProxyFactoryClass = "bitronix.tm.resource.jdbc.proxy.JdbcJavaProxyFactory";
-                        }
-                    }
+                    jdbcProxyFactoryClass = detect();
                 }
                 Class<?> proxyFactoryClass = ClassLoaderUtils.loadClass(jdbcProxyFactoryClass);
                 return (JdbcProxyFactory) proxyFactoryClass.getDeclaredConstructor().newInstance();
@@ -81,5 +71,28 @@ public interface JdbcProxyFactory {
                 throw new BitronixRuntimeException("error initializing JdbcProxyFactory", ex);
             }
         }
+
+        private static String detect() {
+            // only compiled together with the proxy sources generated at build time
+            if (isAvailable("bitronix.tm.resource.jdbc.proxy.JdbcGeneratedProxyFactory")) {
+                return "bitronix.tm.resource.jdbc.proxy.JdbcGeneratedProxyFactory";
+            }
+            if (isAvailable("javassist.CtClass")) {
+                return "bitronix.tm.resource.jdbc.proxy.JdbcJavassistProxyFactory";
+            }
+            if (isAvailable("net.sf.cglib.proxy.Enhancer")) {
+                return "bitronix.tm.resource.jdbc.proxy.JdbcCglibProxyFactory";
+            }
+            return "bitronix.tm.resource.jdbc.proxy.JdbcJavaProxyFactory";
+        }
+
+        private static boolean isAvailable(String className) {
+            try {
+                ClassLoaderUtils.loadClass(className);
+                return true;
+            } catch (ClassNotFoundException ex) {
+                return false;
+            }
+        }
     }
 }
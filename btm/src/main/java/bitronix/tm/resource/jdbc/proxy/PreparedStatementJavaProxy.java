@@ -35,6 +35,8 @@ public class PreparedStatementJavaProxy extends JavaProxyBase<PreparedStatement>
     private JdbcPooledConnection jdbcPooledConnection;
     private CacheKey cacheKey;
     private boolean pretendClosed;
+    private boolean executed;
+    private boolean batched;
 
     public PreparedStatementJavaProxy(JdbcPooledConnection jdbcPooledConnection, PreparedStatement statement, CacheKey cacheKey) {
         initialize(jdbcPooledConnection, statement, cacheKey);
@@ -50,6 +52,8 @@ public class PreparedStatementJavaProxy extends JavaProxyBase<PreparedStatement>
         this.delegate = statement;
         this.cacheKey = cacheKey;
         this.pretendClosed = false;
+        this.executed = false;
+        this.batched = false;
     }
 
     @Override
@@ -64,6 +68,7 @@ public class PreparedStatementJavaProxy extends JavaProxyBase<PreparedStatement>
             return;
         }
 
+        jdbcPooledConnection.flushCoalescedUpdates();
         pretendClosed = true;
 
         if (cacheKey == null) {
@@ -72,13 +77,20 @@ public class PreparedStatementJavaProxy extends JavaProxyBase<PreparedStatement>
         } else {
             // Clear the parameters so the next use of this cached statement
             // doesn't pick up unexpected values.
+            boolean tracked = jdbcPooledConnection.isStatementResetTracked();
             delegate.clearParameters();
-            delegate.clearWarnings();
-            try {
-                delegate.clearBatch();
-            } catch (SQLFeatureNotSupportedException e) {
-                // Driver doesn't support batch updates.
+            if (!tracked || executed) {
+                delegate.clearWarnings();
             }
+            if (!tracked || batched) {
+                try {
+                    delegate.clearBatch();
+                } catch (SQLFeatureNotSupportedException e) {
+                    // Driver doesn't support batch updates.
+                }
+            }
+            executed = false;
+            batched = false;
 
             // Return to cache so the usage count can be updated
             jdbcPooledConnection.putCachedStatement(cacheKey, delegate);
@@ -90,35 +102,93 @@ public class PreparedStatementJavaProxy extends JavaProxyBase<PreparedStatement>
     }
 
     public ResultSet getResultSet() throws SQLException {
-        ResultSet resultSet = delegate.getResultSet();
-        if (resultSet == null) {
-            return null;
+        return proxyResultSet(delegate.getResultSet());
+    }
+
+    public void addBatch() throws SQLException {
+        jdbcPooledConnection.flushCoalescedUpdates();
+        delegate.addBatch();
+        batched = true;
+    }
+
+    public void addBatch(String sql) throws SQLException {
+        jdbcPooledConnection.flushCoalescedUpdates();
+        delegate.addBatch(sql);
+        batched = true;
+    }
+
+    public boolean execute() throws SQLException {
+        executed = true;
+        jdbcPooledConnection.flushCoalescedUpdates();
+        return delegate.execute();
+    }
+
+    public int executeUpdate() throws SQLException {
+        executed = true;
+        if (!batched && !returnsGeneratedKeys() && jdbcPooledConnection.coalesceUpdate(delegate)) {
+            // the actual update count is only known once the batch is executed
+            return 1;
         }
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), resultSet);
+        jdbcPooledConnection.flushCoalescedUpdates();
+        return delegate.executeUpdate();
     }
 
-    public ResultSet executeQuery() throws SQLException {
-        ResultSet resultSet = delegate.executeQuery();
-        if (resultSet == null) {
-            return null;
+    /**
+     * The keys returned by a batch are those of all its updates, so an update which keys can be requested is never
+     * coalesced.
+     */
+    private boolean returnsGeneratedKeys() {
+        if (cacheKey != null) {
+            return cacheKey.returnsGeneratedKeys();
         }
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), resultSet);
+        return jdbcPooledConnection.returnsGeneratedKeys(delegate);
+    }
+
+    public long executeLargeUpdate() throws SQLException {
+        executed = true;
+        jdbcPooledConnection.flushCoalescedUpdates();
+        return delegate.executeLargeUpdate();
+    }
+
+    public int[] executeBatch() throws SQLException {
+        executed = true;
+        jdbcPooledConnection.flushCoalescedUpdates();
+        int[] updateCounts = delegate.executeBatch();
+        // the batch is emptied once executed
+        batched = false;
+        return updateCounts;
+    }
+
+    public long[] executeLargeBatch() throws SQLException {
+        executed = true;
+        jdbcPooledConnection.flushCoalescedUpdates();
+        long[] updateCounts = delegate.executeLargeBatch();
+        batched = false;
+        return updateCounts;
+    }
+
+    public ResultSet executeQuery() throws SQLException {
+        executed = true;
+        jdbcPooledConnection.flushCoalescedUpdates();
+        return proxyResultSet(delegate.executeQuery());
     }
 
     public ResultSet executeQuery(String sql) throws SQLException {
-        ResultSet resultSet = delegate.executeQuery(sql);
-        if (resultSet == null) {
-            return null;
-        }
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), resultSet);
+        executed = true;
+        jdbcPooledConnection.flushCoalescedUpdates();
+        return proxyResultSet(delegate.executeQuery(sql));
     }
 
     public ResultSet getGeneratedKeys() throws SQLException {
-        ResultSet generatedKeys = delegate.getGeneratedKeys();
-        if (generatedKeys == null) {
-            return null;
+        jdbcPooledConnection.flushCoalescedUpdates();
+        return proxyResultSet(delegate.getGeneratedKeys());
+    }
+
+    private ResultSet proxyResultSet(ResultSet resultSet) {
+        if (resultSet == null || jdbcPooledConnection.isResultSetUnwrapped()) {
+            return resultSet;
         }
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), generatedKeys);
+        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), resultSet);
     }
 
     /* java.sql.Wrapper implementation */
@@ -58,19 +58,18 @@ public class StatementJavaProxy extends JavaProxyBase<Statement> {
     }
 
     public ResultSet executeQuery(String sql) throws SQLException {
-        ResultSet resultSet = delegate.executeQuery(sql);
-        if (resultSet == null) {
-            return null;
-        }
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), resultSet);
+        return proxyResultSet(delegate.executeQuery(sql));
     }
 
     public ResultSet getGeneratedKeys() throws SQLException {
-        ResultSet generatedKeys = delegate.getGeneratedKeys();
-        if (generatedKeys == null) {
-            return null;
+        return proxyResultSet(delegate.getGeneratedKeys());
+    }
+
+    private ResultSet proxyResultSet(ResultSet resultSet) {
+        if (resultSet == null || jdbcPooledConnection.isResultSetUnwrapped()) {
+            return resultSet;
         }
-        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), generatedKeys);
+        return JdbcProxyFactory.INSTANCE.getProxyResultSet(this.getProxy(), resultSet);
     }
 
     /* java.sql.Wrapper implementation */
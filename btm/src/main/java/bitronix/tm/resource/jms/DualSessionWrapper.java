@@ -18,6 +18,7 @@ package bitronix.tm.resource.jms;
 import bitronix.tm.BitronixTransaction;
 import bitronix.tm.internal.BitronixRollbackSystemException;
 import bitronix.tm.internal.BitronixSystemException;
+import bitronix.tm.resource.ResourceRegistrar;
 import bitronix.tm.resource.common.AbstractXAResourceHolder;
 import bitronix.tm.resource.common.ResourceBean;
 import bitronix.tm.resource.common.StateChangeListener;
@@ -132,6 +133,7 @@ public class DualSessionWrapper extends AbstractXAResourceHolder<DualSessionWrap
                 }
             }
             xaResource = xaSession.getXAResource();
+            ResourceRegistrar.registerXAResourceHolder(this);
         }
         return xaSession.getSession();
     }
@@ -198,6 +200,7 @@ public class DualSessionWrapper extends AbstractXAResourceHolder<DualSessionWrap
             }
 
             if (xaSession != null) {
+                ResourceRegistrar.unregisterXAResourceHolder(this);
                 try {
                     xaSession.close();
                 } catch (JMSException ex) {
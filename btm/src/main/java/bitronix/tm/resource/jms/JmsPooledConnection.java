@@ -33,6 +33,8 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implementation of a JMS pooled connection wrapping vendor's {@link XAConnection} implementation.
@@ -46,7 +48,13 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
 
     private volatile XAConnection xaConnection;
     private final PoolingConnectionFactory poolingConnectionFactory;
-    private final Set<DualSessionWrapper> sessions = Collections.synchronizedSet(new HashSet<DualSessionWrapper>());
+    /**
+     * The open sessions, guarded by sessionsLock. Locks are used instead of monitors as sessions get created and closed
+     * while they are held, which would pin the carrier of a virtual thread.
+     */
+    private final Set<DualSessionWrapper> sessions = new HashSet<>();
+    private final Lock sessionsLock = new ReentrantLock();
+    private final Lock connectionLock = new ReentrantLock();
 
     /* management */
     private final String jmxName;
@@ -86,29 +94,42 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
         return poolingConnectionFactory;
     }
 
-    public synchronized RecoveryXAResourceHolder createRecoveryXAResourceHolder() throws JMSException {
-        DualSessionWrapper dualSessionWrapper = new DualSessionWrapper(this, false, 0);
-        dualSessionWrapper.getSession(true); // force creation of XASession to allow access to XAResource
-        return new RecoveryXAResourceHolder(dualSessionWrapper);
+    public RecoveryXAResourceHolder createRecoveryXAResourceHolder() throws JMSException {
+        connectionLock.lock();
+        try {
+            DualSessionWrapper dualSessionWrapper = new DualSessionWrapper(this, false, 0);
+            dualSessionWrapper.getSession(true); // force creation of XASession to allow access to XAResource
+            return new RecoveryXAResourceHolder(dualSessionWrapper);
+        } finally {
+            connectionLock.unlock();
+        }
     }
 
     @Override
-    public synchronized void close() throws JMSException {
-        if (xaConnection != null) {
-            poolingConnectionFactory.unregister(this);
-            setState(State.CLOSED);
-            try {
-                xaConnection.close();
-            } finally {
-                xaConnection = null;
+    public void close() throws JMSException {
+        connectionLock.lock();
+        try {
+            if (xaConnection != null) {
+                poolingConnectionFactory.unregister(this);
+                setState(State.CLOSED);
+                try {
+                    xaConnection.close();
+                } finally {
+                    xaConnection = null;
+                }
             }
+        } finally {
+            connectionLock.unlock();
         }
     }
 
     @Override
     public List<DualSessionWrapper> getXAResourceHolders() {
-        synchronized (sessions) {
+        sessionsLock.lock();
+        try {
             return new ArrayList<>(sessions);
+        } finally {
+            sessionsLock.unlock();
         }
     }
 
@@ -146,6 +167,11 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
             return;
         }
 
+        validate();
+    }
+
+    @Override
+    public void validate() throws JMSException {
         if (log.isDebugEnabled()) {
             log.debug("testing connection of " + this);
         }
@@ -174,7 +200,8 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
     }
 
     private void closePendingSessions() {
-        synchronized (sessions) {
+        sessionsLock.lock();
+        try {
             for (DualSessionWrapper dualSessionWrapper : sessions) {
                 if (dualSessionWrapper.getState() != State.ACCESSIBLE) {
                     continue;
@@ -189,11 +216,14 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
                     log.warn("error closing pending session " + dualSessionWrapper, ex);
                 }
             }
+        } finally {
+            sessionsLock.unlock();
         }
     }
 
     protected Session createSession(boolean transacted, int acknowledgeMode) throws JMSException {
-        synchronized (sessions) {
+        sessionsLock.lock();
+        try {
             DualSessionWrapper sessionHandle = getNotAccessibleSession();
 
             if (sessionHandle == null) {
@@ -211,11 +241,14 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
             }
 
             return sessionHandle;
+        } finally {
+            sessionsLock.unlock();
         }
     }
 
     private DualSessionWrapper getNotAccessibleSession() {
-        synchronized (sessions) {
+        sessionsLock.lock();
+        try {
             if (log.isDebugEnabled()) {
                 log.debug(sessions.size() + " session(s) open from " + this);
             }
@@ -225,6 +258,8 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
                 }
             }
             return null;
+        } finally {
+            sessionsLock.unlock();
         }
     }
 
@@ -253,12 +288,15 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
 
     @Override
     public Collection<String> getTransactionGtridsCurrentlyHoldingThis() {
-        synchronized (sessions) {
+        sessionsLock.lock();
+        try {
             Set<String> result = new HashSet<>();
             for (DualSessionWrapper dsw : sessions) {
                 result.addAll(dsw.getXAResourceHolderStateGtrids());
             }
             return result;
+        } finally {
+            sessionsLock.unlock();
         }
     }
 
@@ -297,11 +335,14 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
         @Override
         public void stateChanged(DualSessionWrapper source, State oldState, State newState) {
             if (newState == State.CLOSED) {
-                synchronized (sessions) {
+                sessionsLock.lock();
+                try {
                     sessions.remove(source);
                     if (log.isDebugEnabled()) {
                         log.debug("DualSessionWrapper has been closed, " + sessions.size() + " session(s) left open in pooled connection");
                     }
+                } finally {
+                    sessionsLock.unlock();
                 }
             }
         }
@@ -312,13 +353,16 @@ public class JmsPooledConnection extends AbstractXAStatefulHolder<JmsPooledConne
     }
 
     public DualSessionWrapper getXAResourceHolderForXaResource(XAResource xaResource) {
-        synchronized (sessions) {
+        sessionsLock.lock();
+        try {
             for (DualSessionWrapper xaResourceHolder : sessions) {
                 if (xaResourceHolder.getXAResource() == xaResource) {
                     return xaResourceHolder;
                 }
             }
             return null;
+        } finally {
+            sessionsLock.unlock();
         }
     }
 }
@@ -20,6 +20,7 @@ import bitronix.tm.recovery.RecoveryException;
 import bitronix.tm.resource.ResourceConfigurationException;
 import bitronix.tm.resource.ResourceObjectFactory;
 import bitronix.tm.resource.ResourceRegistrar;
+import bitronix.tm.resource.common.PoolMetrics;
 import bitronix.tm.resource.common.RecoveryXAResourceHolder;
 import bitronix.tm.resource.common.ResourceBean;
 import bitronix.tm.resource.common.XAPool;
@@ -29,12 +30,15 @@ import jakarta.jms.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.openmbean.CompositeData;
 import javax.naming.NamingException;
 import javax.naming.Reference;
 import javax.naming.StringRefAddr;
 import javax.transaction.xa.XAResource;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implementation of a JMS {@link ConnectionFactory} wrapping vendor's {@link XAConnectionFactory} implementation.
@@ -47,6 +51,12 @@ public class PoolingConnectionFactory extends ResourceBean implements Connection
     private static final Logger log = LoggerFactory.getLogger(PoolingConnectionFactory.class);
 
     private volatile transient XAPool<DualSessionWrapper, JmsPooledConnection> pool;
+    /**
+     * Set once the pool is built and registered, so that {@link #createConnection()} only takes the init lock while
+     * the pool is being built. The pool is already set during its registration, as recovery uses it.
+     */
+    private volatile transient boolean initialized;
+    private final Lock initLock = new ReentrantLock();
     private volatile transient XAConnectionFactory xaConnectionFactory;
     private volatile transient JmsPooledConnection recoveryPooledConnection;
     private volatile transient RecoveryXAResourceHolder recoveryXAResourceHolder;
@@ -67,7 +77,13 @@ public class PoolingConnectionFactory extends ResourceBean implements Connection
      * Initialize the pool by creating the initial amount of connections.
      */
     @Override
-    public synchronized void init() {
+    public void init() {
+        if (initialized) {
+            return;
+        }
+
+        // creating the connections blocks, a virtual thread must not hold a monitor meanwhile
+        initLock.lock();
         try {
             if (pool != null) {
                 return;
@@ -76,8 +92,11 @@ public class PoolingConnectionFactory extends ResourceBean implements Connection
             buildXAPool();
             this.jmxName = "bitronix.tm:type=JMS,UniqueName=" + ManagementRegistrar.makeValidName(getUniqueName());
             ManagementRegistrar.register(jmxName, this);
+            initialized = true;
         } catch (Exception ex) {
             throw new ResourceConfigurationException("cannot create JMS connection factory named " + getUniqueName(), ex);
+        } finally {
+            initLock.unlock();
         }
     }
 
@@ -147,10 +166,12 @@ public class PoolingConnectionFactory extends ResourceBean implements Connection
         }
         try {
             ResourceRegistrar.register(this);
-        } catch (RecoveryException ex) {
+        } catch (RecoveryException | RuntimeException ex) {
             if (builtXaFactory) {
                 xaConnectionFactory = null;
             }
+            // the connections of the pool were created before registration
+            pool.close();
             pool = null;
             throw ex;
         }
@@ -282,6 +303,7 @@ public class PoolingConnectionFactory extends ResourceBean implements Connection
         if (log.isDebugEnabled()) {
             log.debug("closing " + pool);
         }
+        initialized = false;
         pool.close();
         pool = null;
 
@@ -317,15 +339,14 @@ public class PoolingConnectionFactory extends ResourceBean implements Connection
 
     @Override
     public DualSessionWrapper findXAResourceHolder(XAResource xaResource) {
-        synchronized (xaStatefulHolders) {
-            for (JmsPooledConnection jmsPooledConnection : xaStatefulHolders) {
-                DualSessionWrapper xaResourceHolder = jmsPooledConnection.getXAResourceHolderForXaResource(xaResource);
-                if (xaResourceHolder != null) {
-                    return xaResourceHolder;
-                }
+        // xaStatefulHolders is a copy-on-write list, iterating over it needs no lock
+        for (JmsPooledConnection jmsPooledConnection : xaStatefulHolders) {
+            DualSessionWrapper xaResourceHolder = jmsPooledConnection.getXAResourceHolderForXaResource(xaResource);
+            if (xaResourceHolder != null) {
+                return xaResourceHolder;
             }
-            return null;
         }
+        return null;
     }
 
     /* Referenceable implementation */
@@ -360,6 +381,49 @@ public class PoolingConnectionFactory extends ResourceBean implements Connection
         return pool.totalPoolSize();
     }
 
+    @Override
+    public int getEffectiveMinPoolSize() {
+        return pool.getEffectiveMinPoolSize();
+    }
+
+    @Override
+    public CompositeData getAcquisitionWaitTime() {
+        return pool.getMetrics().getAcquisitionWaitTime().toCompositeData();
+    }
+
+    @Override
+    public CompositeData getLeaseTime() {
+        return pool.getMetrics().getLeaseTime().toCompositeData();
+    }
+
+    @Override
+    public CompositeData getCreationTime() {
+        return pool.getMetrics().getCreationTime().toCompositeData();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return pool.getMetrics().getTimeoutCount();
+    }
+
+    @Override
+    public long getValidationCount() {
+        return pool.getMetrics().getValidationCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return pool.getMetrics().getEvictionCount();
+    }
+
+    /**
+     * @return the saturation metrics of the pool, or null if the pool has not been initialized yet.
+     */
+    public PoolMetrics getPoolMetrics() {
+        XAPool<?, ?> pool = this.pool;
+        return pool == null ? null : pool.getMetrics();
+    }
+
     @Override
     public void reset() throws Exception {
         pool.reset();
@@ -15,6 +15,8 @@
  */
 package bitronix.tm.resource.jms;
 
+import javax.management.openmbean.CompositeData;
+
 /**
  * @author Ludovic Orban
  */
@@ -28,6 +30,8 @@ public interface PoolingConnectionFactoryMBean {
 
     long getTotalPoolSize();
 
+    int getEffectiveMinPoolSize();
+
     boolean isFailed();
 
     void reset() throws Exception;
@@ -36,4 +40,37 @@ public interface PoolingConnectionFactoryMBean {
 
     void setDisabled(boolean disabled);
 
+    /**
+     * @return the amount, mean, percentiles and maximum of the times in microseconds spent waiting for a connection
+     * from the pool.
+     */
+    CompositeData getAcquisitionWaitTime();
+
+    /**
+     * @return the amount, mean, percentiles and maximum of the times in microseconds connections stay out of the
+     * pool.
+     */
+    CompositeData getLeaseTime();
+
+    /**
+     * @return the amount, mean, percentiles and maximum of the times in microseconds needed to create a physical
+     * connection.
+     */
+    CompositeData getCreationTime();
+
+    /**
+     * @return the amount of requests for a connection which timed out.
+     */
+    long getTimeoutCount();
+
+    /**
+     * @return the amount of idle connections tested in the background.
+     */
+    long getValidationCount();
+
+    /**
+     * @return the amount of connections closed by the pool because they were idle, expired or broken.
+     */
+    long getEvictionCount();
+
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.timer;
+
+import bitronix.tm.resource.common.XAPool;
+
+import java.time.LocalDateTime;
+
+/**
+ * This task is used to notify a XA pool to adapt its size to the observed concurrency.
+ */
+public class PoolSizingTask extends Task {
+
+    private final XAPool xaPool;
+
+    public PoolSizingTask(XAPool xaPool, LocalDateTime executionTime, TaskScheduler scheduler) {
+        super(executionTime, scheduler);
+        this.xaPool = xaPool;
+    }
+
+    @Override
+    public Object getObject() {
+        return xaPool;
+    }
+
+    @Override
+    public void execute() throws TaskException {
+        try {
+            xaPool.adaptSize();
+        } catch (Exception ex) {
+            throw new TaskException("error while trying to adapt the size of " + xaPool, ex);
+        } finally {
+            getTaskScheduler().schedulePoolSizing(xaPool);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "a PoolSizingTask scheduled for " + getExecutionTime() + " on " + xaPool;
+    }
+
+}
@@ -249,7 +249,85 @@ public class TaskScheduler extends Thread implements Service {
             throw new IllegalArgumentException("expected a non-null XA pool");
         }
 
-        if (!removeTaskByObject(xaPool)) {
+        if (!removeTaskByObject(PoolShrinkingTask.class, xaPool)) {
+            if (log.isDebugEnabled()) {
+                log.debug("no task found based on object " + xaPool);
+            }
+        }
+    }
+
+    /**
+     * Schedule a task that will tell a XA pool to test its idle connections. The execution time will be provided by
+     * the XA pool itself via the {@link bitronix.tm.resource.common.XAPool#getNextValidationDate()}.
+     *
+     * @param xaPool the XA pool to notify.
+     */
+    public void schedulePoolValidation(XAPool xaPool) {
+        LocalDateTime executionTime = xaPool.getNextValidationDate();
+        if (log.isDebugEnabled()) {
+            log.debug("scheduling pool validation task on " + xaPool + " for " + executionTime);
+        }
+
+        PoolValidationTask task = new PoolValidationTask(xaPool, executionTime, this);
+        addTask(task);
+        if (log.isDebugEnabled()) {
+            log.debug("scheduled " + task + ", total task(s) queued: " + tasks.size());
+        }
+    }
+
+    /**
+     * Cancel the task that will tell a XA pool to test its idle connections.
+     *
+     * @param xaPool the XA pool to notify.
+     */
+    public void cancelPoolValidation(XAPool xaPool) {
+        if (log.isDebugEnabled()) {
+            log.debug("cancelling pool validation task on " + xaPool);
+        }
+        if (xaPool == null) {
+            throw new IllegalArgumentException("expected a non-null XA pool");
+        }
+
+        if (!removeTaskByObject(PoolValidationTask.class, xaPool)) {
+            if (log.isDebugEnabled()) {
+                log.debug("no task found based on object " + xaPool);
+            }
+        }
+    }
+
+    /**
+     * Schedule a task that will tell a XA pool to adapt its size to the observed concurrency. The execution time will
+     * be provided by the XA pool itself via the {@link bitronix.tm.resource.common.XAPool#getNextSizingDate()}.
+     *
+     * @param xaPool the XA pool to notify.
+     */
+    public void schedulePoolSizing(XAPool xaPool) {
+        LocalDateTime executionTime = xaPool.getNextSizingDate();
+        if (log.isDebugEnabled()) {
+            log.debug("scheduling pool sizing task on " + xaPool + " for " + executionTime);
+        }
+
+        PoolSizingTask task = new PoolSizingTask(xaPool, executionTime, this);
+        addTask(task);
+        if (log.isDebugEnabled()) {
+            log.debug("scheduled " + task + ", total task(s) queued: " + tasks.size());
+        }
+    }
+
+    /**
+     * Cancel the task that will tell a XA pool to adapt its size to the observed concurrency.
+     *
+     * @param xaPool the XA pool to notify.
+     */
+    public void cancelPoolSizing(XAPool xaPool) {
+        if (log.isDebugEnabled()) {
+            log.debug("cancelling pool sizing task on " + xaPool);
+        }
+        if (xaPool == null) {
+            throw new IllegalArgumentException("expected a non-null XA pool");
+        }
+
+        if (!removeTaskByObject(PoolSizingTask.class, xaPool)) {
             if (log.isDebugEnabled()) {
                 log.debug("no task found based on object " + xaPool);
             }
@@ -259,7 +337,7 @@ public class TaskScheduler extends Thread implements Service {
     void addTask(Task task) {
         lock();
         try {
-            removeTaskByObject(task.getObject());
+            removeTaskByObject(task.getClass(), task.getObject());
             tasks.add(task);
         } finally {
             unlock();
@@ -267,6 +345,18 @@ public class TaskScheduler extends Thread implements Service {
     }
 
     boolean removeTaskByObject(Object obj) {
+        return removeTaskByObject(null, obj);
+    }
+
+    /**
+     * Remove the task of the given class scheduled on the given object, as a XA pool is the object of more than
+     * one kind of task.
+     *
+     * @param taskClass the class of the task to remove or null to remove a task of any class.
+     * @param obj       the object the task is scheduled on.
+     * @return true if a task has been removed.
+     */
+    boolean removeTaskByObject(Class<? extends Task> taskClass, Object obj) {
         lock();
         try {
             if (log.isDebugEnabled()) {
@@ -274,7 +364,7 @@ public class TaskScheduler extends Thread implements Service {
             }
 
             for (Task task : tasks) {
-                if (task.getObject() == obj) {
+                if (task.getObject() == obj && (taskClass == null || task.getClass() == taskClass)) {
                     tasks.remove(task);
                     if (log.isDebugEnabled()) {
                         log.debug("cancelled " + task + ", total task(s) still queued: " + tasks.size());
@@ -76,6 +76,7 @@ public final class Committer extends AbstractPhaseEngine {
 
         this.interestedResources.clear();
         this.interestedResources.addAll(interestedResources);
+        this.committedResources.clear();
         this.onePhase = resourceManager.size() == 1;
 
         try {
@@ -115,6 +116,11 @@ public final class Committer extends AbstractPhaseEngine {
         transaction.setStatus(Status.STATUS_COMMITTED, committedAndNotInterestedUniqueNames);
     }
 
+    void reset() {
+        interestedResources.clear();
+        committedResources.clear();
+    }
+
     private void throwException(String message, PhaseException phaseException, int totalResourceCount) throws HeuristicMixedException, HeuristicRollbackException {
         List<Exception> exceptions = phaseException.getExceptions();
         List<XAResourceHolderState> resources = phaseException.getResourceStates();
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.twopc;
+
+import bitronix.tm.twopc.executor.Executor;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reusable set of {@link Preparer}, {@link Committer} and {@link Rollbacker} engines.
+ * <p>Engines keep state while they execute a phase, so a set can only be used by a single transaction at a time.
+ * Released sets are kept in a small pool shared by all threads: a transaction acquires a set when it starts
+ * terminating and releases it once it is done. When the pool is empty a new set is created, and a set released while
+ * the pool is full is left to the garbage collector, so the pool never holds more sets than transactions terminate
+ * concurrently, up to twice the amount of processors. Sets built for another {@link Executor}, ie: before the
+ * transaction manager got restarted, are dropped.</p>
+ * <p>Engines are lazily created, a transaction that is only committed never creates a {@link Rollbacker}.</p>
+ */
+public final class PhaseEngines {
+
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final AtomicReferenceArray<PhaseEngines> pool = new AtomicReferenceArray<>(POOL_SIZE);
+
+    private final Executor executor;
+    private Preparer preparer;
+    private Committer committer;
+    private Rollbacker rollbacker;
+
+    private PhaseEngines(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Get a set of engines from the pool, or create a new one.
+     *
+     * @param executor the {@link Executor} the engines must use to execute phases.
+     * @return a set of engines that must be given back with {@link #release()} once the transaction is terminated.
+     */
+    public static PhaseEngines acquire(Executor executor) {
+        int start = firstSlot();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int slot = (start + i) % POOL_SIZE;
+            PhaseEngines phaseEngines = pool.get(slot);
+            if (phaseEngines != null && pool.compareAndSet(slot, phaseEngines, null) && phaseEngines.executor == executor) {
+                return phaseEngines;
+            }
+        }
+        return new PhaseEngines(executor);
+    }
+
+    /**
+     * Clear the state of the engines and give them back to the pool for the next transaction to terminate.
+     */
+    public void release() {
+        if (preparer != null) {
+            preparer.reset();
+        }
+        if (committer != null) {
+            committer.reset();
+        }
+        if (rollbacker != null) {
+            rollbacker.reset();
+        }
+
+        int start = firstSlot();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int slot = (start + i) % POOL_SIZE;
+            if (pool.get(slot) == null && pool.compareAndSet(slot, null, this)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Spread the threads over the pool so that they rarely compete for the same slot.
+     */
+    private static int firstSlot() {
+        return (int) (Thread.currentThread().threadId() % POOL_SIZE);
+    }
+
+    public Preparer getPreparer() {
+        if (preparer == null) {
+            preparer = new Preparer(executor);
+        }
+        return preparer;
+    }
+
+    public Committer getCommitter() {
+        if (committer == null) {
+            committer = new Committer(executor);
+        }
+        return committer;
+    }
+
+    public Rollbacker getRollbacker() {
+        if (rollbacker == null) {
+            rollbacker = new Rollbacker(executor);
+        }
+        return rollbacker;
+    }
+
+}
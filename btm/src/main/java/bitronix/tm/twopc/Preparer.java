@@ -104,6 +104,10 @@ public final class Preparer extends AbstractPhaseEngine {
         return Collections.unmodifiableList(preparedResources);
     }
 
+    void reset() {
+        preparedResources.clear();
+    }
+
     private void throwException(String message, PhaseException phaseException) throws BitronixRollbackException {
         List<Exception> exceptions = phaseException.getExceptions();
         List<XAResourceHolderState> resources = phaseException.getResourceStates();
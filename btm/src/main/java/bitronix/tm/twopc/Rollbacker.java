@@ -62,6 +62,7 @@ public final class Rollbacker extends AbstractPhaseEngine {
         transaction.setStatus(Status.STATUS_ROLLING_BACK);
         this.interestedResources.clear();
         this.interestedResources.addAll(interestedResources);
+        this.rolledbackResources.clear();
 
         try {
             executePhase(resourceManager, true);
@@ -96,6 +97,11 @@ public final class Rollbacker extends AbstractPhaseEngine {
         transaction.setStatus(Status.STATUS_ROLLEDBACK, rolledbackAndNotInterestedUniqueNames);
     }
 
+    void reset() {
+        interestedResources.clear();
+        rolledbackResources.clear();
+    }
+
     private void throwException(String message, PhaseException phaseException, int totalResourceCount) throws HeuristicMixedException, HeuristicCommitException {
         List<Exception> exceptions = phaseException.getExceptions();
         List<XAResourceHolderState> resources = phaseException.getResourceStates();
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.utils;
+
+import java.util.*;
+
+/**
+ * Positional object container meant to be used by a single thread at a time, like the synchronizations and the
+ * resources of a transaction. Positions are kept in a small sorted array of primitives, without boxing nor
+ * monitor, as transactions rarely use more than 2 or 3 different positions.
+ * <p>This class is not thread-safe, use {@link Scheduler} when the container is shared between threads. Iteration
+ * supports in-flight updates from the iterating thread exactly like {@link Scheduler} does.</p>
+ *
+ * @param <T> the type the scheduler handles
+ * @see Scheduler
+ */
+public class CompactScheduler<T> extends Scheduler<T> {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private Position[] positions;
+    private int positionCount;
+    private int size;
+
+
+    public CompactScheduler() {
+        super(null, null);
+    }
+
+    @Override
+    public void add(T obj, int position) {
+        Position[] positions = this.positions;
+        int count = positionCount;
+        int index = indexOf(position);
+        if (index < 0) {
+            index = -(index + 1);
+            if (positions == null) {
+                positions = new Position[INITIAL_CAPACITY];
+            } else if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            System.arraycopy(positions, index, positions, index + 1, count - index);
+            positions[index] = new Position(position);
+            this.positions = positions;
+            positionCount = count + 1;
+        }
+        positions[index].add(obj);
+        size++;
+    }
+
+    @Override
+    public void remove(T obj) {
+        Iterator<T> it = iterator();
+        while (it.hasNext()) {
+            T o = it.next();
+            if (o == obj) {
+                it.remove();
+                return;
+            }
+        }
+        throw new NoSuchElementException("no such element: " + obj);
+    }
+
+    @Override
+    public SortedSet<Integer> getNaturalOrderPositions() {
+        TreeSet<Integer> result = new TreeSet<>();
+        for (int i = 0; i < positionCount; i++) {
+            result.add(positions[i].position);
+        }
+        return result;
+    }
+
+    @Override
+    public SortedSet<Integer> getReverseOrderPositions() {
+        TreeSet<Integer> result = new TreeSet<>(Collections.reverseOrder());
+        result.addAll(getNaturalOrderPositions());
+        return result;
+    }
+
+    @Override
+    public List<T> getByNaturalOrderForPosition(int position) {
+        int index = indexOf(position);
+        if (index < 0) {
+            return null;
+        }
+        return positions[index].toList();
+    }
+
+    @Override
+    public List<T> getByReverseOrderForPosition(int position) {
+        List<T> result = new ArrayList<>(getByNaturalOrderForPosition(position));
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new NaturalOrderIterator();
+    }
+
+    @Override
+    public Iterator<T> reverseIterator() {
+        return new ReverseOrderIterator();
+    }
+
+    /**
+     * Binary search of a position.
+     *
+     * @param position the position to look for.
+     * @return the index of the position or (-(insertion point) - 1) if it is not there.
+     */
+    private int indexOf(int position) {
+        int low = 0;
+        int high = positionCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midPosition = positions[mid].position;
+            if (midPosition < position) {
+                low = mid + 1;
+            } else if (midPosition > position) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void removePositionAt(int index) {
+        int count = positionCount;
+        System.arraycopy(positions, index + 1, positions, index, count - index - 1);
+        positions[count - 1] = null;
+        positionCount = count - 1;
+    }
+
+    /**
+     * The objects added at a same position, in added order.
+     */
+    private static final class Position {
+        private final int position;
+        private Object[] objects = new Object[INITIAL_CAPACITY];
+        private int count;
+
+        private Position(int position) {
+            this.position = position;
+        }
+
+        private void add(Object obj) {
+            if (count == objects.length) {
+                objects = Arrays.copyOf(objects, count * 2);
+            }
+            objects[count++] = obj;
+        }
+
+        private void removeAt(int index) {
+            int newCount = count - 1;
+            System.arraycopy(objects, index + 1, objects, index, newCount - index);
+            objects[newCount] = null;
+            count = newCount;
+        }
+
+        private Object get(int index) {
+            return objects[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> List<T> toList() {
+            return (List<T>) Arrays.asList(Arrays.copyOf(objects, count));
+        }
+    }
+
+    /**
+     * This iterator supports in-flight updates of the iterated object.
+     */
+    private final class NaturalOrderIterator implements Iterator<T> {
+        private int nextPositionIndex;
+        private Position current;
+        private int currentIndex;
+
+        @Override
+        public void remove() {
+            if (current == null) {
+                throw new NoSuchElementException("iterator not yet placed on an element");
+            }
+
+            currentIndex--;
+            current.removeAt(currentIndex);
+            if (current.count == 0) {
+                // there are no more objects in the current position -> remove it
+                nextPositionIndex--;
+                removePositionAt(nextPositionIndex);
+                current = null;
+            }
+            size--;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (current == null || currentIndex >= current.count) {
+                // we reached the end of the current position's objects
+
+                if (nextPositionIndex < positionCount) {
+                    // there is another position after this one
+                    current = positions[nextPositionIndex++];
+                    currentIndex = 0;
+                    return true;
+                } else {
+                    // there is no other position after this one
+                    return false;
+                }
+            }
+
+            // there are still objects in the current position
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("iterator bounds reached");
+            }
+            return (T) current.get(currentIndex++);
+        }
+    }
+
+    /**
+     * This iterator supports in-flight updates of the iterated object.
+     */
+    private final class ReverseOrderIterator implements Iterator<T> {
+        private int nextPositionIndex;
+        private Position current;
+        private int currentIndex;
+
+        private ReverseOrderIterator() {
+            this.nextPositionIndex = positionCount - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (current == null) {
+                throw new NoSuchElementException("iterator not yet placed on an element");
+            }
+
+            currentIndex--;
+            current.removeAt(currentIndex);
+            if (current.count == 0) {
+                // there are no more objects in the current position -> remove it
+                removePositionAt(nextPositionIndex + 1);
+                current = null;
+            }
+            size--;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (current == null || currentIndex >= current.count) {
+                // we reached the end of the current position's objects
+
+                if (nextPositionIndex >= 0) {
+                    // there is another position after this one
+                    current = positions[nextPositionIndex--];
+                    currentIndex = 0;
+                    return true;
+                } else {
+                    // there is no other position after this one
+                    return false;
+                }
+            }
+
+            // there are still objects in the current position
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("iterator bounds reached");
+            }
+            return (T) current.get(currentIndex++);
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.utils;
+
+import bitronix.tm.internal.BitronixRuntimeException;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of positive values, modeled after HdrHistogram with a fixed precision of 3 significant bits:
+ * each power of two is split in 8 linear buckets, so the value reported for a percentile is at most 12.5% higher
+ * than the recorded one. Recording a value costs a couple of atomic increments and no allocation.
+ * <p>Values are typically durations in microseconds, the unit is left to the caller.</p>
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private static final String[] ITEMS = {"count", "mean", "p50", "p90", "p99", "p999", "max"};
+    private static final CompositeType COMPOSITE_TYPE;
+
+    static {
+        try {
+            COMPOSITE_TYPE = new CompositeType("Histogram", "a histogram of recorded values", ITEMS,
+                    new String[]{"amount of recorded values", "mean value", "50th percentile", "90th percentile",
+                            "99th percentile", "99.9th percentile", "maximum value"},
+                    new OpenType<?>[]{SimpleType.LONG, SimpleType.DOUBLE, SimpleType.LONG, SimpleType.LONG,
+                            SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+        } catch (OpenDataException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     *
+     * @param value the value to record.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * @return the amount of recorded values.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the mean of the recorded values or 0 if no value has been recorded.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * @return the highest recorded value or 0 if no value has been recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the value below which the given percentage of the recorded values fall.
+     *
+     * @param percentile the percentage, between 0 and 100.
+     * @return the value at the percentile or 0 if no value has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = snapshot();
+        return valueAtPercentile(snapshot, total(snapshot), percentile);
+    }
+
+    /**
+     * Build an open data view of this histogram, suitable for JMX.
+     *
+     * @return the amount of recorded values, their mean, their 50th, 90th, 99th and 99.9th percentiles and their
+     * maximum.
+     */
+    public CompositeData toCompositeData() {
+        long[] snapshot = snapshot();
+        long count = total(snapshot);
+        Object[] values = {
+                count,
+                count == 0 ? 0.0 : (double) sum.sum() / count,
+                valueAtPercentile(snapshot, count, 50.0),
+                valueAtPercentile(snapshot, count, 90.0),
+                valueAtPercentile(snapshot, count, 99.0),
+                valueAtPercentile(snapshot, count, 99.9),
+                max.get()
+        };
+        try {
+            return new CompositeDataSupport(COMPOSITE_TYPE, ITEMS, values);
+        } catch (OpenDataException ex) {
+            throw new BitronixRuntimeException("cannot build histogram data", ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "a Histogram with " + getCount() + " value(s), 50th percentile " + getValueAtPercentile(50.0) +
+                ", 99th percentile " + getValueAtPercentile(99.0) + ", max " + getMax();
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    private static long total(long[] snapshot) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        return total;
+    }
+
+    private long valueAtPercentile(long[] snapshot, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOfBucket(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestValueOfBucket(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        if (shift + SUB_BUCKET_BITS + 1 >= Long.SIZE) {
+            return Long.MAX_VALUE;
+        }
+        long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+}
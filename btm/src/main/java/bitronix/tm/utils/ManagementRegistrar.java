@@ -28,7 +28,11 @@ import java.lang.ref.WeakReference;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * JMX facade used to (un)register any JMX enabled instances.
@@ -44,6 +48,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 public final class ManagementRegistrar {
 
     private static final Logger log = LoggerFactory.getLogger(ManagementRegistrar.class);
+    private static final long SAMPLING_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
     private static final MBeanServer mbeanServer;
 
     static {
@@ -58,14 +63,20 @@ public final class ManagementRegistrar {
 
 
     private static final Queue<ManagementCommand> commandQueue;
+    private static final AtomicBoolean workerSignalled = new AtomicBoolean();
+    private static final LongAdder coalescedCommandCount = new LongAdder();
+    private static final LongAdder droppedCommandCount = new LongAdder();
+    private static final Thread worker;
 
     static {
         Configuration configuration = TransactionManagerServices.getConfiguration();
+        // Unbounded multiple-producers / single-consumer queue: enqueuing never blocks the registering thread,
+        // only the worker (or unit tests) ever drains it.
         commandQueue = mbeanServer == null || configuration.isSynchronousJmxRegistration() ? null :
-                new ArrayBlockingQueue<>(1024);
+                new ConcurrentLinkedQueue<>();
 
         if (commandQueue != null) {
-            new Thread() {
+            worker = new Thread() {
                 {
                     setName("bitronix-async-jmx-worker");
                     setDaemon(true);
@@ -75,16 +86,23 @@ public final class ManagementRegistrar {
                 public void run() {
                     while (!isInterrupted()) {
                         try {
+                            if (!workerSignalled.get()) {
+                                LockSupport.park(this);
+                                continue;
+                            }
+                            // sampling interval, lets short-lived registrations be coalesced with their un-registration
+                            LockSupport.parkNanos(this, SAMPLING_INTERVAL_NANOS);
+                            workerSignalled.set(false);
                             normalizeAndRunQueuedCommands();
-                            sleep(250); // sampling interval
-                        } catch (InterruptedException ex) {
-                            return;
                         } catch (Exception ex) {
                             log.error("an unexpected error occurred in JMX asynchronous registration code", ex);
                         }
                     }
                 }
-            }.start();
+            };
+            worker.start();
+        } else {
+            worker = null;
         }
     }
 
@@ -141,15 +159,33 @@ public final class ManagementRegistrar {
     }
 
 
+    /**
+     * Get the amount of queued commands that were never executed because a later command for the same name superseded
+     * them, like a registration immediately followed by its un-registration.
+     *
+     * @return the amount of coalesced commands since the class was loaded.
+     */
+    public static long getCoalescedCommandCount() {
+        return coalescedCommandCount.sum();
+    }
+
+    /**
+     * Get the amount of queued registrations that were dropped because the instance to register had already been
+     * garbage collected when the command got executed.
+     *
+     * @return the amount of dropped commands since the class was loaded.
+     */
+    public static long getDroppedCommandCount() {
+        return droppedCommandCount.sum();
+    }
+
     private static void runOrEnqueueCommand(ManagementCommand command) {
         if (commandQueue == null) {
             command.run();
         } else {
-            // Try to enqueue the command unless the queue is full.
-            // Recover from a full queue by running already queued commands first to protect the async. implementation
-            // from being vulnerable to DOS attacks.
-            while (!commandQueue.offer(command)) {
-                normalizeAndRunQueuedCommands();
+            commandQueue.offer(command);
+            if (workerSignalled.compareAndSet(false, true)) {
+                LockSupport.unpark(worker);
             }
         }
     }
@@ -160,21 +196,26 @@ public final class ManagementRegistrar {
         }
 
         // Synchronizing on commandQueue to ensure that even if 2 threads try to poll, only one can process the commands
-        // that were scheduled at a time (happens if queue is full or during unit tests).
+        // that were scheduled at a time (happens during unit tests). Producers never take this lock.
         // The latter is important to ensure that the command calling order is kept intact as parallel polling would destroy it.
 
         synchronized (commandQueue) {
-            final Map<String, ManagementCommand> mappedCommands = new LinkedHashMap<>(commandQueue.size());
+            final Map<String, ManagementCommand> mappedCommands = new LinkedHashMap<>();
 
             ManagementCommand command;
             while ((command = commandQueue.poll()) != null) {
                 String name = command.getName();
                 ManagementCommand previousCommand = mappedCommands.put(name, command);
+                if (previousCommand == null) {
+                    continue;
+                }
+                coalescedCommandCount.increment();
 
                 if (previousCommand instanceof ManagementRegisterCommand managementregistercommand) {
                     // Avoid that we have unbound un-register commands in the work queue.
                     if (command instanceof ManagementUnregisterCommand && !managementregistercommand.isReplace()) {
                         mappedCommands.remove(name);
+                        coalescedCommandCount.increment();
                     }
                 } else if (previousCommand instanceof ManagementUnregisterCommand) {
                     // We already have this MBean, flagging it for replacement.
@@ -221,6 +262,8 @@ public final class ManagementRegistrar {
                     mbeanServer.unregisterMBean(objectName);
                 }
                 mbeanServer.registerMBean(object, objectName);
+            } else {
+                droppedCommandCount.increment();
             }
         }
     }
@@ -18,12 +18,14 @@ package bitronix.tm.utils;
 import java.util.*;
 
 /**
- * Positional object container. Objects can be added to a scheduler at a certain position (or priority) and can be
- * retrieved later on in their position + added order. All the objects of a scheduler can be iterated in order or
- * objects of a cetain position can be retrieved for iteration.
+ * Thread-safe positional object container. Objects can be added to a scheduler at a certain position (or priority) and
+ * can be retrieved later on in their position + added order. All the objects of a scheduler can be iterated in order
+ * or objects of a cetain position can be retrieved for iteration.
+ * <p>{@link CompactScheduler} is a lighter subclass for schedulers only ever used by a single thread at a time.</p>
  *
  * @param <T> the type the scheduler handles
  * @author Ludovic Orban
+ * @see CompactScheduler
  */
 public class Scheduler<T> implements Iterable<T> {
 
@@ -31,15 +33,31 @@ public class Scheduler<T> implements Iterable<T> {
     public static final Integer ALWAYS_FIRST_POSITION = Integer.MIN_VALUE;
     public static final Integer ALWAYS_LAST_POSITION = Integer.MAX_VALUE;
 
-    private final List<Integer> keys = new ArrayList<>();
-    private final Map<Integer, List<T>> objects = new TreeMap<>();
+    private final List<Integer> keys;
+    private final Map<Integer, List<T>> objects;
     private int size = 0;
 
 
     public Scheduler() {
+        this(new ArrayList<>(), new TreeMap<>());
     }
 
-    public synchronized void add(T obj, Integer position) {
+    /**
+     * Constructor for subclasses keeping the objects in their own structure, in which case both arguments are null.
+     *
+     * @param keys the sorted positions.
+     * @param objects the objects by position.
+     */
+    Scheduler(List<Integer> keys, Map<Integer, List<T>> objects) {
+        this.keys = keys;
+        this.objects = objects;
+    }
+
+    public void add(T obj, Integer position) {
+        add(obj, position.intValue());
+    }
+
+    public synchronized void add(T obj, int position) {
         List<T> list = objects.get(position);
         if (list == null) {
             if (!keys.contains(position)) {
@@ -75,11 +93,19 @@ public class Scheduler<T> implements Iterable<T> {
         return result;
     }
 
-    public synchronized List<T> getByNaturalOrderForPosition(Integer position) {
+    public List<T> getByNaturalOrderForPosition(Integer position) {
+        return getByNaturalOrderForPosition(position.intValue());
+    }
+
+    public synchronized List<T> getByNaturalOrderForPosition(int position) {
         return objects.get(position);
     }
 
-    public synchronized List<T> getByReverseOrderForPosition(Integer position) {
+    public List<T> getByReverseOrderForPosition(Integer position) {
+        return getByReverseOrderForPosition(position.intValue());
+    }
+
+    public synchronized List<T> getByReverseOrderForPosition(int position) {
         List<T> result = new ArrayList<>(getByNaturalOrderForPosition(position));
         Collections.reverse(result);
         return result;
@@ -95,7 +95,7 @@ public class ConfigurationTest {
 
     @Test
     public void testToString() {
-        final String expectation = "a Configuration with [allowMultipleLrc=false, asynchronous2Pc=false," +
+        final String expectation = "a Configuration with [aggregateTransactionJmx=false, allowMultipleLrc=false, asynchronous2Pc=false," +
                 " backgroundRecoveryInterval=PT1M, conservativeJournaling=false, currentNodeOnlyRecovery=true," +
                 " debugZeroResourceTransaction=false, defaultTransactionTimeout=PT1M, disableJmx=false," +
                 " exceptionAnalyzer=null, filterLogStatus=false," +
@@ -103,7 +103,7 @@ public class ConfigurationTest {
                 " jndiTransactionSynchronizationRegistryName=java:comp/TransactionSynchronizationRegistry," +
                 " jndiUserTransactionName=java:comp/UserTransaction, journal=disk," +
                 " logPart1Filename=target/btm1.tlog, logPart2Filename=target/btm2.tlog, maxLogSizeInMb=2," +
-                " resourceConfigurationFilename=null, serverId=null, skipCorruptedLogs=false, synchronousJmxRegistration=false," +
+                " resourceConfigurationFilename=null, resourceInitConcurrency=1, serverId=null, skipCorruptedLogs=false, synchronousJmxRegistration=false," +
                 " warnAboutZeroResourceTransaction=true]";
 
         assertEquals(expectation, new Configuration().toString());
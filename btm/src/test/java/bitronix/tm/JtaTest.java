@@ -30,6 +30,9 @@ import jakarta.transaction.RollbackException;
 import jakarta.transaction.Status;
 import jakarta.transaction.Synchronization;
 import jakarta.transaction.Transaction;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
 import java.sql.Connection;
 import java.time.Duration;
 
@@ -128,6 +131,54 @@ public class JtaTest {
         assertEquals(1, sync.afterCount);
     }
 
+    @Test
+    public void testOldestInFlightTransactionTimestamp() throws Exception {
+        assertEquals(Long.MIN_VALUE, btm.getOldestInFlightTransactionTimestamp());
+
+        btm.begin();
+        BitronixTransaction tx1 = btm.getCurrentTransaction();
+        Transaction suspended = btm.suspend();
+        Thread.sleep(5);
+        btm.begin();
+        BitronixTransaction tx2 = btm.getCurrentTransaction();
+
+        long timestamp1 = tx1.getResourceManager().getGtrid().extractTimestamp();
+        long timestamp2 = tx2.getResourceManager().getGtrid().extractTimestamp();
+        assertTrue(timestamp1 < timestamp2);
+        assertEquals(2, btm.getInFlightTransactionCount());
+        assertEquals(timestamp1, btm.getOldestInFlightTransactionTimestamp());
+
+        btm.commit();
+        assertEquals(timestamp1, btm.getOldestInFlightTransactionTimestamp());
+
+        btm.resume(suspended);
+        btm.commit();
+        assertEquals(0, btm.getInFlightTransactionCount());
+        assertEquals(Long.MIN_VALUE, btm.getOldestInFlightTransactionTimestamp());
+    }
+
+    @Test
+    public void testAggregateTransactionJmx() throws Exception {
+        btm.shutdown();
+        TransactionManagerServices.getConfiguration().setAggregateTransactionJmx(true);
+        btm = TransactionManagerServices.getTransactionManager();
+
+        assertTrue(btm.getInFlightTransactions().isEmpty());
+
+        btm.begin();
+        String gtrid = btm.getCurrentTransaction().getGtrid();
+
+        TabularData inFlightTransactions = btm.getInFlightTransactions();
+        assertEquals(1, inFlightTransactions.size());
+        CompositeData row = inFlightTransactions.get(new Object[]{gtrid});
+        assertEquals("ACTIVE", row.get("status"));
+        assertEquals(Thread.currentThread().getName(), row.get("threadName"));
+        assertArrayEquals(new String[0], (String[]) row.get("enlistedResources"));
+
+        btm.rollback();
+        assertTrue(btm.getInFlightTransactions().isEmpty());
+    }
+
     @Test
     public void testRecycleAfterSuspend() throws Exception {
         PoolingDataSource pds = new PoolingDataSource();
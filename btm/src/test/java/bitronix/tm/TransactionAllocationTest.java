@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm;
+
+import bitronix.tm.resource.ehcache.EhCacheXAResourceProducer;
+import ch.qos.logback.classic.Level;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.transaction.Transaction;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Enforces the bytes a {@code begin()} &rarr; {@code commit()} cycle may allocate on the committing thread, journaling
+ * disabled. The resources do nothing so that only the transaction manager is measured, the
+ * {@code TransactionBenchmark} of the btm-benchmarks module gives the same figures with JMH.
+ */
+public class TransactionAllocationTest {
+
+    private final static Logger log = LoggerFactory.getLogger(TransactionAllocationTest.class);
+
+    /**
+     * Average bytes allocated per transaction with 0, 1 (1PC) and 2 (2PC) enlisted resources. These leave some
+     * headroom above what is currently measured, a change needing more must make room elsewhere or raise them on
+     * purpose.
+     */
+    private static final long[] BYTES_PER_TRANSACTION_BUDGET = {2560, 6144, 8192};
+    private static final int WARMUP_TRANSACTIONS = 20000;
+    private static final int MEASURED_TRANSACTIONS = 10000;
+
+    private final ch.qos.logback.classic.Logger btmLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("bitronix.tm");
+    private Level btmLogLevel;
+
+    @BeforeEach
+    public void setUp() {
+        // at debug level, logging allocates far more than the transactions
+        btmLogLevel = btmLogger.getLevel();
+        btmLogger.setLevel(Level.INFO);
+        TransactionManagerServices.getConfiguration().setJournal("null").setWarnAboutZeroResourceTransaction(false);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionManagerServices.getTransactionManager().shutdown();
+        btmLogger.setLevel(btmLogLevel);
+    }
+
+    @Test
+    public void testTransactionsStayWithinTheirAllocationBudget() throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+
+        for (int resourceCount = 0; resourceCount < BYTES_PER_TRANSACTION_BUDGET.length; resourceCount++) {
+            XAResource[] xaResources = new XAResource[resourceCount];
+            for (int i = 0; i < resourceCount; i++) {
+                xaResources[i] = new NoOpXAResource();
+                EhCacheXAResourceProducer.registerXAResource("allocation-" + i, xaResources[i]);
+            }
+            try {
+                runTransactions(btm, xaResources, WARMUP_TRANSACTIONS);
+                long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+                runTransactions(btm, xaResources, MEASURED_TRANSACTIONS);
+                long bytesPerTransaction = (threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore) / MEASURED_TRANSACTIONS;
+
+                log.info("a transaction with " + resourceCount + " resource(s) allocated " + bytesPerTransaction
+                        + " byte(s), the budget is " + BYTES_PER_TRANSACTION_BUDGET[resourceCount]);
+                assertTrue(bytesPerTransaction <= BYTES_PER_TRANSACTION_BUDGET[resourceCount], "a transaction with " + resourceCount
+                        + " resource(s) allocated " + bytesPerTransaction + " byte(s), more than its budget of " + BYTES_PER_TRANSACTION_BUDGET[resourceCount]);
+            } finally {
+                for (int i = 0; i < resourceCount; i++) {
+                    EhCacheXAResourceProducer.unregisterXAResource("allocation-" + i, xaResources[i]);
+                }
+            }
+        }
+    }
+
+    private static void runTransactions(BitronixTransactionManager btm, XAResource[] xaResources, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            btm.begin();
+            Transaction transaction = btm.getTransaction();
+            for (XAResource xaResource : xaResources) {
+                transaction.enlistResource(xaResource);
+            }
+            btm.commit();
+        }
+    }
+
+    /**
+     * A resource accepting every XA call without doing anything.
+     */
+    private static final class NoOpXAResource implements XAResource {
+        @Override
+        public void commit(Xid xid, boolean onePhase) {
+        }
+
+        @Override
+        public void end(Xid xid, int flags) {
+        }
+
+        @Override
+        public void forget(Xid xid) {
+        }
+
+        @Override
+        public int getTransactionTimeout() {
+            return 0;
+        }
+
+        @Override
+        public boolean isSameRM(XAResource xaResource) {
+            return xaResource == this;
+        }
+
+        @Override
+        public int prepare(Xid xid) {
+            return XA_OK;
+        }
+
+        @Override
+        public Xid[] recover(int flag) throws XAException {
+            return new Xid[0];
+        }
+
+        @Override
+        public void rollback(Xid xid) {
+        }
+
+        @Override
+        public boolean setTransactionTimeout(int seconds) {
+            return false;
+        }
+
+        @Override
+        public void start(Xid xid, int flags) {
+        }
+    }
+
+}
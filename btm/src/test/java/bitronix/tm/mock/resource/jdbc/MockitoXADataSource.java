@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -233,7 +234,24 @@ public class MockitoXADataSource implements XADataSource {
     }
 
     private static Answer<PreparedStatement> mockPreparedStatement() {
-        return invocation -> mock(PreparedStatement.class);
+        return invocation -> {
+            PreparedStatement mockPreparedStatement = mock(PreparedStatement.class);
+            // a test query needs a result set
+            when(mockPreparedStatement.executeQuery()).thenReturn(mock(ResultSet.class));
+            // each batched update updates a single row
+            AtomicInteger batchedUpdates = new AtomicInteger();
+            doAnswer(addBatch -> batchedUpdates.incrementAndGet()).when(mockPreparedStatement).addBatch();
+            doAnswer(clearBatch -> {
+                batchedUpdates.set(0);
+                return null;
+            }).when(mockPreparedStatement).clearBatch();
+            when(mockPreparedStatement.executeBatch()).thenAnswer(executeBatch -> {
+                int[] updateCounts = new int[batchedUpdates.getAndSet(0)];
+                Arrays.fill(updateCounts, 1);
+                return updateCounts;
+            });
+            return mockPreparedStatement;
+        };
     }
 
     private static Answer<CallableStatement> mockCallableStatement() {
@@ -15,14 +15,17 @@
  */
 package bitronix.tm.resource;
 
+import bitronix.tm.TransactionManagerServices;
 import bitronix.tm.mock.resource.jdbc.MockitoXADataSource;
 import bitronix.tm.mock.resource.jms.MockXAConnectionFactory;
 import bitronix.tm.resource.common.XAResourceProducer;
 import bitronix.tm.resource.jdbc.PoolingDataSource;
 import bitronix.tm.resource.jms.PoolingConnectionFactory;
+import bitronix.tm.utils.InitializationException;
 import bitronix.tm.utils.PropertyUtils;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.XAConnection;
 import javax.sql.XADataSource;
 import java.lang.reflect.Field;
 import java.util.Map;
@@ -251,4 +254,95 @@ public class ResourceLoaderTest {
         PoolingDataSource pds = (PoolingDataSource) loader.getResources().get("some.also.other.unique.Name");
         assertFalse(pds.getUseTmJoin());
     }
+
+    @Test
+    public void testParallelInit() throws Exception {
+        TransactionManagerServices.getConfiguration().setResourceInitConcurrency(3);
+        ResourceLoader loader = new ResourceLoader();
+        try {
+            Properties p = new Properties();
+            for (int i = 0; i < 3; i++) {
+                p.setProperty("resource.pds" + i + ".className", MockitoXADataSource.class.getName());
+                p.setProperty("resource.pds" + i + ".uniqueName", "parallel-pds" + i);
+                p.setProperty("resource.pds" + i + ".minPoolSize", "4");
+                p.setProperty("resource.pds" + i + ".maxPoolSize", "4");
+                p.setProperty("resource.pds" + i + ".warmUpConcurrency", "2");
+            }
+
+            assertEquals(0, loader.initXAResourceProducers(p));
+
+            assertEquals(3, loader.getResources().size());
+            for (int i = 0; i < 3; i++) {
+                PoolingDataSource pds = (PoolingDataSource) ResourceRegistrar.get("parallel-pds" + i);
+                assertNotNull(pds);
+                assertEquals(4, pds.getTotalPoolSize());
+                assertEquals(4, pds.getInPoolSize());
+            }
+        } finally {
+            loader.shutdown();
+            TransactionManagerServices.getConfiguration().setResourceInitConcurrency(1);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertNull(ResourceRegistrar.get("parallel-pds" + i));
+        }
+    }
+
+    @Test
+    public void testInitFailureKeepsInitializedResourcesClosable() throws Exception {
+        ResourceLoader loader = new ResourceLoader();
+        Properties p = new Properties();
+        // ds2 comes before ds1 in the configuration entries, so it is initialized first
+        p.setProperty("resource.ds2.className", MockitoXADataSource.class.getName());
+        p.setProperty("resource.ds2.uniqueName", "initialized-before-failure");
+        p.setProperty("resource.ds2.maxPoolSize", "1");
+        p.setProperty("resource.ds1.className", BrokenXADataSource.class.getName());
+        p.setProperty("resource.ds1.uniqueName", "failing-init");
+        p.setProperty("resource.ds1.minPoolSize", "1");
+        p.setProperty("resource.ds1.maxPoolSize", "1");
+
+        assertThrows(LinkageError.class, () -> loader.initXAResourceProducers(p));
+
+        assertNotNull(ResourceRegistrar.get("initialized-before-failure"));
+        assertEquals(1, loader.getResources().size());
+        loader.shutdown();
+        assertNull(ResourceRegistrar.get("initialized-before-failure"));
+    }
+
+    @Test
+    public void testParallelInitFailureKeepsInitializedResourcesClosable() throws Exception {
+        TransactionManagerServices.getConfiguration().setResourceInitConcurrency(3);
+        ResourceLoader loader = new ResourceLoader();
+        try {
+            Properties p = new Properties();
+            for (int i = 0; i < 2; i++) {
+                p.setProperty("resource.pds" + i + ".className", MockitoXADataSource.class.getName());
+                p.setProperty("resource.pds" + i + ".uniqueName", "parallel-initialized-pds" + i);
+                p.setProperty("resource.pds" + i + ".maxPoolSize", "1");
+            }
+            p.setProperty("resource.broken.className", BrokenXADataSource.class.getName());
+            p.setProperty("resource.broken.uniqueName", "parallel-failing-init");
+            p.setProperty("resource.broken.minPoolSize", "1");
+            p.setProperty("resource.broken.maxPoolSize", "1");
+
+            assertThrows(InitializationException.class, () -> loader.initXAResourceProducers(p));
+
+            assertEquals(2, loader.getResources().size());
+            for (int i = 0; i < 2; i++) {
+                assertNotNull(ResourceRegistrar.get("parallel-initialized-pds" + i));
+            }
+        } finally {
+            loader.shutdown();
+            TransactionManagerServices.getConfiguration().setResourceInitConcurrency(1);
+        }
+        for (int i = 0; i < 2; i++) {
+            assertNull(ResourceRegistrar.get("parallel-initialized-pds" + i));
+        }
+    }
+
+    public static class BrokenXADataSource extends MockitoXADataSource {
+        @Override
+        public XAConnection getXAConnection() {
+            throw new LinkageError("broken driver");
+        }
+    }
 }
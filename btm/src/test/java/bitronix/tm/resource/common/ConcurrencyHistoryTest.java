@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConcurrencyHistoryTest {
+
+    @Test
+    public void testPeakDemandOverWindow() {
+        ConcurrencyHistory history = new ConcurrencyHistory(1000, 0);
+        assertEquals(100, history.getSlotMillis());
+
+        history.peakDemand(0, 0);
+        history.record(3);
+        history.record(5);
+        history.record(2);
+        assertEquals(5, history.peakDemand(50, 0));
+
+        // the peak is kept for the whole window
+        assertEquals(5, history.peakDemand(550, 1));
+        assertEquals(5, history.peakDemand(950, 1));
+        assertEquals(1, history.peakDemand(1050, 1));
+
+        // the connections in use at the time a slot starts count as its initial demand
+        assertEquals(0, history.peakDemand(5000, 0));
+    }
+
+    @Test
+    public void testPeakDemandOfPreviousPeriod() {
+        ConcurrencyHistory history = new ConcurrencyHistory(1000, 10000);
+
+        history.peakDemand(0, 0);
+        history.record(8);
+        history.peakDemand(100, 0);
+        assertEquals(0, history.peakDemand(2000, 0));
+
+        // one period later, the pool gets ready a window before the recurring peak
+        assertEquals(0, history.peakDemand(8900, 0));
+        assertEquals(8, history.peakDemand(9000, 0));
+        assertEquals(8, history.peakDemand(10000, 0));
+        assertEquals(0, history.peakDemand(11100, 0));
+    }
+
+}
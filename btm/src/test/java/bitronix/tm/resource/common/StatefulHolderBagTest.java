@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatefulHolderBagTest {
+
+    @Test
+    public void testBorrowAndRequite() throws Exception {
+        StatefulHolderBag<DummyStatefulHolder> bag = new StatefulHolderBag<>();
+        DummyStatefulHolder holder1 = new DummyStatefulHolder();
+        DummyStatefulHolder holder2 = new DummyStatefulHolder();
+        bag.add(holder1);
+        bag.add(holder2);
+        assertEquals(2, bag.size());
+        assertEquals(2, bag.availableCount());
+
+        DummyStatefulHolder borrowed1 = bag.borrow(0, TimeUnit.MILLISECONDS);
+        DummyStatefulHolder borrowed2 = bag.borrow(0, TimeUnit.MILLISECONDS);
+        assertNotNull(borrowed1);
+        assertNotNull(borrowed2);
+        assertNotSame(borrowed1, borrowed2);
+        assertEquals(0, bag.availableCount());
+        assertNull(bag.borrow(10, TimeUnit.MILLISECONDS));
+
+        bag.requite(borrowed2);
+        bag.requite(borrowed2);
+        assertEquals(1, bag.availableCount());
+        assertSame(borrowed2, bag.borrow(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testWaitersAreServedInArrivalOrder() throws Exception {
+        StatefulHolderBag<DummyStatefulHolder> bag = new StatefulHolderBag<>();
+        DummyStatefulHolder holder = new DummyStatefulHolder();
+        bag.add(holder);
+        assertSame(holder, bag.borrow(0, TimeUnit.MILLISECONDS));
+
+        List<String> servedOrder = new ArrayList<>();
+        List<Thread> waiters = new ArrayList<>();
+        for (String name : new String[]{"first", "second", "third"}) {
+            Thread waiter = new Thread(() -> {
+                try {
+                    DummyStatefulHolder borrowed = bag.borrow(5, TimeUnit.SECONDS);
+                    synchronized (servedOrder) {
+                        servedOrder.add(name);
+                    }
+                    bag.requite(borrowed);
+                } catch (InterruptedException ex) {
+                    // fail below
+                }
+            });
+            int waiting = bag.waitingCount();
+            waiter.start();
+            while (bag.waitingCount() == waiting) {
+                Thread.sleep(1);
+            }
+            // let the waiter get past its scan of the available holders
+            Thread.sleep(50);
+            waiters.add(waiter);
+        }
+
+        bag.requite(holder);
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+
+        assertEquals(List.of("first", "second", "third"), servedOrder);
+        assertEquals(1, bag.availableCount());
+    }
+
+    @Test
+    public void testRequitedHolderIsHandedOffToWaiter() throws Exception {
+        StatefulHolderBag<DummyStatefulHolder> bag = new StatefulHolderBag<>();
+        DummyStatefulHolder holder = new DummyStatefulHolder();
+        bag.add(holder);
+        assertSame(holder, bag.borrow(0, TimeUnit.MILLISECONDS));
+
+        AtomicReference<DummyStatefulHolder> handedOff = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                handedOff.set(bag.borrow(5, TimeUnit.SECONDS));
+            } catch (InterruptedException ex) {
+                // fail below
+            }
+        });
+        waiter.start();
+        while (bag.waitingCount() == 0) {
+            Thread.sleep(1);
+        }
+
+        bag.requite(holder);
+        waiter.join();
+
+        assertSame(holder, handedOff.get());
+        assertEquals(0, bag.availableCount());
+    }
+
+    @Test
+    public void testReserveAndRemove() throws Exception {
+        StatefulHolderBag<DummyStatefulHolder> bag = new StatefulHolderBag<>();
+        DummyStatefulHolder holder1 = new DummyStatefulHolder();
+        DummyStatefulHolder holder2 = new DummyStatefulHolder();
+        bag.add(holder1);
+        bag.add(holder2);
+
+        assertTrue(bag.reserve(holder1));
+        assertFalse(bag.reserve(holder1));
+        assertEquals(1, bag.availableCount());
+        bag.unreserve(holder1);
+        assertEquals(2, bag.availableCount());
+
+        bag.remove(holder2);
+        assertEquals(1, bag.size());
+        assertEquals(1, bag.availableCount());
+        assertFalse(bag.reserve(holder2));
+        bag.requite(holder2);
+        assertEquals(1, bag.availableCount());
+
+        bag.clear();
+        assertEquals(0, bag.size());
+        assertEquals(0, bag.availableCount());
+    }
+
+    @Test
+    public void testConcurrentBorrowersNeverShareAHolder() throws Exception {
+        final int holderCount = 4;
+        final int threadCount = 16;
+        final int loops = 2000;
+
+        StatefulHolderBag<DummyStatefulHolder> bag = new StatefulHolderBag<>();
+        for (int i = 0; i < holderCount; i++) {
+            bag.add(new DummyStatefulHolder());
+        }
+
+        Set<DummyStatefulHolder> inUse = ConcurrentHashMap.newKeySet();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < loops; j++) {
+                        DummyStatefulHolder holder = bag.borrow(5, TimeUnit.SECONDS);
+                        if (holder == null || !inUse.add(holder)) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        inUse.remove(holder);
+                        bag.requite(holder);
+                    }
+                } catch (InterruptedException ex) {
+                    errors.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(holderCount, bag.availableCount());
+        assertEquals(0, bag.waitingCount());
+    }
+
+}
@@ -18,12 +18,33 @@ package bitronix.tm.resource.common;
 import bitronix.tm.BitronixTransactionManager;
 import bitronix.tm.TransactionManagerServices;
 import bitronix.tm.mock.resource.jdbc.MockitoXADataSource;
+import bitronix.tm.resource.ResourceConfigurationException;
+import bitronix.tm.resource.jdbc.JdbcPooledConnection;
+import bitronix.tm.resource.jdbc.PooledConnectionProxy;
 import bitronix.tm.resource.jdbc.PoolingDataSource;
 import bitronix.tm.utils.CryptoEngine;
+import jakarta.transaction.Transaction;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.XAConnection;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  *
@@ -65,4 +86,316 @@ public class XAPoolTest {
         assertFalse(TransactionManagerServices.isTaskSchedulerRunning());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testAsynchronousGrowth() throws Exception {
+        PoolingDataSource pds = new PoolingDataSource();
+        pds.setClassName(MockitoXADataSource.class.getName());
+        pds.setUniqueName("async-growth");
+        pds.setMaxPoolSize(4);
+        pds.setAcquireIncrement(2);
+        pds.setAsynchronousGrowth(true);
+        pds.setMinIdlePoolSize(2);
+        pds.setAllowLocalTransactions(true);
+        pds.init();
+        try {
+            XAPool<?, ?> pool = getPool(pds);
+            assertEquals(0, pool.totalPoolSize());
+
+            Connection connection = pds.getConnection();
+            waitForIdleConnections(pool, 2);
+            assertTrue(pool.totalPoolSize() >= 3);
+            connection.close();
+
+            Connection[] connections = new Connection[4];
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = pds.getConnection();
+            }
+            assertEquals(4, pool.totalPoolSize());
+            assertEquals(0, pool.inPoolSize());
+            for (Connection c : connections) {
+                c.close();
+            }
+            assertEquals(4, pool.inPoolSize());
+        } finally {
+            pds.close();
+            TransactionManagerServices.getTransactionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testIdleValidation() throws Exception {
+        PoolingDataSource pds = new PoolingDataSource();
+        pds.setClassName(MockitoXADataSource.class.getName());
+        pds.setUniqueName("idle-validation");
+        pds.setMinPoolSize(2);
+        pds.setMaxPoolSize(2);
+        pds.setAllowLocalTransactions(true);
+        pds.setTestQuery("SELECT 1");
+        // without a background validation task, validateIdle() tests every idle connection right away
+        pds.setIdleValidationInterval(0);
+        pds.init();
+        try {
+            XAPool<?, ?> pool = getPool(pds);
+
+            Connection handle = pds.getConnection();
+            JdbcPooledConnection deadConnection = ((PooledConnectionProxy) handle).getPooledConnection();
+            when(((PooledConnectionProxy) handle).getProxiedDelegate().prepareStatement("SELECT 1")).thenThrow(new SQLException("connection reset"));
+            handle.close();
+            CountDownLatch closed = new CountDownLatch(1);
+            deadConnection.addStateChangeEventListener(new StateChangeListener<JdbcPooledConnection>() {
+                @Override
+                public void stateChanged(JdbcPooledConnection source, XAStatefulHolder.State oldState, XAStatefulHolder.State newState) {
+                    if (newState == XAStatefulHolder.State.CLOSED) {
+                        closed.countDown();
+                    }
+                }
+
+                @Override
+                public void stateChanging(JdbcPooledConnection source, XAStatefulHolder.State currentState, XAStatefulHolder.State futureState) {
+                }
+            });
+
+            pool.validateIdle();
+
+            assertTrue(closed.await(5, TimeUnit.SECONDS));
+            waitForIdleConnections(pool, 2);
+            assertFalse(pool.getXAResourceHolders().contains(deadConnection));
+            assertEquals(2, pool.totalPoolSize());
+            assertEquals(2, pool.inPoolSize());
+            assertTrue(pds.getValidationCount() >= 2);
+            assertEquals(1, pds.getEvictionCount());
+            assertEquals(3, pool.getMetrics().getCreationTime().getCount());
+        } finally {
+            pds.close();
+            TransactionManagerServices.getTransactionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testAdaptivePoolSizing() throws Exception {
+        PoolingDataSource pds = new PoolingDataSource();
+        pds.setClassName(MockitoXADataSource.class.getName());
+        pds.setUniqueName("adaptive-sizing");
+        pds.setMinPoolSize(1);
+        pds.setMaxPoolSize(5);
+        pds.setAllowLocalTransactions(true);
+        pds.setAdaptivePoolSizing(true);
+        pds.setAdaptiveSizingWindow(2);
+        pds.setAdaptiveSizingPeriod(0);
+        pds.init();
+        try {
+            XAPool<?, ?> pool = getPool(pds);
+            assertEquals(1, pool.totalPoolSize());
+
+            Connection[] connections = new Connection[3];
+            for (int i = 0; i < connections.length; i++) {
+                connections[i] = pds.getConnection();
+            }
+            for (Connection c : connections) {
+                c.close();
+            }
+            pool.adaptSize();
+            assertEquals(3, pool.getEffectiveMinPoolSize());
+
+            // the warm connections survive a reset
+            pool.reset();
+            assertEquals(3, pool.totalPoolSize());
+
+            // without load the pool shrinks back to its min pool size
+            long deadline = System.currentTimeMillis() + 10000;
+            while (pool.totalPoolSize() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, pool.totalPoolSize());
+            assertEquals(1, pool.getEffectiveMinPoolSize());
+            assertEquals(2, pds.getEvictionCount());
+        } finally {
+            pds.close();
+            TransactionManagerServices.getTransactionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testRecycleNotAccessibleConnectionOfSameTransaction() throws Exception {
+        PoolingDataSource pds = new PoolingDataSource();
+        pds.setClassName(MockitoXADataSource.class.getName());
+        pds.setUniqueName("recycle-not-accessible");
+        pds.setMinPoolSize(3);
+        pds.setMaxPoolSize(3);
+        pds.init();
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+        try {
+            btm.begin();
+            Connection c1 = pds.getConnection();
+            c1.createStatement();
+            JdbcPooledConnection pooledConnection1 = ((PooledConnectionProxy) c1).getPooledConnection();
+            c1.close();
+            assertEquals(XAStatefulHolder.State.NOT_ACCESSIBLE, pooledConnection1.getState());
+
+            Transaction suspended = btm.suspend();
+            btm.begin();
+            Connection c2 = pds.getConnection();
+            c2.createStatement();
+            JdbcPooledConnection pooledConnection2 = ((PooledConnectionProxy) c2).getPooledConnection();
+            assertFalse(pooledConnection1 == pooledConnection2);
+            c2.close();
+            btm.commit();
+            btm.resume(suspended);
+
+            Connection c3 = pds.getConnection();
+            assertTrue(pooledConnection1 == ((PooledConnectionProxy) c3).getPooledConnection());
+            c3.createStatement();
+            c3.close();
+            btm.commit();
+
+            assertEquals(XAStatefulHolder.State.IN_POOL, pooledConnection1.getState());
+            assertEquals(3, getPool(pds).inPoolSize());
+        } finally {
+            pds.close();
+            btm.shutdown();
+        }
+    }
+
+    @Test
+    public void testAcquisitionTimeoutMillis() throws Exception {
+        PoolingDataSource pds = new PoolingDataSource();
+        pds.setClassName(MockitoXADataSource.class.getName());
+        pds.setUniqueName("timeout-millis");
+        pds.setMaxPoolSize(1);
+        pds.setAllowLocalTransactions(true);
+        pds.setAcquisitionTimeoutMillis(200);
+        pds.init();
+        try {
+            XAPool<?, ?> pool = getPool(pds);
+            Connection connection = pds.getConnection();
+            assertEquals(1, pool.getMetrics().getAcquisitionWaitTime().getCount());
+
+            long before = System.nanoTime();
+            assertThrows(SQLException.class, pds::getConnection);
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+            assertTrue(waitedMs >= 150 && waitedMs < 2000, "waited " + waitedMs + "ms");
+            assertEquals(1, pool.getMetrics().getAcquisitionWaitTime().getCount());
+
+            connection.close();
+            pds.getConnection().close();
+            assertEquals(2, pool.getMetrics().getAcquisitionWaitTime().getCount());
+            assertEquals(2L, pds.getAcquisitionWaitTime().get("count"));
+            assertEquals(1, pds.getTimeoutCount());
+            assertEquals(1, pool.getMetrics().getCreationTime().getCount());
+            assertEquals(2L, pds.getLeaseTime().get("count"));
+        } finally {
+            pds.close();
+            TransactionManagerServices.getTransactionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testBackgroundCreationFailuresBackOff() throws Exception {
+        SQLException databaseDown = new SQLException("database down");
+        AtomicBoolean down = new AtomicBoolean(true);
+        AtomicInteger attempts = new AtomicInteger();
+        PoolingDataSource pds = new PoolingDataSource();
+        pds.setXaDataSource(new MockitoXADataSource() {
+            @Override
+            public XAConnection getXAConnection() throws SQLException {
+                attempts.incrementAndGet();
+                if (down.get()) {
+                    throw databaseDown;
+                }
+                return super.getXAConnection();
+            }
+        });
+        pds.setUniqueName("creation-backoff");
+        pds.setMaxPoolSize(2);
+        pds.setAsynchronousGrowth(true);
+        pds.setAllowLocalTransactions(true);
+        pds.setAcquisitionTimeoutMillis(1000);
+        pds.init();
+        try {
+            SQLException ex = assertThrows(SQLException.class, pds::getConnection);
+            assertSame(databaseDown, ex.getCause().getCause());
+            // 100ms, 200ms then 400ms between attempts instead of retrying in a loop
+            assertTrue(attempts.get() <= 6, attempts.get() + " attempt(s)");
+
+            down.set(false);
+            pds.getConnection().close();
+        } finally {
+            pds.close();
+            TransactionManagerServices.getTransactionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testInterruptedWarmUpClosesCreatedConnections() throws Exception {
+        CountDownLatch creating = new CountDownLatch(2);
+        CountDownLatch resume = new CountDownLatch(1);
+        List<XAConnection> xaConnections = new CopyOnWriteArrayList<>();
+        PoolingDataSource pds = new PoolingDataSource();
+        pds.setXaDataSource(new MockitoXADataSource() {
+            @Override
+            public XAConnection getXAConnection() throws SQLException {
+                creating.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException ex) {
+                    throw new SQLException(ex);
+                }
+                XAConnection xaConnection = super.getXAConnection();
+                xaConnections.add(xaConnection);
+                return xaConnection;
+            }
+        });
+        pds.setUniqueName("interrupted-warm-up");
+        pds.setMinPoolSize(4);
+        pds.setMaxPoolSize(4);
+        pds.setWarmUpConcurrency(2);
+        pds.setAllowLocalTransactions(true);
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread initThread = new Thread(() -> {
+            try {
+                pds.init();
+            } catch (Exception ex) {
+                failure.set(ex);
+            }
+        });
+        initThread.start();
+        try {
+            assertTrue(creating.await(5, TimeUnit.SECONDS));
+            initThread.interrupt();
+            // the interrupt flag is cleared once the warm up noticed it
+            while (initThread.isInterrupted()) {
+                Thread.sleep(10);
+            }
+            resume.countDown();
+            initThread.join(5000);
+
+            assertTrue(failure.get() instanceof ResourceConfigurationException, "unexpected failure " + failure.get());
+            assertTrue(failure.get().getCause() instanceof InterruptedException, "unexpected cause " + failure.get().getCause());
+            // the two connections being created when the warm up got interrupted are closed, the other two are skipped
+            assertEquals(2, xaConnections.size());
+            for (XAConnection xaConnection : xaConnections) {
+                verify(xaConnection).close();
+            }
+        } finally {
+            resume.countDown();
+            pds.close();
+            TransactionManagerServices.getTransactionManager().shutdown();
+        }
+    }
+
+    private static void waitForIdleConnections(XAPool<?, ?> pool, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.inPoolSize() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(pool.inPoolSize() >= count, "expected at least " + count + " idle connection(s) in " + pool);
+    }
+
+    private static XAPool<?, ?> getPool(PoolingDataSource poolingDataSource) throws Exception {
+        Field poolField = PoolingDataSource.class.getDeclaredField("pool");
+        poolField.setAccessible(true);
+        return (XAPool<?, ?>) poolField.get(poolingDataSource);
+    }
+
+}
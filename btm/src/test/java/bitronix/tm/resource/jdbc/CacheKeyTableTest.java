@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc;
+
+import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class CacheKeyTableTest {
+
+    @Test
+    public void testLookupsReturnTheCanonicalKey() {
+        CacheKeyTable table = new CacheKeyTable(16);
+
+        CacheKey key = table.get("SELECT a");
+        assertSame(key, table.get("SELECT a"));
+        assertEquals(new CacheKey("SELECT a"), key);
+
+        CacheKey generatedKeys = table.get("SELECT a", Statement.RETURN_GENERATED_KEYS);
+        assertNotSame(key, generatedKeys);
+        assertSame(generatedKeys, table.get("SELECT a", Statement.RETURN_GENERATED_KEYS));
+        assertSame(key, table.get("SELECT a"));
+
+        CacheKey holdable = table.get("SELECT a", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, ResultSet.HOLD_CURSORS_OVER_COMMIT);
+        assertSame(holdable, table.get("SELECT a", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, ResultSet.HOLD_CURSORS_OVER_COMMIT));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testColumnArraysAreCopiedOnlyWhenInterned() {
+        CacheKeyTable table = new CacheKeyTable(16);
+
+        int[] columnIndexes = {1, 2};
+        CacheKey key = table.get("INSERT a", columnIndexes);
+        columnIndexes[0] = 3;
+        assertEquals(new CacheKey("INSERT a", new int[] {1, 2}), key);
+        assertSame(key, table.get("INSERT a", new int[] {1, 2}));
+        assertNotSame(key, table.get("INSERT a", columnIndexes));
+
+        CacheKey names = table.get("INSERT a", new String[] {"ID"});
+        assertSame(names, table.get("INSERT a", new String[] {"ID"}));
+    }
+
+    @Test
+    public void testTableIsBounded() {
+        CacheKeyTable table = new CacheKeyTable(4);
+        for (int i = 0; i < 10; i++) {
+            table.get("SELECT " + i);
+        }
+        assertEquals(2, table.size());
+    }
+
+}
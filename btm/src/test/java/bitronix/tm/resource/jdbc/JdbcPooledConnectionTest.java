@@ -0,0 +1,673 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc;
+
+import bitronix.tm.BitronixTransactionManager;
+import bitronix.tm.TransactionManagerServices;
+import bitronix.tm.mock.events.Event;
+import bitronix.tm.mock.events.EventRecorder;
+import bitronix.tm.mock.events.XAResourceStartEvent;
+import bitronix.tm.mock.resource.jdbc.MockitoXADataSource;
+import bitronix.tm.resource.ResourceRegistrar;
+import bitronix.tm.resource.common.XAStatefulHolder.State;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.Invocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.transaction.Status;
+import jakarta.transaction.Transaction;
+import javax.transaction.xa.XAResource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class JdbcPooledConnectionTest {
+
+    private final static Logger log = LoggerFactory.getLogger(JdbcPooledConnectionTest.class);
+
+    private static final List<String> ROUND_TRIP_METHODS = Arrays.asList("prepareStatement", "setTransactionIsolation", "setHoldability", "setAutoCommit");
+    private static final int TRANSACTIONS = 10;
+    private static final List<String> RESET_METHODS = Arrays.asList("clearParameters", "clearWarnings", "clearBatch");
+    private static final int STATEMENT_USES = 100;
+
+    @AfterEach
+    public void tearDown() {
+        TransactionManagerServices.getTransactionManager().shutdown();
+    }
+
+    @Test
+    public void testAliveBypassWindowSavesRoundTrips() throws Exception {
+        int alwaysTested = countRoundTrips(0);
+        int recentlyUsed = countRoundTrips(60000);
+        log.info("checking out connections cost " + (float) alwaysTested / TRANSACTIONS + " round trip(s) per transaction when always tested, "
+                + (float) recentlyUsed / TRANSACTIONS + " with an alive bypass window and 7 when every setting was applied on every checkout");
+
+        // the recovery checkout applies all settings, then each global transaction and the following local
+        // checkout test the connection and the local one has to reset the auto-commit mode
+        assertEquals(4 + 3 * TRANSACTIONS, alwaysTested);
+        // the connection is never tested as it has always been used just before
+        assertEquals(3 + TRANSACTIONS, recentlyUsed);
+    }
+
+    @Test
+    public void testXAResourceHolderIsIndexedWhilePooled() throws Exception {
+        PoolingDataSource pds = pool("indexed-xa-resource").init();
+        JdbcPooledConnection pooledConnection;
+        try {
+            Connection handle = pds.getConnection();
+            pooledConnection = ((PooledConnectionProxy) handle).getPooledConnection();
+            handle.close();
+
+            assertSame(pooledConnection, ResourceRegistrar.findXAResourceHolder(pooledConnection.getXAResource()));
+        } finally {
+            pds.close();
+        }
+        assertNull(ResourceRegistrar.findXAResourceHolder(pooledConnection.getXAResource()));
+    }
+
+    @Test
+    public void testConnectionTestedAfterAliveBypassWindow() throws Exception {
+        PoolingDataSource pds = pool("bypass-window-elapsed").testedAndConfigured().aliveBypassWindow(50).init();
+        try {
+            Connection handle = pds.getConnection();
+            Connection connection = ((PooledConnectionProxy) handle).getProxiedDelegate();
+            handle.close();
+            pds.getConnection().close();
+            verify(connection, times(0)).prepareStatement("SELECT 1");
+
+            Thread.sleep(100);
+            pds.getConnection().close();
+            verify(connection, times(1)).prepareStatement("SELECT 1");
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testSettingsChangedThroughHandleAreReset() throws Exception {
+        PoolingDataSource pds = pool("settings-reset").testedAndConfigured().init();
+        try {
+            Connection handle = pds.getConnection();
+            Connection connection = ((PooledConnectionProxy) handle).getProxiedDelegate();
+            handle.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            handle.setHoldability(ResultSet.CLOSE_CURSORS_AT_COMMIT);
+            handle.setAutoCommit(false);
+            handle.close();
+
+            pds.getConnection().close();
+            verify(connection, times(2)).setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            verify(connection, times(2)).setHoldability(ResultSet.HOLD_CURSORS_OVER_COMMIT);
+            verify(connection, times(2)).setAutoCommit(true);
+
+            pds.getConnection().close();
+            verify(connection, times(2)).setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            verify(connection, times(2)).setHoldability(ResultSet.HOLD_CURSORS_OVER_COMMIT);
+            verify(connection, times(2)).setAutoCommit(true);
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testNewConnectionsPrepareMostUsedStatements() throws Exception {
+        PoolingDataSource pds = pool("statement-warm-up")
+                .maxPoolSize(2)
+                .preparedStatementCacheSize(10)
+                .preparedStatementWarmUpSize(2)
+                .init();
+        try {
+            Connection handle = pds.getConnection();
+            for (int i = 0; i < 3; i++) {
+                handle.prepareStatement("SELECT a").close();
+                handle.prepareStatement("SELECT b").close();
+            }
+            handle.prepareStatement("SELECT c").close();
+            pds.getStatementUsageTracker().refresh();
+
+            ConnectionCustomizer customizer = mock(ConnectionCustomizer.class);
+            pds.addConnectionCustomizer(customizer);
+            pds.setMinPoolSize(2);
+            pds.reset();
+            ArgumentCaptor<Connection> created = ArgumentCaptor.forClass(Connection.class);
+            verify(customizer).onAcquire(created.capture(), eq("statement-warm-up"));
+            Connection connection = created.getValue();
+            verify(connection, timeout(5000)).prepareStatement("SELECT a");
+            verify(connection, timeout(5000)).prepareStatement("SELECT b");
+
+            // the new connection serves the warmed up statements from its cache
+            Connection secondHandle = pds.getConnection();
+            assertSame(connection, ((PooledConnectionProxy) secondHandle).getProxiedDelegate());
+            secondHandle.prepareStatement("SELECT a").close();
+            secondHandle.prepareStatement("SELECT b").close();
+            secondHandle.close();
+            handle.close();
+            verify(connection, times(1)).prepareStatement("SELECT a");
+            verify(connection, times(1)).prepareStatement("SELECT b");
+            verify(connection, never()).prepareStatement("SELECT c");
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testCachedStatementHitReusesKey() throws Exception {
+        PoolingDataSource pds = pool("statement-proxy-reuse").preparedStatementCacheSize(10).init();
+        try {
+            assertSame(pds.getCacheKeyTable().get("SELECT a"), pds.getCacheKeyTable().get("SELECT a"));
+
+            Connection handle = pds.getConnection();
+            PreparedStatement first = handle.prepareStatement("SELECT a");
+            first.close();
+            assertTrue(first.isClosed());
+
+            // every handle of the statement is a proxy of its own, a closed one stays closed
+            PreparedStatement second = handle.prepareStatement("SELECT a");
+            assertNotSame(first, second);
+            assertTrue(first.isClosed());
+            assertFalse(second.isClosed());
+
+            PreparedStatement third = handle.prepareStatement("SELECT a");
+            assertNotSame(second, third);
+            assertSame(second.unwrap(PreparedStatement.class), third.unwrap(PreparedStatement.class));
+            third.close();
+            second.close();
+            handle.close();
+
+            Connection connection = ((PooledConnectionProxy) handle).getProxiedDelegate();
+            verify(connection, times(1)).prepareStatement("SELECT a");
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testClosingStatementHandleTwiceDoesNotReleaseStatementInUse() throws Exception {
+        PoolingDataSource pds = pool("stale-statement-handle").preparedStatementCacheSize(1).init();
+        try {
+            Connection handle = pds.getConnection();
+            PreparedStatement stale = handle.prepareStatement("SELECT a");
+            stale.close();
+
+            PreparedStatement current = handle.prepareStatement("SELECT a");
+            assertNotSame(stale, current);
+            PreparedStatement statement = current.unwrap(PreparedStatement.class);
+            assertSame(stale.unwrap(PreparedStatement.class), statement);
+
+            // a second close of the first handle, like a nested finally block does, must not release the statement in use
+            stale.close();
+            assertTrue(stale.isClosed());
+            assertFalse(current.isClosed());
+            handle.prepareStatement("SELECT b").close();
+            verify(statement, after(200).never()).close();
+
+            current.close();
+            handle.close();
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testTrackedStatementResetSavesDriverCalls() throws Exception {
+        int always = countStatementResets("ALWAYS");
+        int tracked = countStatementResets("TRACKED");
+        log.info("returning a statement to the cache cost " + (float) always / STATEMENT_USES + " driver call(s) when always reset, "
+                + (float) tracked / STATEMENT_USES + " when tracking what was used");
+
+        // parameters, warnings and batch are cleared on every close
+        assertEquals(3 * STATEMENT_USES, always);
+        // the batch is never used and the statement only executed every other time
+        assertEquals(STATEMENT_USES + STATEMENT_USES / 2, tracked);
+    }
+
+    @Test
+    public void testUpdatesAreCoalescedIntoBatches() throws Exception {
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+        PoolingDataSource pds = pool("coalesced-updates")
+                .preparedStatementCacheSize(10)
+                .coalescedUpdatesBatchSize(100)
+                .init();
+        try {
+            btm.begin();
+            Connection handle = pds.getConnection();
+            for (int i = 0; i < 10; i++) {
+                PreparedStatement update = handle.prepareStatement("UPDATE a SET b = ? WHERE c = ?");
+                update.setInt(1, i);
+                update.setInt(2, i);
+                assertEquals(1, update.executeUpdate());
+                update.close();
+            }
+            PreparedStatement update = handle.prepareStatement("UPDATE a SET b = ? WHERE c = ?");
+            PreparedStatement statement = update.unwrap(PreparedStatement.class);
+            // each close executes the batch, the updates of one open statement are coalesced
+            verify(statement, times(10)).executeBatch();
+
+            for (int i = 0; i < 10; i++) {
+                update.setInt(1, i);
+                update.setInt(2, i);
+                update.executeUpdate();
+            }
+            verify(statement, times(10)).executeBatch();
+            PreparedStatement query = handle.prepareStatement("SELECT b FROM a");
+            query.executeQuery().close();
+            verify(statement, times(11)).executeBatch();
+
+            update.setInt(1, 0);
+            update.setInt(2, 0);
+            update.executeUpdate();
+            btm.commit();
+
+            verify(statement, times(12)).executeBatch();
+            verify(statement, times(21)).addBatch();
+            verify(statement, never()).executeUpdate();
+            update.close();
+            query.close();
+            handle.close();
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testCoalescedUpdateMissingItsRowRollsBack() throws Exception {
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+        PoolingDataSource pds = pool("coalesced-update-miss")
+                .preparedStatementCacheSize(10)
+                .coalescedUpdatesBatchSize(100)
+                .init();
+        try {
+            btm.begin();
+            Connection handle = pds.getConnection();
+            PreparedStatement update = handle.prepareStatement("UPDATE a SET b = ? WHERE c = ? AND version = ?");
+            PreparedStatement statement = update.unwrap(PreparedStatement.class);
+            // the second update lost an optimistic lock
+            when(statement.executeBatch()).thenReturn(new int[] {1, 0});
+            assertEquals(1, update.executeUpdate());
+            assertEquals(1, update.executeUpdate());
+
+            SQLException ex = assertThrows(SQLException.class, update::close);
+            assertTrue(ex.getMessage().startsWith("coalesced update 2 of 2"), ex.getMessage());
+            assertEquals(Status.STATUS_MARKED_ROLLBACK, btm.getStatus());
+            btm.rollback();
+            handle.close();
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testCoalescedUpdatesAreExecutedInTheirOwnTransaction() throws Exception {
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+        PoolingDataSource pds = pool("coalesced-updates-suspended")
+                .preparedStatementCacheSize(10)
+                .coalescedUpdatesBatchSize(100)
+                .init();
+        try {
+            btm.begin();
+            Connection handle = pds.getConnection();
+            PreparedStatement update = handle.prepareStatement("UPDATE a SET b = ? WHERE c = ?");
+            PreparedStatement statement = update.unwrap(PreparedStatement.class);
+            update.executeUpdate();
+            verify(statement, never()).executeBatch();
+
+            // the update of the first transaction must be executed before its branch gets suspended
+            Transaction suspended = btm.suspend();
+            verify(statement, times(1)).executeBatch();
+
+            // the same statement used in another transaction buffers updates which are executed when it completes
+            btm.begin();
+            update.executeUpdate();
+            update.executeUpdate();
+            btm.commit();
+            verify(statement, times(2)).executeBatch();
+            verify(statement, times(3)).addBatch();
+
+            btm.resume(suspended);
+            update.executeUpdate();
+            btm.commit();
+            verify(statement, times(3)).executeBatch();
+            verify(statement, never()).executeUpdate();
+            update.close();
+            handle.close();
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testUpdatesReturningGeneratedKeysAreNotCoalesced() throws Exception {
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+        for (int cacheSize : new int[] {0, 10}) {
+            PoolingDataSource pds = pool("coalesced-generated-keys-" + cacheSize)
+                    .preparedStatementCacheSize(cacheSize)
+                    .coalescedUpdatesBatchSize(100)
+                    .init();
+            try {
+                btm.begin();
+                Connection handle = pds.getConnection();
+                List<PreparedStatement> updates = Arrays.asList(
+                        handle.prepareStatement("INSERT INTO a VALUES (?)", Statement.RETURN_GENERATED_KEYS),
+                        handle.prepareStatement("INSERT INTO b VALUES (?)", new int[] {1}),
+                        handle.prepareStatement("INSERT INTO c VALUES (?)", new String[] {"id"}));
+                for (PreparedStatement update : updates) {
+                    PreparedStatement statement = update.unwrap(PreparedStatement.class);
+                    update.executeUpdate();
+                    update.getGeneratedKeys();
+                    verify(statement).executeUpdate();
+                    verify(statement, never()).addBatch();
+                    update.close();
+                }
+                btm.commit();
+                handle.close();
+            } finally {
+                pds.close();
+            }
+        }
+    }
+
+    @Test
+    public void testHandleEnlistsOncePerTransaction() throws Exception {
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+        PoolingDataSource pds = pool("enlisted-handle").init();
+        try {
+            btm.begin();
+            Connection handle = pds.getConnection();
+            XAResource xaResource = ((PooledConnectionProxy) handle).getPooledConnection().getXAResource();
+            EventRecorder.clear();
+            try {
+                for (int i = 0; i < 3; i++) {
+                    handle.prepareStatement("SELECT a").close();
+                }
+                assertEquals(1, countStarts(xaResource));
+            } finally {
+                btm.commit();
+            }
+
+            // the same handle has to enlist again in the next transaction
+            btm.begin();
+            try {
+                handle.prepareStatement("SELECT a").close();
+                handle.prepareStatement("SELECT b").close();
+                assertEquals(2, countStarts(xaResource));
+            } finally {
+                btm.commit();
+            }
+            handle.close();
+        } finally {
+            pds.close();
+        }
+    }
+
+    private static int countStarts(XAResource xaResource) {
+        int starts = 0;
+        for (Event event : EventRecorder.getOrderedEvents()) {
+            if (event instanceof XAResourceStartEvent && event.getSource() == xaResource) {
+                starts++;
+            }
+        }
+        return starts;
+    }
+
+    @Test
+    public void testResultSetsCanBeUnwrapped() throws Exception {
+        PoolingDataSource pds = pool("unwrapped-result-sets").maxPoolSize(2).init();
+        try {
+            Connection handle = pds.getConnection();
+            PreparedStatement query = handle.prepareStatement("SELECT a");
+            ResultSet resultSet = query.executeQuery();
+            assertSame(query, resultSet.getStatement());
+            assertFalse(mockingDetails(resultSet).isMock());
+            handle.close();
+
+            pds.setUnwrappedResultSets(true);
+            pds.reset();
+            handle = pds.getConnection();
+            query = handle.prepareStatement("SELECT a");
+            resultSet = query.executeQuery();
+            assertTrue(mockingDetails(resultSet).isMock());
+            handle.close();
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testLeakedStatementsAreClosedWhenReturnedToPool() throws Exception {
+        PoolingDataSource pds = pool("leaked-statements").init();
+        try {
+            Connection handle = pds.getConnection();
+            Statement closed = null;
+            for (int i = 0; i < 1000; i++) {
+                Statement statement = handle.createStatement();
+                statement.close();
+                closed = statement.unwrap(Statement.class);
+            }
+            Statement leaked = handle.createStatement().unwrap(Statement.class);
+            handle.close();
+
+            verify(leaked, timeout(5000)).close();
+            verify(closed, times(1)).close();
+
+            // the next user of the connection never sees a statement being closed
+            Connection nextHandle = pds.getConnection();
+            verify(leaked, times(1)).close();
+            nextHandle.close();
+        } finally {
+            pds.close();
+        }
+    }
+
+    @Test
+    public void testUncachedStatementsCanBeReleasedByAnotherThread() throws Exception {
+        PoolingDataSource pds = pool("released-statements").init();
+        try {
+            Connection handle = pds.getConnection();
+            JdbcPooledConnection pooledConnection = ((PooledConnectionProxy) handle).getPooledConnection();
+            Statement[] statements = new Statement[100];
+            for (int i = 0; i < statements.length; i++) {
+                statements[i] = mock(Statement.class, withSettings().stubOnly());
+            }
+
+            // the application keeps registering statements while the transaction manager releases them on timeout
+            Thread application = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    for (Statement statement : statements) {
+                        pooledConnection.registerUncachedStatement(statement);
+                    }
+                    for (Statement statement : statements) {
+                        pooledConnection.unregisterUncachedStatement(statement);
+                    }
+                }
+            });
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            application.setUncaughtExceptionHandler((thread, throwable) -> failure.set(throwable));
+            // at debug level, logging each release would hardly leave any room for the threads to race
+            ch.qos.logback.classic.Logger btmLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("bitronix.tm");
+            ch.qos.logback.classic.Level btmLogLevel = btmLogger.getLevel();
+            btmLogger.setLevel(ch.qos.logback.classic.Level.INFO);
+            try {
+                application.start();
+                while (application.isAlive()) {
+                    pooledConnection.stateChanging(pooledConnection, State.ACCESSIBLE, State.NOT_ACCESSIBLE);
+                }
+                application.join();
+                pooledConnection.stateChanging(pooledConnection, State.ACCESSIBLE, State.NOT_ACCESSIBLE);
+            } finally {
+                btmLogger.setLevel(btmLogLevel);
+            }
+
+            assertNull(failure.get());
+            handle.close();
+        } finally {
+            pds.close();
+        }
+    }
+
+    private static int countRoundTrips(int aliveBypassWindow) throws Exception {
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+        PoolingDataSource pds = pool("alive-bypass-" + aliveBypassWindow)
+                .testedAndConfigured()
+                .aliveBypassWindow(aliveBypassWindow)
+                .init();
+        try {
+            Connection connection = null;
+            for (int i = 0; i < TRANSACTIONS; i++) {
+                btm.begin();
+                Connection handle = pds.getConnection();
+                handle.createStatement();
+                connection = ((PooledConnectionProxy) handle).getProxiedDelegate();
+                handle.close();
+                btm.commit();
+
+                pds.getConnection().close();
+            }
+
+            int roundTrips = 0;
+            for (Invocation invocation : mockingDetails(connection).getInvocations()) {
+                if (ROUND_TRIP_METHODS.contains(invocation.getMethod().getName())) {
+                    roundTrips++;
+                }
+            }
+            return roundTrips;
+        } finally {
+            pds.close();
+        }
+    }
+
+    private static int countStatementResets(String statementResetPolicy) throws Exception {
+        PoolingDataSource pds = pool("statement-reset-" + statementResetPolicy)
+                .preparedStatementCacheSize(10)
+                .statementResetPolicy(statementResetPolicy)
+                .init();
+        try {
+            Connection handle = pds.getConnection();
+            PreparedStatement statement = null;
+            for (int i = 0; i < STATEMENT_USES; i++) {
+                PreparedStatement handleStatement = handle.prepareStatement("SELECT a FROM b WHERE c = ?");
+                handleStatement.setInt(1, i);
+                if (i % 2 == 0) {
+                    handleStatement.executeQuery().close();
+                }
+                handleStatement.close();
+                statement = handleStatement.unwrap(PreparedStatement.class);
+            }
+            handle.close();
+
+            int resets = 0;
+            for (Invocation invocation : mockingDetails(statement).getInvocations()) {
+                if (RESET_METHODS.contains(invocation.getMethod().getName())) {
+                    resets++;
+                }
+            }
+            return resets;
+        } finally {
+            pds.close();
+        }
+    }
+
+    private static PoolBuilder pool(String uniqueName) {
+        return new PoolBuilder(uniqueName);
+    }
+
+    /**
+     * Builds a pool of a single mock connection allowing local transactions, each test only sets what it needs on top
+     * of that.
+     */
+    private static final class PoolBuilder {
+        private final PoolingDataSource pds = new PoolingDataSource();
+
+        private PoolBuilder(String uniqueName) {
+            pds.setUniqueName(uniqueName);
+            pds.setXaDataSource(new MockitoXADataSource());
+            pds.setMinPoolSize(1);
+            pds.setMaxPoolSize(1);
+            pds.setAllowLocalTransactions(true);
+        }
+
+        private PoolBuilder maxPoolSize(int maxPoolSize) {
+            pds.setMaxPoolSize(maxPoolSize);
+            return this;
+        }
+
+        /**
+         * Test the connections and apply non-default settings to them when they are checked out.
+         */
+        private PoolBuilder testedAndConfigured() {
+            pds.setTestQuery("SELECT 1");
+            pds.setIsolationLevel("READ_COMMITTED");
+            pds.setCursorHoldability("HOLD_CURSORS_OVER_COMMIT");
+            pds.setLocalAutoCommit("true");
+            return this;
+        }
+
+        private PoolBuilder aliveBypassWindow(int aliveBypassWindow) {
+            pds.setAliveBypassWindow(aliveBypassWindow);
+            return this;
+        }
+
+        private PoolBuilder preparedStatementCacheSize(int preparedStatementCacheSize) {
+            pds.setPreparedStatementCacheSize(preparedStatementCacheSize);
+            return this;
+        }
+
+        private PoolBuilder preparedStatementWarmUpSize(int preparedStatementWarmUpSize) {
+            pds.setPreparedStatementWarmUpSize(preparedStatementWarmUpSize);
+            return this;
+        }
+
+        private PoolBuilder statementResetPolicy(String statementResetPolicy) {
+            pds.setStatementResetPolicy(statementResetPolicy);
+            return this;
+        }
+
+        private PoolBuilder coalescedUpdatesBatchSize(int coalescedUpdatesBatchSize) {
+            pds.setCoalescedUpdatesBatchSize(coalescedUpdatesBatchSize);
+            return this;
+        }
+
+        private PoolingDataSource init() throws Exception {
+            pds.init();
+            return pds;
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc;
+
+import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class LruStatementCacheTest {
+
+    @Test
+    public void testKeysMatchOnAllAttributes() {
+        assertEquals(new CacheKey("select 1"), new CacheKey("select 1"));
+        assertEquals(new CacheKey("select 1").hashCode(), new CacheKey("select 1").hashCode());
+        assertEquals(new CacheKey("select 1"), new CacheKey("select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+        assertEquals(new CacheKey("select 1", new int[]{1, 2}), new CacheKey("select 1", new int[]{1, 2}));
+
+        assertNotEquals(new CacheKey("select 1"), new CacheKey("select 2"));
+        assertNotEquals(new CacheKey("select 1"), new CacheKey("select 1", Statement.RETURN_GENERATED_KEYS));
+        assertNotEquals(new CacheKey("select 1", new String[]{"a"}), new CacheKey("select 1", new String[]{"b"}));
+        assertNotEquals(new CacheKey("select 1", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY),
+                new CacheKey("select 1", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY, ResultSet.HOLD_CURSORS_OVER_COMMIT));
+    }
+
+    @Test
+    public void testStatementInUseIsShared() {
+        LruStatementCache cache = new LruStatementCache(1);
+        CacheKey key = new CacheKey("select 1");
+        PreparedStatement statement = mock(PreparedStatement.class);
+
+        assertNull(cache.get(key));
+        assertSame(statement, cache.put(key, statement));
+        assertSame(statement, cache.get(key));
+        // a statement prepared concurrently for the same key is not cached
+        assertSame(statement, cache.put(key, mock(PreparedStatement.class)));
+    }
+
+    @Test
+    public void testReferencedStatementsGetSecondChance() throws Exception {
+        LruStatementCache cache = new LruStatementCache(2);
+        RecordingListener listener = new RecordingListener(1);
+        cache.addEvictionListener(listener);
+        PreparedStatement a = addReleased(cache, "select a");
+        PreparedStatement b = addReleased(cache, "select b");
+        cache.put(new CacheKey("select a"), cache.get(new CacheKey("select a")));
+
+        PreparedStatement c = mock(PreparedStatement.class);
+        cache.put(new CacheKey("select c"), c);
+
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(b), listener.evicted);
+        assertNotEquals(Thread.currentThread(), listener.threads.get(0));
+        assertSame(a, cache.get(new CacheKey("select a")));
+        assertNull(cache.get(new CacheKey("select b")));
+    }
+
+    @Test
+    public void testStatementsInUseAreNotEvicted() throws Exception {
+        LruStatementCache cache = new LruStatementCache(1);
+        RecordingListener listener = new RecordingListener(1);
+        cache.addEvictionListener(listener);
+        PreparedStatement a = mock(PreparedStatement.class);
+        PreparedStatement b = mock(PreparedStatement.class);
+
+        cache.put(new CacheKey("select a"), a);
+        cache.put(new CacheKey("select b"), b);
+        assertEquals(1, listener.latch.getCount());
+
+        // the cache shrinks back to its size once a statement is returned
+        cache.put(new CacheKey("select a"), a);
+        assertTrue(listener.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(a), listener.evicted);
+    }
+
+    @Test
+    public void testClearEvictsSynchronously() {
+        LruStatementCache cache = new LruStatementCache(10);
+        RecordingListener listener = new RecordingListener(2);
+        cache.addEvictionListener(listener);
+        addReleased(cache, "select a");
+        PreparedStatement b = mock(PreparedStatement.class);
+        cache.put(new CacheKey("select b"), b);
+
+        cache.clear();
+
+        assertEquals(0, listener.latch.getCount());
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), listener.threads);
+        assertNull(cache.get(new CacheKey("select a")));
+        assertNull(cache.get(new CacheKey("select b")));
+    }
+
+    private static PreparedStatement addReleased(LruStatementCache cache, String sql) {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        cache.put(new CacheKey(sql), statement);
+        cache.put(new CacheKey(sql), statement);
+        return statement;
+    }
+
+    private static final class RecordingListener implements LruEvictionListener<PreparedStatement> {
+        private final List<PreparedStatement> evicted = new CopyOnWriteArrayList<>();
+        private final List<Thread> threads = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch;
+
+        private RecordingListener(int expectedEvictions) {
+            this.latch = new CountDownLatch(expectedEvictions);
+        }
+
+        @Override
+        public void onEviction(PreparedStatement value) {
+            evicted.add(value);
+            threads.add(Thread.currentThread());
+            latch.countDown();
+        }
+    }
+}
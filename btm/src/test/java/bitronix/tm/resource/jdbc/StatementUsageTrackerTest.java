@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc;
+
+import bitronix.tm.resource.jdbc.LruStatementCache.CacheKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatementUsageTrackerTest {
+
+    @Test
+    public void testMostUsedStatementsAreRanked() {
+        StatementUsageTracker tracker = new StatementUsageTracker(10, 2);
+        record(tracker, "select a", 5);
+        record(tracker, "select b", 10);
+        record(tracker, "select c", 1);
+        assertEquals(Collections.emptyList(), tracker.getHotStatements());
+        assertEquals(10, tracker.getCacheSize());
+
+        tracker.refresh();
+
+        assertEquals(Arrays.asList(new CacheKey("select b"), new CacheKey("select a")), tracker.getHotStatements());
+        // a and b only cover 15 of the 16 usages
+        assertEquals(3, tracker.getCacheSize());
+    }
+
+    @Test
+    public void testCacheSizeFollowsObservedStatements() {
+        StatementUsageTracker tracker = new StatementUsageTracker(4, 1);
+        for (int i = 0; i < 8; i++) {
+            record(tracker, "select " + i, 10);
+        }
+        tracker.refresh();
+        assertEquals(4, tracker.getCacheSize());
+
+        // the counters are halved at every refresh, statements which stopped being used are eventually forgotten
+        for (int i = 0; i < 6; i++) {
+            record(tracker, "select 0", 100);
+            tracker.refresh();
+        }
+        assertEquals(Collections.singletonList(new CacheKey("select 0")), tracker.getHotStatements());
+        assertEquals(1, tracker.getCacheSize());
+    }
+
+    @Test
+    public void testRefreshedAfterInterval() {
+        StatementUsageTracker tracker = new StatementUsageTracker(10, 1);
+        record(tracker, "select a", StatementUsageTracker.REFRESH_INTERVAL);
+
+        assertEquals(Collections.singletonList(new CacheKey("select a")), tracker.getHotStatements());
+    }
+
+    private static void record(StatementUsageTracker tracker, String sql, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(new CacheKey(sql));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc;
+
+import bitronix.tm.BitronixTransactionManager;
+import bitronix.tm.TransactionManagerServices;
+import bitronix.tm.mock.resource.jdbc.MockitoXADataSource;
+import ch.qos.logback.classic.Level;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.XAConnection;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VirtualThreadPinningTest {
+
+    private final static Logger log = LoggerFactory.getLogger(VirtualThreadPinningTest.class);
+
+    private static final int VIRTUAL_THREADS = 10000;
+    private static final int POOL_SIZE = 10;
+
+    private final ch.qos.logback.classic.Logger btmLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("bitronix.tm");
+    private Level btmLogLevel;
+
+    @BeforeEach
+    public void setUp() {
+        // at debug level, each begin() dumps all the in-flight transactions
+        btmLogLevel = btmLogger.getLevel();
+        btmLogger.setLevel(Level.INFO);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionManagerServices.getTransactionManager().shutdown();
+        btmLogger.setLevel(btmLogLevel);
+    }
+
+    @Test
+    public void testVirtualThreadsDoNotPinTheirCarrier() throws Exception {
+        BitronixTransactionManager btm = TransactionManagerServices.getTransactionManager();
+        PoolingDataSource pds = new PoolingDataSource();
+        pds.setUniqueName("virtual-threads");
+        pds.setXaDataSource(new SlowXADataSource());
+        pds.setMinPoolSize(POOL_SIZE / 2);
+        pds.setMaxPoolSize(POOL_SIZE);
+        pds.setAcquisitionTimeout(60);
+        pds.setPreparedStatementCacheSize(4);
+        // not initialized, the first getConnection() calls build the pool concurrently
+        // Mockito attaches its agent from an external process when first used, that must not happen on a virtual thread
+        Mockito.framework();
+
+        AtomicInteger pinned = new AtomicInteger();
+        try (RecordingStream recordingStream = new RecordingStream()) {
+            recordingStream.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recordingStream.onEvent("jdk.VirtualThreadPinned", event -> {
+                pinned.incrementAndGet();
+                StringBuilder sb = new StringBuilder("virtual thread pinned its carrier at");
+                for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                    sb.append("\n\t").append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                            .append(':').append(frame.getLineNumber());
+                }
+                log.warn(sb.toString());
+            });
+            recordingStream.startAsync();
+
+            CountDownLatch start = new CountDownLatch(1);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> futures = new ArrayList<>(VIRTUAL_THREADS);
+                for (int i = 0; i < VIRTUAL_THREADS; i++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        btm.begin();
+                        try (Connection connection = pds.getConnection();
+                             PreparedStatement statement = connection.prepareStatement("UPDATE t SET a = ?")) {
+                            statement.setInt(1, 1);
+                            statement.executeUpdate();
+                        } finally {
+                            btm.commit();
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+
+            // waits until all the recorded events have been consumed
+            recordingStream.stop();
+        } finally {
+            pds.close();
+        }
+
+        assertEquals(0, pinned.get(), "virtual threads pinned their carrier " + pinned.get() + " time(s)");
+    }
+
+    /**
+     * Connections take a millisecond to open, so that the pool grows while virtual threads are parked.
+     */
+    private static class SlowXADataSource extends MockitoXADataSource {
+        @Override
+        public XAConnection getXAConnection() throws SQLException {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getXAConnection();
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.resource.jdbc.proxy;
+
+import bitronix.tm.resource.jdbc.JdbcPooledConnection;
+import bitronix.tm.resource.jdbc.PooledConnectionProxy;
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JdbcGeneratedProxyFactoryTest {
+
+    private JdbcGeneratedProxyFactory factory;
+    private JdbcPooledConnection pooledConnection;
+
+    @BeforeEach
+    public void setUp() {
+        factory = new JdbcGeneratedProxyFactory();
+        pooledConnection = mock(JdbcPooledConnection.class);
+        when(pooledConnection.getPoolingDataSource()).thenReturn(new PoolingDataSource());
+    }
+
+    @Test
+    public void testAutoDetectionPrefersGeneratedProxies() {
+        assertEquals(JdbcGeneratedProxyFactory.class, JdbcProxyFactory.INSTANCE.getClass());
+    }
+
+    @Test
+    public void testGeneratedProxiesOnlyDelegateMethodsNotIntercepted() throws Exception {
+        assertEquals(ConnectionJavaProxy.class, ConnectionGeneratedProxy.class.getSuperclass());
+        assertNotNull(ConnectionGeneratedProxy.class.getDeclaredMethod("nativeSQL", String.class));
+        assertThrows(NoSuchMethodException.class, () -> ConnectionGeneratedProxy.class.getDeclaredMethod("close"));
+        assertThrows(NoSuchMethodException.class, () -> PreparedStatementGeneratedProxy.class.getDeclaredMethod("executeUpdate"));
+        assertNotNull(ResultSetGeneratedProxy.class.getDeclaredMethod("getObject", int.class, Class.class));
+    }
+
+    @Test
+    public void testConnectionDelegatesDirectly() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.nativeSQL("select 1")).thenReturn("native select 1");
+
+        Connection proxy = factory.getProxyConnection(pooledConnection, connection);
+
+        assertFalse(Proxy.isProxyClass(proxy.getClass()));
+        assertInstanceOf(ConnectionJavaProxy.class, proxy);
+        assertSame(pooledConnection, ((PooledConnectionProxy) proxy).getPooledConnection());
+        assertEquals("native select 1", proxy.nativeSQL("select 1"));
+
+        proxy.close();
+        verify(pooledConnection).release();
+        assertTrue(proxy.isClosed());
+    }
+
+    @Test
+    public void testStatementsDelegateDirectly() throws SQLException {
+        Statement statement = mock(Statement.class);
+        when(statement.executeUpdate("delete from t")).thenReturn(3);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+        CallableStatement callableStatement = mock(CallableStatement.class);
+        when(callableStatement.getInt(1)).thenReturn(42);
+
+        Statement statementProxy = factory.getProxyStatement(pooledConnection, statement);
+        PreparedStatement preparedStatementProxy = factory.getProxyPreparedStatement(pooledConnection, preparedStatement, null);
+        CallableStatement callableStatementProxy = factory.getProxyCallableStatement(pooledConnection, callableStatement);
+
+        assertEquals(3, statementProxy.executeUpdate("delete from t"));
+        assertEquals(1, preparedStatementProxy.executeUpdate());
+        assertEquals(42, callableStatementProxy.getInt(1));
+
+        statementProxy.close();
+        verify(pooledConnection).unregisterUncachedStatement(statement);
+        verify(statement).close();
+    }
+
+    @Test
+    public void testResultSetKeepsProxiedStatement() throws SQLException {
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString("name")).thenReturn("btm");
+
+        PreparedStatement preparedStatementProxy = factory.getProxyPreparedStatement(pooledConnection, preparedStatement, null);
+        ResultSet resultSetProxy = preparedStatementProxy.executeQuery();
+
+        assertInstanceOf(ResultSetJavaProxy.class, resultSetProxy);
+        assertSame(preparedStatementProxy, resultSetProxy.getStatement());
+        assertTrue(resultSetProxy.next());
+        assertEquals("btm", resultSetProxy.getString("name"));
+    }
+}
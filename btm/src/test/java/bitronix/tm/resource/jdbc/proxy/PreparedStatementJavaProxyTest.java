@@ -28,6 +28,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  *
@@ -67,6 +68,31 @@ public class PreparedStatementJavaProxyTest {
         verify(connection).putCachedStatement(key, stmt);
     }
 
+    @Test
+    public void testTrackedCachedStatementOnlyResetsWhatWasUsed() throws SQLException {
+        when(connection.isStatementResetTracked()).thenReturn(true);
+        CacheKey key = new CacheKey("INSERT INTO DUAL VALUES (?)");
+        PreparedStatement proxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(connection, stmt, key);
+
+        proxy.close();
+        verify(stmt).clearParameters();
+        verify(stmt, never()).clearWarnings();
+        verify(stmt, never()).clearBatch();
+
+        proxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(connection, stmt, key);
+        proxy.addBatch();
+        proxy.close();
+        verify(stmt, never()).clearWarnings();
+        verify(stmt).clearBatch();
+
+        proxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(connection, stmt, key);
+        proxy.addBatch();
+        proxy.executeBatch();
+        proxy.close();
+        verify(stmt).clearWarnings();
+        verify(stmt).clearBatch();
+    }
+
     @Test
     public void testUncachedStatementCanBeUnwrapped() throws SQLException {
         PreparedStatement proxy = JdbcProxyFactory.INSTANCE.getProxyPreparedStatement(connection, stmt, null);
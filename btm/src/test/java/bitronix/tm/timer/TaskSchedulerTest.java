@@ -86,7 +86,8 @@ public class TaskSchedulerTest {
     public void testIdenticalScheduleTimestamp() throws Exception {
         List<SimpleTask> result = Collections.synchronizedList(new ArrayList<SimpleTask>());
 
-        long firstTimestamp = MonotonicClock.currentTimeMillis();
+        // a task due now may already be run by the scheduler thread when the queue gets counted
+        long firstTimestamp = MonotonicClock.currentTimeMillis() + 100;
         long secondTimestamp = MonotonicClock.currentTimeMillis() + 200;
 
         ts.addTask(new SimpleTask(Instant.ofEpochMilli(firstTimestamp).atZone(ZoneId.systemDefault()).toLocalDateTime(), ts, 0, result));
@@ -97,6 +98,9 @@ public class TaskSchedulerTest {
         assertEquals(3, ts.countTasksQueued(), "Three tasks were created.  All 3 (even identical timestamps) should be queued");
 
         ts.join(1000);
+
+        assertEquals(3, result.size());
+        assertEquals(0, result.get(0).getObject());
     }
 
     private static class SimpleTask extends Task {
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.twopc;
+
+import bitronix.tm.twopc.executor.SyncExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhaseEnginesTest {
+
+    @Test
+    public void testReleasedEnginesAreReused() {
+        SyncExecutor executor = new SyncExecutor();
+
+        PhaseEngines phaseEngines = PhaseEngines.acquire(executor);
+        Preparer preparer = phaseEngines.getPreparer();
+        assertSame(preparer, phaseEngines.getPreparer());
+        phaseEngines.release();
+
+        PhaseEngines reacquired = PhaseEngines.acquire(executor);
+        assertSame(phaseEngines, reacquired);
+        assertSame(preparer, reacquired.getPreparer());
+        reacquired.release();
+    }
+
+    @Test
+    public void testEnginesInUseAreNotShared() {
+        SyncExecutor executor = new SyncExecutor();
+
+        PhaseEngines outer = PhaseEngines.acquire(executor);
+        PhaseEngines inner = PhaseEngines.acquire(executor);
+        assertNotSame(outer, inner);
+        inner.release();
+        outer.release();
+
+        Set<PhaseEngines> reacquired = Collections.newSetFromMap(new IdentityHashMap<>());
+        reacquired.add(PhaseEngines.acquire(executor));
+        reacquired.add(PhaseEngines.acquire(executor));
+        assertEquals(2, reacquired.size());
+        assertTrue(reacquired.contains(outer));
+        assertTrue(reacquired.contains(inner));
+    }
+
+    @Test
+    public void testEnginesAreNotReusedWithAnotherExecutor() {
+        PhaseEngines phaseEngines = PhaseEngines.acquire(new SyncExecutor());
+        phaseEngines.release();
+
+        assertNotSame(phaseEngines, PhaseEngines.acquire(new SyncExecutor()));
+    }
+
+    @Test
+    public void testEnginesAreSharedAcrossThreads() throws Exception {
+        SyncExecutor executor = new SyncExecutor();
+        PhaseEngines phaseEngines = PhaseEngines.acquire(executor);
+        phaseEngines.release();
+
+        PhaseEngines[] otherThreadEngines = new PhaseEngines[1];
+        Thread thread = new Thread(() -> otherThreadEngines[0] = PhaseEngines.acquire(executor));
+        thread.start();
+        thread.join();
+
+        assertSame(phaseEngines, otherThreadEngines[0]);
+    }
+
+    @Test
+    public void testPoolIsBounded() {
+        SyncExecutor executor = new SyncExecutor();
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+        List<PhaseEngines> released = new ArrayList<>();
+        for (int i = 0; i < poolSize + 10; i++) {
+            released.add(PhaseEngines.acquire(executor));
+        }
+        released.forEach(PhaseEngines::release);
+
+        Set<PhaseEngines> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < poolSize + 10; i++) {
+            PhaseEngines phaseEngines = PhaseEngines.acquire(executor);
+            if (released.contains(phaseEngines)) {
+                reused.add(phaseEngines);
+            }
+        }
+        assertEquals(poolSize, reused.size());
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the {@link SchedulerTest} cases against {@link CompactScheduler}.
+ */
+public class CompactSchedulerTest extends SchedulerTest {
+
+    @Override
+    protected <T> Scheduler<T> createScheduler() {
+        return new CompactScheduler<>();
+    }
+
+    @Test
+    public void testManyPositions() {
+        Scheduler<String> scheduler = createScheduler();
+        for (int i = 9; i >= 0; i--) {
+            scheduler.add("a" + i, i);
+            scheduler.add("b" + i, i);
+        }
+
+        assertEquals("a Scheduler with 20 object(s) in 10 position(s)", scheduler.toString());
+        List<String> iterated = new ArrayList<>();
+        for (String s : scheduler) {
+            iterated.add(s);
+        }
+        assertEquals(Arrays.asList("a0", "b0", "a1", "b1", "a2", "b2", "a3", "b3", "a4", "b4",
+                "a5", "b5", "a6", "b6", "a7", "b7", "a8", "b8", "a9", "b9"), iterated);
+        assertNull(scheduler.getByNaturalOrderForPosition(10));
+    }
+
+    @Test
+    public void testAddWhileReverseIterating() {
+        Scheduler<String> scheduler = createScheduler();
+        scheduler.add("last", Scheduler.ALWAYS_LAST_POSITION);
+        scheduler.add("default", Scheduler.DEFAULT_POSITION);
+
+        Iterator<String> it = scheduler.reverseIterator();
+        assertEquals("last", it.next());
+        assertEquals("default", it.next());
+        // like a synchronization registering another one during beforeCompletion
+        scheduler.add("default2", Scheduler.DEFAULT_POSITION);
+        assertEquals("default2", it.next());
+        assertFalse(it.hasNext());
+        assertEquals(3, scheduler.size());
+    }
+}
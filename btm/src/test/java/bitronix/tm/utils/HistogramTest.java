@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2006-2013 Bitronix Software (http://www.bitronix.be)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bitronix.tm.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.openmbean.CompositeData;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getMean());
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        assertEquals(1000, histogram.getMax());
+        assertWithinPrecision(500, histogram.getValueAtPercentile(50.0));
+        assertWithinPrecision(990, histogram.getValueAtPercentile(99.0));
+        assertEquals(1000, histogram.getValueAtPercentile(100.0));
+        assertEquals(1, histogram.getValueAtPercentile(0.0));
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long value : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+            long highest = Histogram.highestValueOfBucket(Histogram.bucketIndex(value));
+            assertTrue(highest >= value, "bucket of " + value + " ends at " + highest);
+            assertTrue(highest - value <= value / 8, "bucket of " + value + " ends at " + highest);
+        }
+    }
+
+    @Test
+    public void testCompositeData() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(10);
+        histogram.record(30);
+
+        CompositeData data = histogram.toCompositeData();
+        assertEquals(3L, data.get("count"));
+        assertEquals(40.0 / 3, (Double) data.get("mean"), 0.001);
+        assertEquals(30L, data.get("max"));
+        assertEquals(30L, data.get("p99"));
+        assertEquals(0L, histogram.getValueAtPercentile(10.0));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8, "expected about " + expected + " but was " + actual);
+    }
+
+}
@@ -95,4 +95,50 @@ public class ManagementRegistrarTest {
 
         assertThrows(InstanceNotFoundException.class, () -> mBeanServer.getAttribute(new ObjectName(objectName), "Name"));
     }
+
+    @Test
+    public void testRegisterUnregisterPairIsCoalesced() throws Exception {
+        ManagementRegistrar.normalizeAndRunQueuedCommands();
+        long coalescedBefore = ManagementRegistrar.getCoalescedCommandCount();
+
+        // the worker may drain the queue concurrently and split a pair, but it cannot split all of them
+        TestBean testBean = new TestBean("1");
+        for (int i = 0; i < 10; i++) {
+            ManagementRegistrar.register(objectName, testBean);
+            ManagementRegistrar.unregister(objectName);
+        }
+        ManagementRegistrar.normalizeAndRunQueuedCommands();
+
+        assertTrue(ManagementRegistrar.getCoalescedCommandCount() >= coalescedBefore + 2);
+        assertFalse(mBeanServer.isRegistered(new ObjectName(objectName)));
+    }
+
+    @Test
+    public void testCountersAreExposedByTheTransactionManager() throws Exception {
+        TransactionManagerServices.getTransactionManager();
+        try {
+            TestBean testBean = new TestBean("1");
+            ManagementRegistrar.register(objectName, testBean);
+            ManagementRegistrar.unregister(objectName);
+            ManagementRegistrar.normalizeAndRunQueuedCommands();
+
+            ObjectName transactionManagerName = new ObjectName("bitronix.tm:type=TransactionManager");
+            assertEquals(ManagementRegistrar.getCoalescedCommandCount(), mBeanServer.getAttribute(transactionManagerName, "JmxCoalescedCommandCount"));
+            assertEquals(ManagementRegistrar.getDroppedCommandCount(), mBeanServer.getAttribute(transactionManagerName, "JmxDroppedCommandCount"));
+        } finally {
+            TransactionManagerServices.getTransactionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void testWorkerIsSignalled() throws Exception {
+        TestBean testBean = new TestBean("1");
+        ManagementRegistrar.register(objectName, testBean);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!mBeanServer.isRegistered(new ObjectName(objectName)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("1", mBeanServer.getAttribute(new ObjectName(objectName), "Name"));
+    }
 }
@@ -19,6 +19,9 @@ import bitronix.tm.internal.XAResourceHolderState;
 import bitronix.tm.resource.common.ResourceBean;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -32,9 +35,13 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 public class SchedulerTest {
 
+    protected <T> Scheduler<T> createScheduler() {
+        return new Scheduler<>();
+    }
+
     @Test
     public void testNaturalOrdering() throws Exception {
-        Scheduler<XAResourceHolderState> resourceScheduler = new Scheduler<XAResourceHolderState>();
+        Scheduler<XAResourceHolderState> resourceScheduler = createScheduler();
 
         XAResourceHolderState xarhs0 = new XAResourceHolderState(null, new MockResourceBean(1));
         XAResourceHolderState xarhs1 = new XAResourceHolderState(null, new MockResourceBean(1));
@@ -78,7 +85,7 @@ public class SchedulerTest {
 
     @Test
     public void testReverseOrdering() throws Exception {
-        Scheduler<XAResourceHolderState> resourceScheduler = new Scheduler<XAResourceHolderState>();
+        Scheduler<XAResourceHolderState> resourceScheduler = createScheduler();
 
         XAResourceHolderState xarhs0 = new XAResourceHolderState(null, new MockResourceBean(1));
         XAResourceHolderState xarhs1 = new XAResourceHolderState(null, new MockResourceBean(1));
@@ -120,7 +127,7 @@ public class SchedulerTest {
 
     @Test
     public void testIterator() {
-        Scheduler<XAResourceHolderState> resourceScheduler = new Scheduler<>();
+        Scheduler<XAResourceHolderState> resourceScheduler = createScheduler();
 
         XAResourceHolderState xarhs0 = new XAResourceHolderState(null, new MockResourceBean(1));
         XAResourceHolderState xarhs1 = new XAResourceHolderState(null, new MockResourceBean(1));
@@ -163,7 +170,7 @@ public class SchedulerTest {
 
     @Test
     public void testReverseIterator() {
-        Scheduler<XAResourceHolderState> resourceScheduler = new Scheduler<XAResourceHolderState>();
+        Scheduler<XAResourceHolderState> resourceScheduler = createScheduler();
 
         XAResourceHolderState xarhs0 = new XAResourceHolderState(null, new MockResourceBean(1));
         XAResourceHolderState xarhs1 = new XAResourceHolderState(null, new MockResourceBean(1));
@@ -193,7 +200,7 @@ public class SchedulerTest {
 
     @Test
     public void testRemove() {
-        Scheduler<XAResourceHolderState> resourceScheduler = new Scheduler<XAResourceHolderState>();
+        Scheduler<XAResourceHolderState> resourceScheduler = createScheduler();
 
         XAResourceHolderState xarhs0 = new XAResourceHolderState(null, new MockResourceBean(0));
         XAResourceHolderState xarhs1 = new XAResourceHolderState(null, new MockResourceBean(1));
@@ -214,7 +221,7 @@ public class SchedulerTest {
 
     @Test
     public void testReverseRemove() {
-        Scheduler<XAResourceHolderState> resourceScheduler = new Scheduler<XAResourceHolderState>();
+        Scheduler<XAResourceHolderState> resourceScheduler = createScheduler();
 
         XAResourceHolderState xarhs0 = new XAResourceHolderState(null, new MockResourceBean(0));
         XAResourceHolderState xarhs1 = new XAResourceHolderState(null, new MockResourceBean(1));
@@ -235,7 +242,7 @@ public class SchedulerTest {
 
     @Test
     public void testHasNext() {
-        Scheduler<XAResourceHolderState> resourceScheduler = new Scheduler<>();
+        Scheduler<XAResourceHolderState> resourceScheduler = createScheduler();
 
         XAResourceHolderState xarhs0 = new XAResourceHolderState(null, new MockResourceBean(0));
         XAResourceHolderState xarhs1 = new XAResourceHolderState(null, new MockResourceBean(10));
@@ -266,6 +273,25 @@ public class SchedulerTest {
         }
     }
 
+    @Test
+    public void testBoxedPositions() {
+        Scheduler<String> scheduler = new Scheduler<>();
+        Integer position = 5;
+
+        scheduler.add("last", Scheduler.ALWAYS_LAST_POSITION);
+        scheduler.add("first", Scheduler.ALWAYS_FIRST_POSITION);
+        scheduler.add("five", position);
+        scheduler.add("default", Scheduler.DEFAULT_POSITION);
+
+        List<String> ordered = new ArrayList<>();
+        for (String s : scheduler) {
+            ordered.add(s);
+        }
+        assertEquals(Arrays.asList("first", "default", "five", "last"), ordered);
+        assertEquals(Collections.singletonList("five"), scheduler.getByNaturalOrderForPosition(position));
+        assertEquals(Collections.singletonList("last"), scheduler.getByReverseOrderForPosition(Scheduler.ALWAYS_LAST_POSITION));
+    }
+
     private static int counter = 0;
     private static int incCounter() {
         return counter++;